@@ -0,0 +1,204 @@
+/*
+ * CSVWriter.java
+ */
+
+package com.idms.csp.ctf.data;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * This class writes messages as comma separated values, one message per
+ * line. Either all the values of a message are written in the order of its
+ * fields, like Message.printCSV(), or the values of a fixed set of columns,
+ * like Util.formatCSV(), with an empty value for a missing token. For e.g.
+ * <br><code>CSVWriter writer = new CSVWriter(out, TokenHandle.ofAll("SYMBOL.TICKER", "TRADE.PRICE"));
+ * <br>writer.writeHeader();
+ * <br>writer.write(msg);</code>
+ * <p>
+ * Values holding a comma, a double quote or a line break are quoted. See
+ * MessageWriter.
+ */
+public class CSVWriter extends MessageWriter
+{
+    // The columns, or null to write all the values.
+    private final TokenHandle[] _columns;
+
+    // The bytes of the column names, for the header.
+    private final byte[][] _names;
+
+    // Set once the first value of the line has been written.
+    private boolean _separate;
+
+    /**
+     * Creates a writer of all the values that keeps the output in its buffer.
+     */
+    public CSVWriter()
+    {
+        this(null, null);
+    }
+
+    /**
+     * Creates a writer of all the values to a stream.
+     *
+     * @param out The OutputStream to write to.
+     */
+    public CSVWriter(OutputStream out)
+    {
+        this(out, null);
+    }
+
+    /**
+     * Creates a writer of the values of a set of columns.
+     *
+     * @param out The OutputStream to write to, or null to keep the output in
+     * the buffer.
+     * @param columns The tokens of the columns, or null to write all the values.
+     */
+    public CSVWriter(OutputStream out, TokenHandle[] columns)
+    {
+        super(out, DEFAULT_BUFFER_SIZE);
+        _columns = (columns != null) ? columns.clone() : null;
+        _names = (columns != null) ? new byte[columns.length][] : null;
+        for (int i=0; _names!=null && i<_names.length; i++)
+        {
+            _names[i] = ascii(columns[i].getName());
+        }
+    }
+
+    /**
+     * Writes the line of column names. Does nothing when all the values are
+     * written, since the columns vary by message.
+     *
+     * @throws IOException If the stream can't be written to.
+     */
+    public void writeHeader() throws IOException
+    {
+        if (_columns == null)
+        {
+            return;
+        }
+
+        for (int i=0; i<_names.length; i++)
+        {
+            if (i > 0)
+            {
+                put((byte) ',');
+            }
+            put(_names[i]);
+        }
+        put((byte) '\n');
+    }
+
+    /**
+     * Writes the values of a message.
+     *
+     * @param msg The Message object.
+     * @throws IOException If the stream can't be written to.
+     */
+    @Override
+    public void write(Message msg) throws IOException
+    {
+        if (_columns == null)
+        {
+            super.write(msg);
+            return;
+        }
+
+        for (int i=0; i<_columns.length; i++)
+        {
+            if (i > 0)
+            {
+                put((byte) ',');
+            }
+
+            Field field = msg.get(_columns[i]);
+            if (field != null && field.getValue() != null)
+            {
+                putValue(field.getValue());
+            }
+        }
+        put((byte) '\n');
+    }
+
+    @Override
+    protected void begin(Message msg) throws IOException
+    {
+        _separate = false;
+    }
+
+    @Override
+    protected void field(Field field) throws IOException
+    {
+        if (_separate)
+        {
+            put((byte) ',');
+        }
+        _separate = true;
+
+        if (field.getValue() != null)
+        {
+            putValue(field.getValue());
+        }
+    }
+
+    @Override
+    protected void end(Message msg) throws IOException
+    {
+        put((byte) '\n');
+    }
+
+    /**
+     * Compiles the column name of a token.
+     */
+    @Override
+    protected byte[] compile(Token token)
+    {
+        return ascii(token.getName());
+    }
+
+    /**
+     * Writes a value, quoted if it holds a comma, a double quote or a line
+     * break.
+     */
+    private void putValue(String value) throws IOException
+    {
+        boolean plain = true;
+        boolean quote = false;
+        for (int i=0; i<value.length(); i++)
+        {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r')
+            {
+                quote = true;
+                break;
+            }
+            plain &= (c < 0x80);
+        }
+
+        if (!quote)
+        {
+            if (plain)
+            {
+                putAscii(value);
+            }
+            else
+            {
+                put(value);
+            }
+            return;
+        }
+
+        put((byte) '"');
+        for (int i=0; i<value.length(); i++)
+        {
+            char c = value.charAt(i);
+            if (c == '"')
+            {
+                put((byte) '"');
+            }
+            put((c < 0x80) ? (byte) c : (byte) '?');
+        }
+        put((byte) '"');
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * CommandBatch.java
+ */
+
+package com.idms.csp.ctf.data;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * This class packs several CTF commands into a single buffer so they can be
+ * sent with one socket write. For e.g. to subscribe to many symbols at login:
+ * <br><code>CommandBatch batch = new CommandBatch();
+ * <br>batch.add(login).add(subscribeIBM).add(subscribeMSFT);
+ * <br>channel.write(batch.getBuffer());</code>
+ * <p>
+ * The commands are written straight into the buffer in CTF frame format, the
+ * buffer grows as needed and can be reused after <code>clear()</code>.
+ * This class is not thread safe.
+ */
+public class CommandBatch
+{
+    // Default initial capacity, enough for a login and a few hundred subscriptions.
+    public static final int DEFAULT_CAPACITY = 16 * 1024;
+
+    // The frames written so far, between 0 and the position.
+    private ByteBuffer _buffer;
+
+    // Number of commands in the batch.
+    private int _count;
+
+    /**
+     * Creates an empty batch with the default capacity.
+     */
+    public CommandBatch()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates an empty batch.
+     *
+     * @param capacity The initial capacity in bytes.
+     */
+    public CommandBatch(int capacity)
+    {
+        _buffer = ByteBuffer.allocate(capacity);
+    }
+
+    /**
+     * Appends a command to the batch.
+     *
+     * @param msg The command.
+     * @return This batch.
+     */
+    public CommandBatch add(Message msg)
+    {
+        while (true)
+        {
+            try
+            {
+                msg.serialize(_buffer);
+                break;
+            }
+            catch (BufferOverflowException e)
+            {
+                // Nothing was written, grow and try again.
+                grow(_buffer.capacity());
+            }
+        }
+        _count++;
+
+        return this;
+    }
+
+    /**
+     * Appends a command given in CTF format to the batch. For e.g.
+     * <br><code>batch.add("5022=ListAvailableTokens|5026=1");</code>
+     *
+     * @param msg The CTF command.
+     * @return This batch.
+     */
+    public CommandBatch add(CharSequence msg)
+    {
+        int size = msg.length() + Message.CTF_FRAME_OVERHEAD_SIZE;
+        if (_buffer.remaining() < size)
+        {
+            grow(size);
+        }
+
+        Message.serialize(msg, _buffer);
+        _count++;
+
+        return this;
+    }
+
+    /**
+     * Returns the number of commands in the batch.
+     *
+     * @return The number of commands.
+     */
+    public int size()
+    {
+        return _count;
+    }
+
+    /**
+     * Returns the number of bytes in the batch.
+     *
+     * @return The number of bytes.
+     */
+    public int getByteCount()
+    {
+        return _buffer.position();
+    }
+
+    /**
+     * Returns a buffer positioned over the frames of the batch, ready to be
+     * written to a channel. The buffer shares its content with the batch.
+     *
+     * @return The buffer holding the frames.
+     */
+    public ByteBuffer getBuffer()
+    {
+        ByteBuffer frames = _buffer.duplicate();
+        frames.flip();
+
+        return frames;
+    }
+
+    /**
+     * Returns the frames of the batch in a new array.
+     *
+     * @return The byte stream holding the frames.
+     */
+    public byte[] toByteArray()
+    {
+        byte[] frames = new byte[_buffer.position()];
+        System.arraycopy(_buffer.array(), 0, frames, 0, frames.length);
+
+        return frames;
+    }
+
+    /**
+     * Removes all the commands from the batch. The buffer is kept.
+     */
+    public void clear()
+    {
+        _buffer.clear();
+        _count = 0;
+    }
+
+    /**
+     * Enlarges the buffer by at least the given number of bytes.
+     *
+     * @param size The number of bytes needed.
+     */
+    private void grow(int size)
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(_buffer.capacity() + Math.max(size, _buffer.capacity()));
+        _buffer.flip();
+        buffer.put(_buffer);
+        _buffer = buffer;
+    }
+}
@@ -0,0 +1,364 @@
+/*
+ * ConditionTable.java
+ */
+
+package com.idms.csp.ctf.data;
+
+import java.util.Map;
+
+/**
+ * This class holds the sale or quote condition codes of one condition token,
+ * for e.g. TRADE.COND_1, compiled from "ccodes.dat". Each code is classified
+ * into categories, kept as a bit mask in an array indexed by code, so a
+ * record can be filtered with a single mask test. For e.g. to add a trade to
+ * the consolidated volume:
+ * <br><code>if ((table.getCategories(code) &amp; ConditionTable.UPDATES_VOLUME) != 0)</code>
+ * <p>
+ * The categories follow the consolidated last sale eligibility rules for
+ * trades, and the NBBO eligibility rules for quotes. Codes that are not in
+ * "ccodes.dat" are classified as UNKNOWN and EXCLUDED_FROM_VOLUME, so they
+ * count toward nothing.
+ * <p>
+ * The codes are classified once, when the DictSnapshot is built, not for
+ * each record.
+ */
+public final class ConditionTable
+{
+    // Condition tokens.
+    public static final int QUOTE_COND_1 = 2000;
+    public static final int QUOTE_COND_2 = 2001;
+    public static final int QUOTE_COND_4 = 2003;
+    public static final int TRADE_COND_1 = 2500;
+
+    // Trade categories.
+    public static final int REGULAR                 = 0x0001;
+    public static final int UPDATES_LAST            = 0x0002;
+    public static final int UPDATES_HIGH_LOW        = 0x0004;
+    public static final int UPDATES_VOLUME          = 0x0008;
+    public static final int EXCLUDED_FROM_VOLUME    = 0x0010;
+    public static final int OUT_OF_SEQUENCE         = 0x0020;
+    public static final int EXTENDED_HOURS          = 0x0040;
+    public static final int OPENING                 = 0x0080;
+    public static final int CLOSING                 = 0x0100;
+    public static final int OFFICIAL                = 0x0200;
+
+    // Quote categories.
+    public static final int SLOW                    = 0x1000;
+    public static final int NON_FIRM                = 0x2000;
+    public static final int HALTED                  = 0x4000;
+    public static final int CLOSED                  = 0x8000;
+    public static final int CROSSED                 = 0x10000;
+    public static final int LOCKED                  = 0x20000;
+
+    // The code is not defined.
+    public static final int UNKNOWN                 = 0x40000000;
+
+    // The categories of a code that is not defined.
+    private static final int UNDEFINED = UNKNOWN | EXCLUDED_FROM_VOLUME;
+
+    // A quote with any of these categories is not eligible for the NBBO.
+    public static final int NBBO_INELIGIBLE = SLOW | NON_FIRM | HALTED | CLOSED | CROSSED | LOCKED | UNKNOWN;
+
+    // Trade categories that count toward last price, high/low and volume.
+    private static final int ALL = REGULAR | UPDATES_LAST | UPDATES_HIGH_LOW | UPDATES_VOLUME;
+
+    // Counts toward volume only.
+    private static final int VOLUME_ONLY = UPDATES_VOLUME;
+
+    // Counts toward high/low and volume, but not the last price.
+    private static final int NOT_LAST = UPDATES_HIGH_LOW | UPDATES_VOLUME;
+
+    // The token the codes are defined for.
+    private final int _toknum;
+
+    // The categories and descriptions indexed by code.
+    private final int[] _categories;
+    private final String[] _descriptions;
+
+    /**
+     * Creates the table of a condition token.
+     *
+     * @param toknum The token number.
+     * @param cmap The condition descriptions keyed on code, as read from "ccodes.dat".
+     */
+    ConditionTable(int toknum, Map<String, String> cmap)
+    {
+        _toknum = toknum;
+
+        int max = -1;
+        for (String key : cmap.keySet())
+        {
+            max = Math.max(max, code(key));
+        }
+
+        _categories = new int[max + 1];
+        _descriptions = new String[max + 1];
+        for (int i=0; i<_categories.length; i++)
+        {
+            _categories[i] = UNDEFINED;
+        }
+
+        for (Map.Entry<String, String> entry : cmap.entrySet())
+        {
+            int code = code(entry.getKey());
+            if (code >= 0)
+            {
+                _categories[code] = classify(toknum, code);
+                _descriptions[code] = entry.getValue();
+            }
+        }
+    }
+
+    /**
+     * Returns the categories of a condition code of a token in the current
+     * data dictionary.
+     *
+     * @param toknum The condition token number, for e.g. TRADE_COND_1.
+     * @param code The condition code.
+     * @return The category bits, UNKNOWN and EXCLUDED_FROM_VOLUME if the code
+     * is not defined.
+     */
+    public static int categoriesOf(int toknum, int code)
+    {
+        return categoriesOf(DataDict.getSnapshot(), toknum, code);
+    }
+
+    /**
+     * Returns the categories of a condition code of a token in a given data
+     * dictionary.
+     *
+     * @param dict The data dictionary.
+     * @param toknum The condition token number, for e.g. TRADE_COND_1.
+     * @param code The condition code.
+     * @return The category bits, UNKNOWN and EXCLUDED_FROM_VOLUME if the code
+     * is not defined.
+     */
+    public static int categoriesOf(DictSnapshot dict, int toknum, int code)
+    {
+        ConditionTable table = dict.getConditionTable(toknum);
+
+        return (table != null) ? table.getCategories(code) : UNDEFINED;
+    }
+
+    /**
+     * Returns the token the codes are defined for.
+     *
+     * @return The token number.
+     */
+    public int getTokenNum()
+    {
+        return _toknum;
+    }
+
+    /**
+     * Returns the categories of a condition code.
+     *
+     * @param code The condition code.
+     * @return The category bits, UNKNOWN and EXCLUDED_FROM_VOLUME if the code
+     * is not defined.
+     */
+    public int getCategories(int code)
+    {
+        return (code >= 0 && code < _categories.length) ? _categories[code] : UNDEFINED;
+    }
+
+    /**
+     * Checks if a condition code is in any of the categories.
+     *
+     * @param code The condition code.
+     * @param mask The category bits.
+     * @return {@code true} if the code is in one of the categories.
+     */
+    public boolean is(int code, int mask)
+    {
+        return (getCategories(code) & mask) != 0;
+    }
+
+    /**
+     * Returns the description of a condition code.
+     *
+     * @param code The condition code.
+     * @return The description, or null if the code is not defined.
+     */
+    public String getDescription(int code)
+    {
+        return (code >= 0 && code < _descriptions.length) ? _descriptions[code] : null;
+    }
+
+    /**
+     * Returns the string representation of this table.
+     *
+     * @return The token number and the number of codes.
+     */
+    @Override
+    public String toString()
+    {
+        return "ConditionTable [Token=" + _toknum + ",Codes=" + _categories.length + "]";
+    }
+
+    /**
+     * Parses a condition code, or returns -1 if it is not a small number.
+     */
+    private static int code(String key)
+    {
+        if (key.length() == 0 || key.length() > 4)
+        {
+            return -1;
+        }
+
+        int code = 0;
+        for (int i=0; i<key.length(); i++)
+        {
+            int digit = key.charAt(i) - '0';
+            if (digit < 0 || digit > 9)
+            {
+                return -1;
+            }
+            code = code * 10 + digit;
+        }
+
+        return code;
+    }
+
+    /**
+     * Classifies a condition code.
+     */
+    private static int classify(int toknum, int code)
+    {
+        switch (toknum)
+        {
+            case TRADE_COND_1:
+                return classifyTrade(code);
+
+            case QUOTE_COND_1:
+                return classifyQuote(code);
+
+            case QUOTE_COND_2:
+                return (code == 1) ? HALTED : REGULAR;
+
+            case QUOTE_COND_4:
+                return (code == 43) ? CROSSED : (code == 54) ? LOCKED : REGULAR;
+
+            default:
+                return REGULAR;
+        }
+    }
+
+    /**
+     * Classifies a TRADE.COND_1 code.
+     */
+    private static int classifyTrade(int code)
+    {
+        switch (code)
+        {
+            case 0:     // Regular sale
+            case 1:     // Acquisition
+            case 2:     // Bunched Trade
+            case 4:     // Distribution
+            case 5:     // Automatic Execution
+            case 6:     // Intermarket Sweep Order
+            case 9:     // CAP Election trade
+            case 10:    // Rule 127 Trade (NYSE)
+            case 11:    // Rule 155 Trade (AMEX)
+            case 12:    // Sold Last (Late Reporting)
+            case 19:    // Split Trade
+            case 22:    // Stock-Option Trade
+            case 24:    // Cross Trade
+            case 25:    // Yellow Flag
+            case 49:    // Stopped Stock - Regular Trade
+            case 50:    // Stopped Stock - Sold Last
+            case 53:    // Re-Opening Prints
+            case 55:    // Placeholders for 611 exempt
+            case 56:
+            case 57:
+                return ALL;
+
+            case 15:    // Market center opening trade
+                return ALL | OPENING;
+
+            case 54:    // Closing Prints
+                return ALL | CLOSING;
+
+            case 7:     // Bunched Sold Trades
+            case 26:    // Sold (Out of Sequence)
+            case 51:    // Stopped Stock - Sold (Out of Sequence)
+                return NOT_LAST | OUT_OF_SEQUENCE;
+
+            case 16:    // Prior Reference Price
+            case 52:    // Derivatively Priced
+                return NOT_LAST;
+
+            case 3:     // Cash Trade (Same Day Clearing)
+            case 8:     // Price Variation Trade
+            case 14:    // Next Day Trade
+            case 18:    // Seller
+            case 23:    // Average Price Trade
+                return VOLUME_ONLY;
+
+            case 20:    // Form T (Extended Trading Hours)
+                return VOLUME_ONLY | EXTENDED_HOURS;
+
+            case 21:    // Pre and Post Market Trade: Sold out of sequence
+                return VOLUME_ONLY | EXTENDED_HOURS | OUT_OF_SEQUENCE;
+
+            case 13:    // Market Center Official Close
+                return EXCLUDED_FROM_VOLUME | OFFICIAL | CLOSING;
+
+            case 17:    // Market Center Official Open
+                return EXCLUDED_FROM_VOLUME | OFFICIAL | OPENING;
+
+            default:
+                return EXCLUDED_FROM_VOLUME;
+        }
+    }
+
+    /**
+     * Classifies a QUOTE.COND_1 code.
+     */
+    private static int classifyQuote(int code)
+    {
+        switch (code)
+        {
+            case 0:     // Regular open quote
+            case 22:    // Regular (for NASDAQ - Market Maker Open)
+            case 24:    // Resume
+                return REGULAR;
+
+            case 3:     // One-sided NBBO at market close
+                return REGULAR | CLOSING;
+
+            case 17:    // Opening quote
+                return REGULAR | OPENING;
+
+            case 1:     // Slow quote on the offer side
+            case 2:     // Slow quote on the bid side
+            case 5:     // Slow quote due to NYSE LRP or gap quote
+            case 6:
+            case 10:    // Slow quote on the bid and offer sides
+            case 25:
+            case 27:    // Slow quote due to Set Slow List
+                return SLOW;
+
+            case 7:     // Probable Trading Range
+            case 16:    // Non-firm quote
+                return NON_FIRM;
+
+            case 14:    // Market Maker Quotes Closed (NASD)
+                return CLOSED;
+
+            case 4:     // News Dissemination
+            case 11:    // Order Imbalance
+            case 12:    // Due to Related Security - News dissemination
+            case 13:    // Due to Related Security - News pending
+            case 20:    // News Pending
+            case 21:    // Additional Information Due To Related Security
+            case 23:    // Due to Related Security
+            case 30:    // Equipment Changeover
+            case 32:    // No Open/Resume
+                return HALTED;
+
+            default:    // Additional information, in view of common, sub-penny trading, ...
+                return REGULAR;
+        }
+    }
+}
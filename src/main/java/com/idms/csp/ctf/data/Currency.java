@@ -22,7 +22,8 @@ public class Currency
     // CTF.ENUM.VALUE (Octal String Representation)
     protected int enumval;
     
-    // Currency Code (Decoded String)
+    // Currency Code (Decoded String). Decoded on first use, which keeps the
+    // dictionary load from initializing Util.
     protected String code;
 
     /**
@@ -38,7 +39,6 @@ public class Currency
         this.toknum = toknum;
         this.enumval = enumval;
         this.enumdesc = enumdesc;
-        this.code = Util.octalDecode(String.valueOf(this.enumval));
     }
     
     /**
@@ -56,7 +56,6 @@ public class Currency
             this.toknum = Integer.parseInt(toknum);
             this.enumval = Integer.parseInt(enumval);
             this.enumdesc = enumdesc;
-            this.code = Util.octalDecode(String.valueOf(this.enumval));
         }
         catch (NumberFormatException e)
         {
@@ -93,6 +92,11 @@ public class Currency
      */
     public String getCode()
     {
+        if (this.code == null)
+        {
+            this.code = Util.octalDecode(String.valueOf(this.enumval));
+        }
+
         return this.code;
     }
     
@@ -113,6 +117,6 @@ public class Currency
     @Override
     public String toString()
     {
-       return "Currency Enum [Token="+toknum+",Value="+enumval+",Code="+code+",Desc="+enumdesc+"]";
+       return "Currency Enum [Token="+toknum+",Value="+enumval+",Code="+getCode()+",Desc="+enumdesc+"]";
     }
 }
@@ -6,6 +6,7 @@ package com.idms.csp.ctf.data;
 
 import java.io.*;
 import java.util.*;
+import java.util.function.Consumer;
 
 /**
  * This class contains the definitions for tokens transmitted in CTF messages
@@ -19,6 +20,13 @@ import java.util.*;
  * <p>
  * Users are required to download the latest tokens and enumerations from Plus
  * Feed servers frequently to take advantage of new data introduced in the feed.
+ * The definitions are held in an immutable DictSnapshot. A new dictionary can
+ * be built in the background and installed with <code>setSnapshot()</code>
+ * while messages are being decoded, see DictSnapshot.
+ * <p>
+ * The static functions of this class work on the default DataDictionary. A
+ * process that connects to more than one feed creates a DataDictionary for
+ * each of the others and binds its messages, views and decoders to it.
  * <p>
  * It is mandatory to initialize this class before using the CTF API as follows:
  * <br> <code> DataDict.init();
@@ -36,35 +44,8 @@ public class DataDict
     // Default location of sale and quote condition codes file
     public static final String DEFAULT_CCODES_SRC = "ctf/data/ccodes.dat";
 
-    // The collection of Token Objects keyed on Token Number
-    private static Map<Integer, Token> _tokenNumMap 
-            = Collections.synchronizedSortedMap(new TreeMap<Integer, Token>());
-    
-    // The collection of Token Objects keyed on Token Name
-    private static Map<String, Token> _tokenNameMap 
-            = Collections.synchronizedSortedMap(new TreeMap<String, Token>());
-
-    // The collection of Enum Objects for SRC.ID (Exchange ID)
-    private static Map<Integer, Exchange> _exchMap 
-            = Collections.synchronizedSortedMap(new TreeMap<Integer, Exchange>());
-    
-    // The collection of Enum Objects for CURRENCY
-    private static Map<String, Currency> _currencyMap 
-            = Collections.synchronizedSortedMap(new TreeMap<String, Currency>());
-
-    // The collection of Enum Objects for QUERY.STATUS
-    private static Map<Integer, Status> _statusMap 
-            = Collections.synchronizedSortedMap(new TreeMap<Integer, Status>());
-
-    // The Dictionary Version
-    private static Enum _version = null;
-
-    // Market Center Codes.
-    private static Properties _marketCenterCodeMap = new Properties();
-
-    // The map of condition maps. One for each condition token.
-    private static Map<Integer, Map<String, String>> _conditionMaps
-            = Collections.synchronizedSortedMap(new TreeMap<Integer, Map<String, String>>());
+    // The dictionary the static functions work on.
+    private static final DataDictionary _default = new DataDictionary("default");
 
     /**
      *
@@ -73,6 +54,17 @@ public class DataDict
     {
     }
 
+    /**
+     * Returns the default data dictionary, the one the static functions of
+     * this class work on.
+     *
+     * @return The DataDictionary object.
+     */
+    public static DataDictionary getDefault()
+    {
+        return _default;
+    }
+
     /**
      * Initialize the data dictionary by loading token definitions from the
      * file "tokens.dat" and enumeration definitions from the file "enums.dat".
@@ -80,7 +72,7 @@ public class DataDict
      */
     public static void init()
     {
-        init(null);
+        _default.init();
     }
 
     /**
@@ -96,74 +88,7 @@ public class DataDict
      */
     public static void init(String filepath)
     {
-        InputStream is = null;
-
-        // Try to load CTF Token Definitions from the file tokens.dat
-        if (filepath != null)
-        {
-            is = Thread.currentThread().getContextClassLoader().getResourceAsStream(filepath + "/tokens.dat");
-        }
-
-        if (is == null)
-        {
-            is = Thread.currentThread().getContextClassLoader().getResourceAsStream(DEFAULT_TOKEN_SRC);
-        }
-
-        if (is != null)
-        {
-            loadTokens(is);
-        }
-
-        // Try to load CTF Enumeration Definitions from the file enums.dat
-        is = null;
-        if (filepath != null)
-        {
-            is = Thread.currentThread().getContextClassLoader().getResourceAsStream(filepath + "/enums.dat");
-        }
-
-        if (is == null)
-        {
-            is = Thread.currentThread().getContextClassLoader().getResourceAsStream(DEFAULT_ENUM_SRC);
-        }
-
-        if (is != null)
-        {
-            loadEnums(is);
-        }
-
-        // Try to load Market Center Codes.
-        is = null;
-        if (filepath != null)
-        {
-            is = Thread.currentThread().getContextClassLoader().getResourceAsStream(filepath + "/mccodes.dat");
-        }
-
-        if (is == null)
-        {
-            is = Thread.currentThread().getContextClassLoader().getResourceAsStream(DEFAULT_MCCODES_SRC);
-        }
-
-        if (is != null)
-        {
-            loadMarketCenterCodes(is);
-        }
-
-        // Try to load Sale and Quote Condition Codes.
-        is = null;
-        if (filepath != null)
-        {
-            is = Thread.currentThread().getContextClassLoader().getResourceAsStream(filepath + "/ccodes.dat");
-        }
-
-        if (is == null)
-        {
-            is = Thread.currentThread().getContextClassLoader().getResourceAsStream(DEFAULT_CCODES_SRC);
-        }
-
-        if (is != null)
-        {
-            loadConditionCodes(is);
-        }
+        _default.init(filepath);
     }
 
     /**
@@ -176,23 +101,24 @@ public class DataDict
      */
     public static void init(String tokensFile, String enumsFile)
     {
-        InputStream is = null;
-
-        try
-        {
-            // Open tokens file
-            is = new FileInputStream(tokensFile);
-            loadTokens(is);
+        _default.init(tokensFile, enumsFile);
+    }
 
-            // Open enums file
-            is = new FileInputStream(enumsFile);
-            loadEnums(is);
-        }
-        catch (FileNotFoundException ex)
-        {
-            // File(s) not found. Load default tokens and enums
-            init();
-        }
+    /**
+     * Initializes the data dictionary from a binary image compiled by
+     * DictImage, which is much faster than parsing the text files. The image
+     * is only used if it is up to date with the files in the directory, the
+     * text files are loaded otherwise.
+     *
+     * @param image The dictionary image file.
+     * @param dir The directory holding "tokens.dat", "enums.dat",
+     * "mccodes.dat" and "ccodes.dat".
+     * @return {@code true} if the image was loaded, {@code false} if the
+     * text files were.
+     */
+    public static boolean init(File image, File dir)
+    {
+        return _default.init(image, dir);
     }
 
     /**
@@ -204,10 +130,23 @@ public class DataDict
      * @param is The InputStream that contains the token definitions.
      */
     public static void loadTokens(InputStream is)
+    {
+        _default.loadTokens(is);
+    }
+
+    /**
+     * Reads token definitions from an input stream without installing them.
+     *
+     * @param is The InputStream that contains the token definitions.
+     * @return The Token objects read, even if the stream failed half way.
+     */
+    static List<Token> readTokens(InputStream is)
     {
         BufferedReader in
                 = new BufferedReader(new InputStreamReader(is));
 
+        List<Token> tokens = new ArrayList<Token>();
+
         try
         {
             HashMap tvmap = new HashMap();
@@ -232,7 +171,7 @@ public class DataDict
 
                 if (toknum != null && tokname != null)
                 {
-                    setToken(new Token(toknum, tokname, toktype, toksize, tokstore));
+                    tokens.add(new Token(toknum, tokname, toktype, toksize, tokstore));
                 }
             }
         }
@@ -240,6 +179,8 @@ public class DataDict
         {
             e.printStackTrace();
         }
+
+        return tokens;
     }
 
     /**
@@ -250,10 +191,23 @@ public class DataDict
      * @param is The InputStream that contains the enumeration definitions.
      */
     public static void loadEnums(InputStream is)
+    {
+        _default.loadEnums(is);
+    }
+
+    /**
+     * Reads enumeration definitions from an input stream without installing them.
+     *
+     * @param is The InputStream that contains the enumeration definitions.
+     * @return The Enum objects read, even if the stream failed half way.
+     */
+    static List<Enum> readEnums(InputStream is)
     {
         BufferedReader in
                 = new BufferedReader(new InputStreamReader(is));
 
+        List<Enum> enums = new ArrayList<Enum>();
+
         try
         {
             HashMap tvmap = new HashMap();
@@ -276,7 +230,7 @@ public class DataDict
 
                 if (toknum != null)
                 {
-                    setEnum(new Enum(toknum, enumval, enumdesc));
+                    enums.add(new Enum(toknum, enumval, enumdesc));
                 }
             }
         }
@@ -284,6 +238,8 @@ public class DataDict
         {
             e.printStackTrace();
         }
+
+        return enums;
     }
 
     /**
@@ -294,10 +250,25 @@ public class DataDict
      * @param is The InputStream that contains the enumeration definitions.
      */
     public static void loadConditionCodes(InputStream is)
+    {
+        _default.loadConditionCodes(is);
+    }
+
+    /**
+     * Reads sale and quote condition definitions from an input stream without
+     * installing them.
+     *
+     * @param is The InputStream that contains the enumeration definitions.
+     * @return The condition maps keyed on token number, even if the stream
+     * failed half way.
+     */
+    static Map<Integer, Map<String, String>> readConditionCodes(InputStream is)
     {
         BufferedReader in
                 = new BufferedReader(new InputStreamReader(is));
 
+        Map<Integer, Map<String, String>> conditionMaps = new TreeMap<Integer, Map<String, String>>();
+
         try
         {
             HashMap tvmap = new HashMap();
@@ -321,10 +292,10 @@ public class DataDict
                 if (toknum != null && enumval != null && enumdesc != null)
                 {
                     // Create a condition map for this token if one doesn't exist.
-                    Map<String, String> cmap = _conditionMaps.get(Integer.valueOf(toknum));
+                    Map<String, String> cmap = conditionMaps.get(Integer.valueOf(toknum));
                     if (cmap == null)
                     {
-                        _conditionMaps.put(Integer.valueOf(toknum), cmap=new TreeMap<String, String>());
+                        conditionMaps.put(Integer.valueOf(toknum), cmap=new TreeMap<String, String>());
                     }
 
                     // Add the condition definition to the map
@@ -336,6 +307,8 @@ public class DataDict
         {
             e.printStackTrace();
         }
+
+        return conditionMaps;
     }
 
     /**
@@ -344,14 +317,7 @@ public class DataDict
      */
     public static void loadMarketCenterCodes(InputStream is)
     {
-        try
-        {
-            _marketCenterCodeMap.load(is);
-        }
-        catch (IOException ioe)
-        {
-            ioe.printStackTrace();
-        }
+        _default.loadMarketCenterCodes(is);
     }
 
     /**
@@ -362,18 +328,19 @@ public class DataDict
      */
     public static Token getToken(String name)
     {
-        return _tokenNameMap.get(name);
+        return _default.getToken(name);
     }
 
     /**
-     * Returns th token object represented by the token number.
+     * Returns th token object represented by the token number. This is a
+     * lock free array lookup, safe to call from any number of threads.
      *
      * @param num The token number.
      * @return The Token object.
      */
     public static Token getToken(int num)
     {
-        return _tokenNumMap.get(Integer.valueOf(num));
+        return _default.getToken(num);
     }
 
     /**
@@ -384,7 +351,7 @@ public class DataDict
      */
     public static Exchange getExchange(int id)
     {
-        return _exchMap.get(Integer.valueOf(id));
+        return _default.getExchange(id);
     }
 
     /**
@@ -395,7 +362,7 @@ public class DataDict
      */
     public static Currency getCurrency(String code)
     {
-        return _currencyMap.get(code);
+        return _default.getCurrency(code);
     }
 
     /**
@@ -406,7 +373,44 @@ public class DataDict
      */
     public static Status getStatus(int code)
     {
-        return _statusMap.get(Integer.valueOf(code));
+        return _default.getStatus(code);
+    }
+
+    /**
+     * Returns the enumeration definitions of a token. Every token listed in
+     * "enums.dat" has a table.
+     *
+     * @param toknum The token number.
+     * @return The EnumTable object, or null if the token has no enumerations.
+     */
+    public static EnumTable getEnumTable(int toknum)
+    {
+        return _default.getEnumTable(toknum);
+    }
+
+    /**
+     * Returns the enumeration definitions of a token. For e.g.
+     * DataDict.getEnumTable("SIC.DESC")
+     *
+     * @param tokname The token name.
+     * @return The EnumTable object, or null if the token is not defined or
+     * has no enumerations.
+     */
+    public static EnumTable getEnumTable(String tokname)
+    {
+        return _default.getEnumTable(tokname);
+    }
+
+    /**
+     * Returns the definition of an enumerated value of a token.
+     *
+     * @param toknum The token number.
+     * @param value The enumerated value.
+     * @return The Enum object, or null if the value is not defined.
+     */
+    public static Enum getEnum(int toknum, int value)
+    {
+        return _default.getEnum(toknum, value);
     }
 
     /**
@@ -416,53 +420,85 @@ public class DataDict
      */
     public static String getVersion()
     {
-        if (_version != null)
-        {
-            return _version.enumdesc;
-        }
-
-        return null;
+        return _default.getVersion();
     }
 
     /**
-     * Creates or updates the token definition.
+     * Creates or updates the token definition. Each call builds a new
+     * snapshot, use setTokens() or update() to make several changes.
      *
      * @param token
      */
     public static void setToken(Token token)
     {
-        _tokenNumMap.put(Integer.valueOf(token.num), token);
-        _tokenNameMap.put(token.name, token);
+        _default.setToken(token);
+    }
+
+    /**
+     * Creates or updates the token definitions, and publishes them to readers
+     * all at once.
+     *
+     * @param tokens
+     */
+    public static void setTokens(Collection<Token> tokens)
+    {
+        _default.setTokens(tokens);
     }
 
     /**
-     * Creates or updates the enumeration definition.
+     * Creates or updates the enumeration definition. Each call builds a new
+     * snapshot, use setEnums() or update() to make several changes.
      *
      * @param enm The enumeration object
      */
     public static void setEnum(Enum enm)
     {
-        if (enm.toknum == 201)
-        {
-            // Collect Exchange Definitions
-            _exchMap.put(Integer.valueOf(enm.enumval), new Exchange(enm.toknum, enm.enumval, enm.enumdesc));
-        }
-        else if (enm.toknum ==262)
-        {
-            // Collect Currency Definitions
-            _currencyMap.put(String.valueOf(enm.enumval), new Currency(enm.toknum, enm.enumval, enm.enumdesc));
-        }
-        else if (enm.toknum == 5025)
-        {
-            // Collect Status Definitions
-            _statusMap.put(Integer.valueOf(enm.enumval), new Status(enm.toknum, enm.enumval, enm.enumdesc));
-        }
-        else if (enm.toknum == 5051)
-        {
-            // Save the Dictionary Version
-            _version = enm;
-        }
-        // TODO: What about enumerations for rest of the tokens ?
+        _default.setEnum(enm);
+    }
+
+    /**
+     * Creates or updates the enumeration definitions, and publishes them to
+     * readers all at once.
+     *
+     * @param enums The enumeration objects
+     */
+    public static void setEnums(Collection<Enum> enums)
+    {
+        _default.setEnums(enums);
+    }
+
+    /**
+     * Makes a batch of changes to the default data dictionary, and publishes
+     * them to readers all at once, see DataDictionary.update().
+     *
+     * @param changes Makes the changes to a Builder of the current snapshot.
+     */
+    public static void update(Consumer<DictSnapshot.Builder> changes)
+    {
+        _default.update(changes);
+    }
+
+    /**
+     * Returns the current data dictionary. The snapshot never changes, hold
+     * on to it to make a series of lookups against the same dictionary.
+     *
+     * @return The DictSnapshot object.
+     */
+    public static DictSnapshot getSnapshot()
+    {
+        return _default.getSnapshot();
+    }
+
+    /**
+     * Replaces the data dictionary with a snapshot built in the background.
+     * Lookups made after this call see the new definitions, messages built
+     * before it keep the snapshot they were built with.
+     *
+     * @param snapshot The new data dictionary.
+     */
+    public static void setSnapshot(DictSnapshot snapshot)
+    {
+        _default.setSnapshot(snapshot);
     }
 
     /**
@@ -471,16 +507,16 @@ public class DataDict
      */
     public static Collection<Exchange> getExchanges()
     {
-        return Collections.unmodifiableCollection(_exchMap.values());
+        return _default.getExchanges();
     }
-    
+
     /**
      * 
      * @return
      */
     public static Collection<Token> getTokens()
     {
-       return Collections.unmodifiableCollection(_tokenNumMap.values());
+        return _default.getTokens();
     }
 
     /**
@@ -489,16 +525,41 @@ public class DataDict
      */
     public static Collection<Currency> getCurrencies()
     {
-       return Collections.unmodifiableCollection(_currencyMap.values());
+        return _default.getCurrencies();
     }
 
     /**
+     * Returns a copy of the market center codes. Changing the copy does not
+     * change the dictionary, load codes with loadMarketCenterCodes() instead.
      *
-     * @return
+     * @return The market center codes.
      */
     public static Properties getMarketCenterCodeMap()
     {
-        return _marketCenterCodeMap;
+        return _default.getMarketCenterCodeMap();
+    }
+
+    /**
+     * Returns the market center names indexed by participant code. Use this
+     * rather than getMarketCenterCodeMap() on hot paths, a lookup is an array
+     * load.
+     *
+     * @return The MarketCenterTable object.
+     */
+    public static MarketCenterTable getMarketCenterTable()
+    {
+        return _default.getMarketCenterTable();
+    }
+
+    /**
+     * Returns the market center name of a participant code.
+     *
+     * @param code The participant code, for e.g. 'n'.
+     * @return The name, for e.g. "NYSE", or null if the code is not defined.
+     */
+    public static String getMarketCenterName(char code)
+    {
+        return _default.getMarketCenterName(code);
     }
 
     /**
@@ -508,7 +569,7 @@ public class DataDict
      */
     public static Map<String, String> getConditionMap(int toknum)
     {
-       return _conditionMaps.get(Integer.valueOf(toknum));
+        return _default.getConditionMap(toknum);
     }
 
     /**
@@ -518,16 +579,21 @@ public class DataDict
      */
     public static Map<String, String> getConditionMap(String tokname)
     {
-       Token token = getToken(tokname);
-
-       if (token != null)
-       {
-           return getConditionMap(token.num);
-       }
+        return _default.getConditionMap(tokname);
+    }
 
-       return null;
+    /**
+     * Returns the sale or quote condition codes of a token compiled into a
+     * table of categories. See ConditionTable.
+     *
+     * @param toknum The token number.
+     * @return The ConditionTable object, or null if there is none.
+     */
+    public static ConditionTable getConditionTable(int toknum)
+    {
+        return _default.getConditionTable(toknum);
     }
-    
+
     /**
      * Prints the data dictionary.
      * 
@@ -535,54 +601,7 @@ public class DataDict
      */
     public static void print(PrintStream out)
     {
-        out.println("/=========================TOKEN LIST - BEGIN=================================/");
-        Set<Integer> tokenSet = _tokenNumMap.keySet();
-        for (Integer key : tokenSet)
-        {
-            out.println(_tokenNumMap.get(key));
-        }
-        out.println("/=========================TOKEN LIST - END===================================/");
-
-        out.println("/=========================SRD.ID ENUM - BEGIN================================/");
-        Set<Integer> exchSet = _exchMap.keySet();
-        for (Integer key : exchSet)
-        {
-            out.println(_exchMap.get(key));
-        }
-        out.println("/=========================SRD.ID ENUM - END==================================/");
-
-        out.println("/=========================CURRENCY ENUM - BEGIN==============================/");
-        Set<String> currencySet = _currencyMap.keySet();
-        for (String key : currencySet)
-        {
-            out.println(_currencyMap.get(key));
-        }
-        out.println("/=========================CURRENCY ENUM - END================================/");
-
-        out.println("/=========================STATUS ENUM - BEGIN================================/");
-        Set<Integer> statusSet = _statusMap.keySet();
-        for (Integer key : statusSet)
-        {
-            out.println(_statusMap.get(key));
-        }
-        out.println("/=========================STATUS ENUM - END==================================/");
-
-        out.println("/=========================MARKET CENTER CODES - BEGIN================================/");
-        _marketCenterCodeMap.list(System.out);
-        out.println("/=========================MARKET CENTER CODES - END==================================/");
-
-        out.println("/=========================SALE AND QUOTE CONDITIONS - BEGIN================================/");
-        for (Map.Entry<Integer, Map<String, String>> set : _conditionMaps.entrySet())
-        {
-            out.println(set.getKey() + "->");
-            Map<String, String> cmap = set.getValue();
-            for (Map.Entry<String, String> cond : cmap.entrySet())
-            {
-                System.out.println(cond.getKey() + "=" + cond.getValue());
-            }
-        }
-        out.println("/=========================SALE AND QUOTE CONDITIONS - END==================================/");
-
+        _default.print(out);
     }
 
     /**
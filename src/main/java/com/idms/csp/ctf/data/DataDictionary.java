@@ -0,0 +1,691 @@
+/*
+ * DataDictionary.java
+ */
+
+package com.idms.csp.ctf.data;
+
+import java.io.*;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * This class is the data dictionary of one feed: its token definitions,
+ * enumerations, market center codes and condition codes. DataDict holds the
+ * default dictionary and offers it through static functions. A process that
+ * connects to more than one feed, for e.g. production and a vendor test
+ * system with a different token set, creates a dictionary per feed:
+ * <br><code>DataDictionary test = new DataDictionary("test");
+ * <br>test.init(new File("/opt/ctf/test/dict.img"), new File("/opt/ctf/test"));
+ * <br>MessagePool pool = new MessagePool(test);
+ * <br>MessageView view = new MessageView(test);</code>
+ * <p>
+ * Messages, fields, views, symbols and tas decoders bound to a dictionary
+ * resolve tokens against it only. The definitions are held in an immutable
+ * DictSnapshot, lookups take no lock and a new snapshot can be installed
+ * while messages are being decoded.
+ */
+public class DataDictionary
+{
+    // The name of the feed, for logging.
+    private final String _name;
+
+    // The current data dictionary. Replaced as a whole, never modified, so
+    // lookups take no lock and decoders never see a half updated dictionary.
+    private volatile DictSnapshot _snapshot = new DictSnapshot.Builder().build();
+
+    /**
+     * Creates an empty data dictionary.
+     *
+     * @param name The name of the feed, for e.g. "production".
+     */
+    public DataDictionary(String name)
+    {
+        _name = name;
+    }
+
+    /**
+     * Returns the name of the feed.
+     *
+     * @return The name.
+     */
+    public String getName()
+    {
+        return _name;
+    }
+
+    /**
+     * Initialize the data dictionary by loading token definitions from the
+     * file "tokens.dat" and enumeration definitions from the file "enums.dat".
+     * The files are located by default in the ctf.data package.
+     */
+    public void init()
+    {
+        init(null);
+    }
+
+    /**
+     * Use this to initialze data dictionary from the files located at the
+     * specified path.
+     *
+     * The token definitions are read from the file "tokens.dat"
+     * The enumeration definitions from the file "enums.dat".
+     * The sale and quote condition codes from the file "ccodes.dat".
+     * The market center codes from the file mccodes.dat.
+     *
+     * @param filepath The location of the files.
+     */
+    public void init(String filepath)
+    {
+        InputStream is = null;
+
+        // Try to load CTF Token Definitions from the file tokens.dat
+        if (filepath != null)
+        {
+            is = Thread.currentThread().getContextClassLoader().getResourceAsStream(filepath + "/tokens.dat");
+        }
+
+        if (is == null)
+        {
+            is = Thread.currentThread().getContextClassLoader().getResourceAsStream(DataDict.DEFAULT_TOKEN_SRC);
+        }
+
+        if (is != null)
+        {
+            loadTokens(is);
+        }
+
+        // Try to load CTF Enumeration Definitions from the file enums.dat
+        is = null;
+        if (filepath != null)
+        {
+            is = Thread.currentThread().getContextClassLoader().getResourceAsStream(filepath + "/enums.dat");
+        }
+
+        if (is == null)
+        {
+            is = Thread.currentThread().getContextClassLoader().getResourceAsStream(DataDict.DEFAULT_ENUM_SRC);
+        }
+
+        if (is != null)
+        {
+            loadEnums(is);
+        }
+
+        // Try to load Market Center Codes.
+        is = null;
+        if (filepath != null)
+        {
+            is = Thread.currentThread().getContextClassLoader().getResourceAsStream(filepath + "/mccodes.dat");
+        }
+
+        if (is == null)
+        {
+            is = Thread.currentThread().getContextClassLoader().getResourceAsStream(DataDict.DEFAULT_MCCODES_SRC);
+        }
+
+        if (is != null)
+        {
+            loadMarketCenterCodes(is);
+        }
+
+        // Try to load Sale and Quote Condition Codes.
+        is = null;
+        if (filepath != null)
+        {
+            is = Thread.currentThread().getContextClassLoader().getResourceAsStream(filepath + "/ccodes.dat");
+        }
+
+        if (is == null)
+        {
+            is = Thread.currentThread().getContextClassLoader().getResourceAsStream(DataDict.DEFAULT_CCODES_SRC);
+        }
+
+        if (is != null)
+        {
+            loadConditionCodes(is);
+        }
+    }
+
+    /**
+     * Initialized the token and enumerations definitions from the files
+     * specified. Default definitions from the api jar file are load if the
+     * files are not found.
+     *
+     * @param tokensFile The file containing token definitions.
+     * @param enumsFile The file containing enumerations definitions.
+     */
+    public void init(String tokensFile, String enumsFile)
+    {
+        InputStream is = null;
+
+        try
+        {
+            // Open tokens file
+            is = new FileInputStream(tokensFile);
+            loadTokens(is);
+
+            // Open enums file
+            is = new FileInputStream(enumsFile);
+            loadEnums(is);
+        }
+        catch (FileNotFoundException ex)
+        {
+            // File(s) not found. Load default tokens and enums
+            init();
+        }
+    }
+
+    /**
+     * Initializes the data dictionary from a binary image compiled by
+     * DictImage, which is much faster than parsing the text files. The image
+     * is only used if it is up to date with the files in the directory, the
+     * text files are loaded otherwise.
+     *
+     * @param image The dictionary image file.
+     * @param dir The directory holding "tokens.dat", "enums.dat",
+     * "mccodes.dat" and "ccodes.dat".
+     * @return {@code true} if the image was loaded, {@code false} if the
+     * text files were.
+     */
+    public boolean init(File image, File dir)
+    {
+        try
+        {
+            if (DictImage.load(image, dir, this))
+            {
+                return true;
+            }
+        }
+        catch (IOException e)
+        {
+            e.printStackTrace();
+        }
+
+        // The image is missing, stale or unreadable. Parse the text files.
+        String[] names = { "tokens.dat", "enums.dat", "mccodes.dat", "ccodes.dat" };
+        for (String name : names)
+        {
+            File file = new File(dir, name);
+            if (!file.isFile())
+            {
+                continue;
+            }
+
+            InputStream is = null;
+            try
+            {
+                is = new FileInputStream(file);
+                if (name.equals("tokens.dat"))
+                {
+                    loadTokens(is);
+                }
+                else if (name.equals("enums.dat"))
+                {
+                    loadEnums(is);
+                }
+                else if (name.equals("mccodes.dat"))
+                {
+                    loadMarketCenterCodes(is);
+                }
+                else
+                {
+                    loadConditionCodes(is);
+                }
+            }
+            catch (IOException e)
+            {
+                e.printStackTrace();
+            }
+            finally
+            {
+                if (is != null)
+                {
+                    try
+                    {
+                        is.close();
+                    }
+                    catch (IOException e)
+                    {
+                    }
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Loads token definitions from an input stream. The stream is expected
+     * to contains lines of CTF messages. For e.g. <br>
+     *
+     * 5011=20|5010=PERMISSION|5002=1|5012=INTEGER|5035=3|5026=1|
+     *
+     * @param is The InputStream that contains the token definitions.
+     */
+    public void loadTokens(InputStream is)
+    {
+        setTokens(DataDict.readTokens(is));
+    }
+
+    /**
+     * Loads enumeration definitions from an input stream. The stream is expected
+     * to contains lines of CTF messages. For e.g. <br>
+     * 5033=AMEX - Composite Only|5034=545|5035=201|5026=1|
+     *
+     * @param is The InputStream that contains the enumeration definitions.
+     */
+    public void loadEnums(InputStream is)
+    {
+        setEnums(DataDict.readEnums(is));
+    }
+
+    /**
+     * Loads enumeration definitions for sale and quote conditions from an input stream.
+     * The stream is expected to contains lines of CTF messages. For e.g. <br>
+     * 5033=Regular sale|5034=0|5035=2500|5026=1|
+     *
+     * @param is The InputStream that contains the enumeration definitions.
+     */
+    public void loadConditionCodes(InputStream is)
+    {
+        setConditionCodes(DataDict.readConditionCodes(is));
+    }
+
+    /**
+     * Adds the sale and quote condition definitions to the condition maps.
+     *
+     * @param conditionMaps The condition maps keyed on token number.
+     */
+    synchronized void setConditionCodes(Map<Integer, Map<String, String>> conditionMaps)
+    {
+        _snapshot = _snapshot.toBuilder().addConditionCodes(conditionMaps).build();
+    }
+
+    /**
+     *
+     * @param is
+     */
+    public void loadMarketCenterCodes(InputStream is)
+    {
+        Properties codes = new Properties();
+        try
+        {
+            codes.load(is);
+        }
+        catch (IOException ioe)
+        {
+            ioe.printStackTrace();
+        }
+
+        synchronized (this)
+        {
+            _snapshot = _snapshot.toBuilder().addMarketCenterCodes(codes).build();
+        }
+    }
+
+    /**
+     * Returns the token object represented by the token name.
+     *
+     * @param name The token name.
+     * @return The Token object.
+     */
+    public Token getToken(String name)
+    {
+        return _snapshot.getToken(name);
+    }
+
+    /**
+     * Returns th token object represented by the token number. This is a
+     * lock free array lookup, safe to call from any number of threads.
+     *
+     * @param num The token number.
+     * @return The Token object.
+     */
+    public Token getToken(int num)
+    {
+        return _snapshot.getToken(num);
+    }
+
+    /**
+     * Returns the exchange object represented by the exchange id.
+     *
+     * @param id The exchange id.
+     * @return The Exchange object.
+     */
+    public Exchange getExchange(int id)
+    {
+        return _snapshot.getExchange(id);
+    }
+
+    /**
+     * Returns the currency object represented by the octal code.
+     *
+     * @param code The octal code.
+     * @return The Currency object.
+     */
+    public Currency getCurrency(String code)
+    {
+        return _snapshot.getCurrency(code);
+    }
+
+    /**
+     * Returns the status object associated with the status code.
+     *
+     * @param code The status code
+     * @return The Status object.
+     */
+    public Status getStatus(int code)
+    {
+        return _snapshot.getStatus(code);
+    }
+
+    /**
+     * Returns the enumeration definitions of a token. Every token listed in
+     * "enums.dat" has a table.
+     *
+     * @param toknum The token number.
+     * @return The EnumTable object, or null if the token has no enumerations.
+     */
+    public EnumTable getEnumTable(int toknum)
+    {
+        return _snapshot.getEnumTable(toknum);
+    }
+
+    /**
+     * Returns the enumeration definitions of a token. For e.g.
+     * dict.getEnumTable("SIC.DESC")
+     *
+     * @param tokname The token name.
+     * @return The EnumTable object, or null if the token is not defined or
+     * has no enumerations.
+     */
+    public EnumTable getEnumTable(String tokname)
+    {
+        DictSnapshot snapshot = _snapshot;
+        Token token = snapshot.getToken(tokname);
+
+        return (token != null) ? snapshot.getEnumTable(token.num) : null;
+    }
+
+    /**
+     * Returns the definition of an enumerated value of a token.
+     *
+     * @param toknum The token number.
+     * @param value The enumerated value.
+     * @return The Enum object, or null if the value is not defined.
+     */
+    public Enum getEnum(int toknum, int value)
+    {
+        return _snapshot.getEnum(toknum, value);
+    }
+
+    /**
+     * Returns the version of the currency data dictionary.
+     *
+     * @return The version.
+     */
+    public String getVersion()
+    {
+        return _snapshot.getDictionaryVersion();
+    }
+
+    /**
+     * Creates or updates the token definition. Each call builds a new
+     * snapshot, copying the whole dictionary and its tables, so use
+     * setTokens() or update() to make several changes.
+     *
+     * @param token
+     */
+    public void setToken(Token token)
+    {
+        setTokens(Collections.singletonList(token));
+    }
+
+    /**
+     * Creates or updates the token definitions, and publishes them to readers
+     * all at once.
+     *
+     * @param tokens
+     */
+    public synchronized void setTokens(Collection<Token> tokens)
+    {
+        _snapshot = _snapshot.toBuilder().addTokens(tokens).build();
+    }
+
+    /**
+     * Creates or updates the enumeration definition. Each call builds a new
+     * snapshot, copying the whole dictionary and its tables, so use
+     * setEnums() or update() to make several changes.
+     *
+     * @param enm The enumeration object
+     */
+    public void setEnum(Enum enm)
+    {
+        setEnums(Collections.singletonList(enm));
+    }
+
+    /**
+     * Creates or updates the enumeration definitions, and publishes them to
+     * readers all at once.
+     *
+     * @param enums The enumeration objects
+     */
+    public synchronized void setEnums(Collection<Enum> enums)
+    {
+        _snapshot = _snapshot.toBuilder().addEnums(enums).build();
+    }
+
+    /**
+     * Makes a batch of changes to the current data dictionary, and publishes
+     * them to readers all at once. The snapshot is built once, whatever the
+     * number of changes, and no update made by another thread in the meantime
+     * is lost. For e.g.
+     * <br><code>dict.update(new Consumer&lt;DictSnapshot.Builder&gt;() {
+     * <br>&nbsp;&nbsp;&nbsp;&nbsp;public void accept(DictSnapshot.Builder b)
+     * <br>&nbsp;&nbsp;&nbsp;&nbsp;{
+     * <br>&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;b.addToken(price).addToken(size).addEnum(exchange);
+     * <br>&nbsp;&nbsp;&nbsp;&nbsp;}
+     * <br>});</code>
+     *
+     * @param changes Makes the changes to a Builder of the current snapshot.
+     */
+    public synchronized void update(Consumer<DictSnapshot.Builder> changes)
+    {
+        DictSnapshot.Builder builder = _snapshot.toBuilder();
+        changes.accept(builder);
+        _snapshot = builder.build();
+    }
+
+    /**
+     * Returns the current data dictionary. The snapshot never changes, hold
+     * on to it to make a series of lookups against the same dictionary.
+     *
+     * @return The DictSnapshot object.
+     */
+    public DictSnapshot getSnapshot()
+    {
+        return _snapshot;
+    }
+
+    /**
+     * Replaces the data dictionary with a snapshot built in the background.
+     * Lookups made after this call see the new definitions, messages built
+     * before it keep the snapshot they were built with.
+     *
+     * @param snapshot The new data dictionary.
+     */
+    public synchronized void setSnapshot(DictSnapshot snapshot)
+    {
+        if (snapshot == null)
+        {
+            throw new NullPointerException("snapshot");
+        }
+        _snapshot = snapshot;
+    }
+
+    /**
+     * 
+     * @return
+     */
+    public Collection<Exchange> getExchanges()
+    {
+        return _snapshot.getExchanges();
+    }
+    
+    /**
+     * 
+     * @return
+     */
+    public Collection<Token> getTokens()
+    {
+       return _snapshot.getTokens();
+    }
+
+    /**
+     *
+     * @return
+     */
+    public Collection<Currency> getCurrencies()
+    {
+       return _snapshot.getCurrencies();
+    }
+
+    /**
+     * Returns a copy of the market center codes. Changing the copy does not
+     * change the dictionary, load codes with loadMarketCenterCodes() instead.
+     *
+     * @return The market center codes.
+     */
+    public Properties getMarketCenterCodeMap()
+    {
+        return _snapshot.getMarketCenterCodeMap();
+    }
+
+    /**
+     * Returns the market center names indexed by participant code. Use this
+     * rather than getMarketCenterCodeMap() on hot paths, a lookup is an array
+     * load.
+     *
+     * @return The MarketCenterTable object.
+     */
+    public MarketCenterTable getMarketCenterTable()
+    {
+        return _snapshot.getMarketCenterTable();
+    }
+
+    /**
+     * Returns the market center name of a participant code.
+     *
+     * @param code The participant code, for e.g. 'n'.
+     * @return The name, for e.g. "NYSE", or null if the code is not defined.
+     */
+    public String getMarketCenterName(char code)
+    {
+        return _snapshot.getMarketCenterTable().getName(code);
+    }
+
+    /**
+     * 
+     * @param toknum
+     * @return
+     */
+    public Map<String, String> getConditionMap(int toknum)
+    {
+       return _snapshot.getConditionMap(toknum);
+    }
+
+    /**
+     * 
+     * @param tokname
+     * @return
+     */
+    public Map<String, String> getConditionMap(String tokname)
+    {
+       Token token = getToken(tokname);
+
+       if (token != null)
+       {
+           return getConditionMap(token.num);
+       }
+
+       return null;
+    }
+    
+    /**
+     * Returns the sale or quote condition codes of a token compiled into a
+     * table of categories. See ConditionTable.
+     *
+     * @param toknum The token number.
+     * @return The ConditionTable object, or null if there is none.
+     */
+    public ConditionTable getConditionTable(int toknum)
+    {
+        return _snapshot.getConditionTable(toknum);
+    }
+
+    /**
+     * Prints the data dictionary.
+     * 
+     * @param out The PrintStream to print to.
+     */
+    public void print(PrintStream out)
+    {
+        DictSnapshot snapshot = _snapshot;
+
+        out.println("/=========================TOKEN LIST - BEGIN=================================/");
+        for (Token token : snapshot.getTokens())
+        {
+            out.println(token);
+        }
+        out.println("/=========================TOKEN LIST - END===================================/");
+
+        out.println("/=========================SRD.ID ENUM - BEGIN================================/");
+        for (Exchange exch : snapshot.getExchanges())
+        {
+            out.println(exch);
+        }
+        out.println("/=========================SRD.ID ENUM - END==================================/");
+
+        out.println("/=========================CURRENCY ENUM - BEGIN==============================/");
+        for (Currency currency : snapshot.getCurrencies())
+        {
+            out.println(currency);
+        }
+        out.println("/=========================CURRENCY ENUM - END================================/");
+
+        out.println("/=========================STATUS ENUM - BEGIN================================/");
+        for (Status status : snapshot.getStatuses())
+        {
+            out.println(status);
+        }
+        out.println("/=========================STATUS ENUM - END==================================/");
+
+        out.println("/=========================MARKET CENTER CODES - BEGIN================================/");
+        snapshot.getMarketCenterCodeMap().list(System.out);
+        out.println("/=========================MARKET CENTER CODES - END==================================/");
+
+        out.println("/=========================SALE AND QUOTE CONDITIONS - BEGIN================================/");
+        for (Map.Entry<Integer, Map<String, String>> set : snapshot.getConditionMaps().entrySet())
+        {
+            out.println(set.getKey() + "->");
+            Map<String, String> cmap = set.getValue();
+            for (Map.Entry<String, String> cond : cmap.entrySet())
+            {
+                System.out.println(cond.getKey() + "=" + cond.getValue());
+            }
+        }
+        out.println("/=========================SALE AND QUOTE CONDITIONS - END==================================/");
+
+    }
+
+    /**
+     * Returns the string representation of this dictionary.
+     *
+     * @return The name and the current snapshot.
+     */
+    @Override
+    public String toString()
+    {
+        return "DataDictionary[" + _name + ", " + _snapshot + "]";
+    }
+}
@@ -0,0 +1,472 @@
+/*
+ * DictImage.java
+ */
+
+package com.idms.csp.ctf.data;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * This class compiles the data dictionary files "tokens.dat", "enums.dat",
+ * "mccodes.dat" and "ccodes.dat" into a binary dictionary image, and loads the
+ * data dictionary from such an image. An image is memory mapped and read
+ * field by field, there is no per line parsing, so processes that start often
+ * should load the image rather than the text files. For e.g.
+ * <br><code>DictImage.compile(new File("/opt/ctf/data"), new File("/opt/ctf/dict.img"));
+ * <br>DataDict.init(new File("/opt/ctf/dict.img"), new File("/opt/ctf/data"));</code>
+ * <p>
+ * The image records the length and the modification time of each file it
+ * was compiled from. It is stale, and is not loaded, as soon as one of the
+ * files changes. An image can also be compiled from the command line:
+ * <br><code>java com.idms.csp.ctf.data.DictImage /opt/ctf/data /opt/ctf/dict.img</code>
+ */
+public final class DictImage
+{
+    // Identifies a dictionary image ("CTFD") and the layout of its content.
+    private static final int MAGIC = 0x43544644;
+    private static final int FORMAT_VERSION = 1;
+
+    // The files compiled into an image, in the order of their stamps.
+    private static final String[] FILES = { "tokens.dat", "enums.dat", "mccodes.dat", "ccodes.dat" };
+
+    /**
+     * This class can't be instantiated.
+     */
+    private DictImage()
+    {
+    }
+
+    /**
+     * Compiles the data dictionary files found in a directory into an image.
+     * Missing files are compiled as empty. The image is written to a temporary
+     * file first and then renamed, so a process loading it never sees half an
+     * image.
+     *
+     * @param dir The directory holding the data dictionary files.
+     * @param image The image file to write.
+     * @throws IOException If a file can't be read or the image can't be written.
+     */
+    public static void compile(File dir, File image) throws IOException
+    {
+        List<Token> tokens = Collections.emptyList();
+        List<Enum> enums = Collections.emptyList();
+        Properties mccodes = new Properties();
+        Map<Integer, Map<String, String>> ccodes = Collections.emptyMap();
+
+        InputStream is = open(dir, FILES[0]);
+        if (is != null)
+        {
+            try
+            {
+                tokens = DataDict.readTokens(is);
+            }
+            finally
+            {
+                is.close();
+            }
+        }
+
+        is = open(dir, FILES[1]);
+        if (is != null)
+        {
+            try
+            {
+                enums = DataDict.readEnums(is);
+            }
+            finally
+            {
+                is.close();
+            }
+        }
+
+        is = open(dir, FILES[2]);
+        if (is != null)
+        {
+            try
+            {
+                mccodes.load(is);
+            }
+            finally
+            {
+                is.close();
+            }
+        }
+
+        is = open(dir, FILES[3]);
+        if (is != null)
+        {
+            try
+            {
+                ccodes = DataDict.readConditionCodes(is);
+            }
+            finally
+            {
+                is.close();
+            }
+        }
+
+        File tmp = new File(image.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+        try
+        {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+
+            for (String name : FILES)
+            {
+                File file = new File(dir, name);
+                out.writeLong(file.isFile() ? file.length() : -1L);
+                out.writeLong(file.isFile() ? file.lastModified() : -1L);
+            }
+
+            out.writeInt(tokens.size());
+            for (Token token : tokens)
+            {
+                out.writeInt(token.num);
+                writeString(out, token.name);
+                out.writeByte(token.type.ordinal());
+                out.writeInt(token.size);
+                out.writeBoolean(token.store);
+            }
+
+            out.writeInt(enums.size());
+            for (Enum enm : enums)
+            {
+                out.writeInt(enm.toknum);
+                out.writeInt(enm.enumval);
+                writeString(out, enm.enumdesc);
+            }
+
+            out.writeInt(mccodes.size());
+            for (String key : mccodes.stringPropertyNames())
+            {
+                writeString(out, key);
+                writeString(out, mccodes.getProperty(key));
+            }
+
+            int count = 0;
+            for (Map<String, String> cmap : ccodes.values())
+            {
+                count += cmap.size();
+            }
+            out.writeInt(count);
+            for (Map.Entry<Integer, Map<String, String>> entry : ccodes.entrySet())
+            {
+                for (Map.Entry<String, String> cond : entry.getValue().entrySet())
+                {
+                    out.writeInt(entry.getKey());
+                    writeString(out, cond.getKey());
+                    writeString(out, cond.getValue());
+                }
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+
+        if (!tmp.renameTo(image))
+        {
+            // Windows does not rename over an existing file.
+            image.delete();
+            if (!tmp.renameTo(image))
+            {
+                throw new IOException("Can't rename " + tmp + " to " + image);
+            }
+        }
+    }
+
+    /**
+     * Checks if an image is up to date with the data dictionary files.
+     *
+     * @param image The image file.
+     * @param dir The directory holding the data dictionary files.
+     * @return {@code true} if the image exists and none of the files changed
+     * since it was compiled, {@code false} otherwise.
+     */
+    public static boolean isCurrent(File image, File dir)
+    {
+        if (!image.isFile())
+        {
+            return false;
+        }
+
+        try
+        {
+            RandomAccessFile raf = new RandomAccessFile(image, "r");
+            try
+            {
+                return checkHeader(raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length()), dir);
+            }
+            finally
+            {
+                raf.close();
+            }
+        }
+        catch (IOException e)
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Loads the data dictionary from an image, if the image is up to date with
+     * the data dictionary files.
+     *
+     * @param image The image file.
+     * @param dir The directory holding the data dictionary files.
+     * @return {@code true} if the image was loaded, {@code false} if it is
+     * missing or stale.
+     * @throws IOException If the image can't be read or is damaged.
+     */
+    public static boolean load(File image, File dir) throws IOException
+    {
+        return load(image, dir, DataDict.getDefault());
+    }
+
+    /**
+     * Loads a data dictionary from an image, if the image is up to date with
+     * the data dictionary files.
+     *
+     * @param image The image file.
+     * @param dir The directory holding the data dictionary files.
+     * @param dict The data dictionary to load.
+     * @return {@code true} if the image was loaded, {@code false} if it is
+     * missing or stale.
+     * @throws IOException If the image can't be read or is damaged.
+     */
+    public static boolean load(File image, File dir, DataDictionary dict) throws IOException
+    {
+        if (!image.isFile())
+        {
+            return false;
+        }
+
+        RandomAccessFile raf = new RandomAccessFile(image, "r");
+        try
+        {
+            MappedByteBuffer buf = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+            if (!checkHeader(buf, dir))
+            {
+                return false;
+            }
+
+            // Scratch space for decoding strings.
+            byte[] scratch = new byte[256];
+            Token.Type[] types = Token.Type.values();
+
+            List<Token> tokens;
+            List<Enum> enums;
+            Properties mccodes = new Properties();
+            Map<Integer, Map<String, String>> ccodes = new TreeMap<Integer, Map<String, String>>();
+
+            // The body is checked as it is read, a damaged image fails with
+            // an IOException rather than an unchecked exception or a huge
+            // allocation.
+            try
+            {
+                int count = readCount(buf, 14);
+                tokens = new ArrayList<Token>(count);
+                for (int i=0; i<count; i++)
+                {
+                    int num = buf.getInt();
+                    String name = readString(buf, scratch);
+                    int ordinal = buf.get();
+                    if (name == null || ordinal < 0 || ordinal >= types.length)
+                    {
+                        throw new IOException("Damaged dictionary image, token " + num);
+                    }
+                    int size = buf.getInt();
+                    boolean store = (buf.get() != 0);
+                    tokens.add(new Token(num, name, types[ordinal], size, store));
+                }
+
+                count = readCount(buf, 12);
+                enums = new ArrayList<Enum>(count);
+                for (int i=0; i<count; i++)
+                {
+                    int toknum = buf.getInt();
+                    int enumval = buf.getInt();
+                    enums.add(new Enum(toknum, enumval, readString(buf, scratch)));
+                }
+
+                count = readCount(buf, 8);
+                for (int i=0; i<count; i++)
+                {
+                    String key = readString(buf, scratch);
+                    String value = readString(buf, scratch);
+                    if (key == null || value == null)
+                    {
+                        throw new IOException("Damaged dictionary image, null market center code");
+                    }
+                    mccodes.setProperty(key, value);
+                }
+
+                count = readCount(buf, 12);
+                for (int i=0; i<count; i++)
+                {
+                    Integer toknum = Integer.valueOf(buf.getInt());
+                    String value = readString(buf, scratch);
+                    String desc = readString(buf, scratch);
+                    if (value == null)
+                    {
+                        throw new IOException("Damaged dictionary image, null condition code");
+                    }
+                    Map<String, String> cmap = ccodes.get(toknum);
+                    if (cmap == null)
+                    {
+                        ccodes.put(toknum, cmap=new TreeMap<String, String>());
+                    }
+                    cmap.put(value, desc);
+                }
+            }
+            catch (BufferUnderflowException e)
+            {
+                throw new IOException("Damaged dictionary image, truncated: " + image);
+            }
+
+            // Install everything as one snapshot.
+            synchronized (dict)
+            {
+                dict.setSnapshot(dict.getSnapshot().toBuilder()
+                        .addTokens(tokens)
+                        .addEnums(enums)
+                        .addMarketCenterCodes(mccodes)
+                        .addConditionCodes(ccodes)
+                        .build());
+            }
+
+            return true;
+        }
+        finally
+        {
+            raf.close();
+        }
+    }
+
+    /**
+     * Reads the header of the image and compares its stamps with the files.
+     * Leaves the buffer positioned after the header.
+     */
+    private static boolean checkHeader(ByteBuffer buf, File dir)
+    {
+        if (buf.remaining() < 8 + FILES.length * 16 || buf.getInt() != MAGIC || buf.getInt() != FORMAT_VERSION)
+        {
+            return false;
+        }
+
+        boolean current = true;
+        for (String name : FILES)
+        {
+            File file = new File(dir, name);
+            long length = buf.getLong();
+            long lastModified = buf.getLong();
+
+            if (length != (file.isFile() ? file.length() : -1L)
+                    || lastModified != (file.isFile() ? file.lastModified() : -1L))
+            {
+                current = false;
+            }
+        }
+
+        return current;
+    }
+
+    /**
+     * Opens a data dictionary file, or returns null if it does not exist.
+     */
+    private static InputStream open(File dir, String name) throws IOException
+    {
+        File file = new File(dir, name);
+
+        return file.isFile() ? new FileInputStream(file) : null;
+    }
+
+    /**
+     * Writes a string as its length followed by its UTF-8 bytes. A null string
+     * has the length -1.
+     */
+    private static void writeString(DataOutputStream out, String s) throws IOException
+    {
+        if (s == null)
+        {
+            out.writeInt(-1);
+            return;
+        }
+
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads the number of records of a section, each at least the given
+     * number of bytes, checked against the bytes left in the image.
+     */
+    private static int readCount(ByteBuffer buf, int minRecordSize) throws IOException
+    {
+        int count = buf.getInt();
+        if (count < 0 || count > buf.remaining() / minRecordSize)
+        {
+            throw new IOException("Damaged dictionary image, record count " + count);
+        }
+
+        return count;
+    }
+
+    /**
+     * Reads a string written by writeString(), its length checked against the
+     * bytes left in the image.
+     */
+    private static String readString(ByteBuffer buf, byte[] scratch) throws IOException
+    {
+        int length = buf.getInt();
+        if (length < 0)
+        {
+            return null;
+        }
+        if (length > buf.remaining())
+        {
+            throw new IOException("Damaged dictionary image, string length " + length);
+        }
+
+        byte[] bytes = (length <= scratch.length) ? scratch : new byte[length];
+        buf.get(bytes, 0, length);
+
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Compiles a dictionary image from the command line.
+     *
+     * @param args The directory holding the data dictionary files and the image file.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length != 2)
+        {
+            System.err.println("Usage: DictImage <data dictionary directory> <image file>");
+            System.exit(1);
+        }
+
+        compile(new File(args[0]), new File(args[1]));
+    }
+}
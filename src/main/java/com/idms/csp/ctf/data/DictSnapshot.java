@@ -0,0 +1,648 @@
+/*
+ * DictSnapshot.java
+ */
+
+package com.idms.csp.ctf.data;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class is an immutable, versioned copy of the data dictionary of a
+ * feed. A DataDictionary holds its current snapshot in a volatile field and
+ * answers every lookup from it, so readers never lock and always see a
+ * complete dictionary. DataDict does the same for the default dictionary.
+ * <p>
+ * A new dictionary is built in the background with a Builder, for e.g. from
+ * the files or from the messages of a ListAvailableTokens response, and then
+ * installed all at once:
+ * <br><code>DictSnapshot.Builder b = dict.getSnapshot().toBuilder();
+ * <br>b.add(msg);  // for each token or enum definition received
+ * <br>dict.setSnapshot(b.build());</code>
+ * <p>
+ * Messages record the snapshot they were built with, see
+ * Message.getDictVersion(). Each snapshot gets a version number from a
+ * process wide counter, a later snapshot always has a greater version.
+ * <p>
+ * A snapshot never changes once it is built, and neither do the lookup
+ * tables it holds, the EnumTable, ConditionTable and MarketCenterTable
+ * objects. They are safe to share between threads without locking. Each
+ * snapshot builds its own tables from the definitions of its Builder.
+ */
+public final class DictSnapshot
+{
+    // Source of the snapshot versions.
+    private static final AtomicLong _versions = new AtomicLong();
+
+    // The version of this snapshot.
+    private final long _version;
+
+    // The Token Objects indexed by Token Number and keyed on Token Name.
+    private final IntTable<Token> _tokenTable;
+    private final NameTable<Token> _tokenNameTable;
+
+    // The Token Objects sorted on Token Number, for iteration.
+    private final SortedMap<Integer, Token> _tokenNumMap;
+
+    // The Enum Objects for SRC.ID (Exchange ID).
+    private final IntTable<Exchange> _exchTable;
+    private final SortedMap<Integer, Exchange> _exchMap;
+
+    // The Enum Objects for CURRENCY keyed on octal code.
+    private final SortedMap<String, Currency> _currencyMap;
+
+    // The Enum Objects for QUERY.STATUS.
+    private final IntTable<Status> _statusTable;
+    private final SortedMap<Integer, Status> _statusMap;
+
+    // The Dictionary Version, or null if not defined.
+    private final Enum _dictVersion;
+
+    // The enumeration definitions of every token, indexed by token number
+    // and sorted on token number.
+    private final IntTable<EnumTable> _enumTable;
+    private final SortedMap<Integer, EnumTable> _enumTableMap;
+
+    // Market Center Codes.
+    private final Properties _marketCenterCodeMap;
+
+    // Market Center names indexed by participant code.
+    private final MarketCenterTable _marketCenterTable;
+
+    // The map of condition maps. One for each condition token.
+    private final SortedMap<Integer, Map<String, String>> _conditionMaps;
+
+    // The condition maps compiled into tables, indexed by token number.
+    private final IntTable<ConditionTable> _conditionTable;
+
+    // The message kind marked by each token, indexed by token number.
+    private final byte[] _messageKinds;
+
+    /**
+     * Creates a snapshot from the content of a builder.
+     */
+    private DictSnapshot(Builder b)
+    {
+        _version = _versions.incrementAndGet();
+
+        _tokenNumMap = Collections.unmodifiableSortedMap(new TreeMap<Integer, Token>(b._tokens));
+        _exchMap = Collections.unmodifiableSortedMap(new TreeMap<Integer, Exchange>(b._exchanges));
+        _currencyMap = Collections.unmodifiableSortedMap(new TreeMap<String, Currency>(b._currencies));
+        _statusMap = Collections.unmodifiableSortedMap(new TreeMap<Integer, Status>(b._statuses));
+        _dictVersion = b._dictVersion;
+
+        SortedMap<Integer, EnumTable> enumTables = new TreeMap<Integer, EnumTable>();
+        for (Map.Entry<Integer, Map<Integer, Enum>> entry : b._enums.entrySet())
+        {
+            enumTables.put(entry.getKey(), new EnumTable(entry.getKey(), entry.getValue()));
+        }
+        _enumTableMap = Collections.unmodifiableSortedMap(enumTables);
+        _enumTable = IntTable.<EnumTable>empty().with(enumTables);
+
+        Map<String, Token> names = new HashMap<String, Token>();
+        for (Token token : _tokenNumMap.values())
+        {
+            names.put(token.name, token);
+        }
+
+        _tokenTable = IntTable.<Token>empty().with(_tokenNumMap);
+        _tokenNameTable = NameTable.<Token>empty().with(names);
+        _exchTable = IntTable.<Exchange>empty().with(_exchMap);
+        _statusTable = IntTable.<Status>empty().with(_statusMap);
+
+        _marketCenterCodeMap = new Properties();
+        _marketCenterCodeMap.putAll(b._marketCenterCodes);
+        _marketCenterTable = new MarketCenterTable(_marketCenterCodeMap);
+
+        SortedMap<Integer, Map<String, String>> conditionMaps = new TreeMap<Integer, Map<String, String>>();
+        Map<Integer, ConditionTable> conditionTables = new HashMap<Integer, ConditionTable>();
+        for (Map.Entry<Integer, Map<String, String>> entry : b._conditionMaps.entrySet())
+        {
+            conditionMaps.put(entry.getKey(),
+                    Collections.unmodifiableSortedMap(new TreeMap<String, String>(entry.getValue())));
+            conditionTables.put(entry.getKey(), new ConditionTable(entry.getKey(), entry.getValue()));
+        }
+        _conditionMaps = Collections.unmodifiableSortedMap(conditionMaps);
+        _conditionTable = IntTable.<ConditionTable>empty().with(conditionTables);
+
+        _messageKinds = MessageKind.compile(this);
+    }
+
+    /**
+     * Returns the version of this snapshot. Versions increase with every
+     * snapshot built in this process.
+     *
+     * @return The snapshot version.
+     */
+    public long getVersion()
+    {
+        return _version;
+    }
+
+    /**
+     * Returns the version of the data dictionary as published by the feed.
+     *
+     * @return The version, or null if it is not defined.
+     */
+    public String getDictionaryVersion()
+    {
+        return (_dictVersion != null) ? _dictVersion.enumdesc : null;
+    }
+
+    /**
+     * Returns the token object represented by the token name.
+     *
+     * @param name The token name.
+     * @return The Token object.
+     */
+    public Token getToken(String name)
+    {
+        return _tokenNameTable.get(name);
+    }
+
+    /**
+     * Returns the token object represented by the token number.
+     *
+     * @param num The token number.
+     * @return The Token object.
+     */
+    public Token getToken(int num)
+    {
+        return _tokenTable.get(num);
+    }
+
+    /**
+     * Returns the kind of message a token marks, see MessageKind. Part sizes
+     * also carry a private bit, use MessageKind.of() to get the kind a field
+     * gives to its message.
+     *
+     * @param num The token number.
+     * @return The kind bits, 0 if the token marks no kind.
+     */
+    int getMessageKind(int num)
+    {
+        return (num >= 0 && num < _messageKinds.length) ? _messageKinds[num] & 0xff : 0;
+    }
+
+    /**
+     * Returns the exchange object represented by the exchange id.
+     *
+     * @param id The exchange id.
+     * @return The Exchange object.
+     */
+    public Exchange getExchange(int id)
+    {
+        return _exchTable.get(id);
+    }
+
+    /**
+     * Returns the currency object represented by the octal code.
+     *
+     * @param code The octal code.
+     * @return The Currency object.
+     */
+    public Currency getCurrency(String code)
+    {
+        return _currencyMap.get(code);
+    }
+
+    /**
+     * Returns the status object associated with the status code.
+     *
+     * @param code The status code
+     * @return The Status object.
+     */
+    public Status getStatus(int code)
+    {
+        return _statusTable.get(code);
+    }
+
+    /**
+     * Returns the enumeration definitions of a token.
+     *
+     * @param toknum The token number.
+     * @return The EnumTable object, or null if the token has no enumerations.
+     */
+    public EnumTable getEnumTable(int toknum)
+    {
+        return _enumTable.get(toknum);
+    }
+
+    /**
+     * Returns the definition of an enumerated value of a token.
+     *
+     * @param toknum The token number.
+     * @param value The enumerated value.
+     * @return The Enum object, or null if the value is not defined.
+     */
+    public Enum getEnum(int toknum, int value)
+    {
+        EnumTable table = _enumTable.get(toknum);
+        return (table != null) ? table.get(value) : null;
+    }
+
+    /**
+     * Returns the enumeration definitions of all the tokens that have them,
+     * sorted on token number.
+     *
+     * @return The unmodifiable collection of tables.
+     */
+    public Collection<EnumTable> getEnumTables()
+    {
+        return _enumTableMap.values();
+    }
+
+    /**
+     * Returns the tokens sorted on token number.
+     *
+     * @return The unmodifiable collection of tokens.
+     */
+    public Collection<Token> getTokens()
+    {
+        return _tokenNumMap.values();
+    }
+
+    /**
+     * Returns the exchanges sorted on exchange id.
+     *
+     * @return The unmodifiable collection of exchanges.
+     */
+    public Collection<Exchange> getExchanges()
+    {
+        return _exchMap.values();
+    }
+
+    /**
+     * Returns the currencies sorted on octal code.
+     *
+     * @return The unmodifiable collection of currencies.
+     */
+    public Collection<Currency> getCurrencies()
+    {
+        return _currencyMap.values();
+    }
+
+    /**
+     * Returns the statuses sorted on status code.
+     *
+     * @return The unmodifiable collection of statuses.
+     */
+    public Collection<Status> getStatuses()
+    {
+        return _statusMap.values();
+    }
+
+    /**
+     * Returns a copy of the market center codes. Changing the copy does not
+     * change this snapshot, use a Builder instead.
+     *
+     * @return The market center codes.
+     */
+    public Properties getMarketCenterCodeMap()
+    {
+        Properties codes = new Properties();
+        codes.putAll(_marketCenterCodeMap);
+
+        return codes;
+    }
+
+    /**
+     * Returns the market center names indexed by participant code.
+     *
+     * @return The MarketCenterTable object.
+     */
+    public MarketCenterTable getMarketCenterTable()
+    {
+        return _marketCenterTable;
+    }
+
+    /**
+     * Returns the condition codes of a sale or quote condition token.
+     *
+     * @param toknum The token number.
+     * @return The unmodifiable condition map, or null if there is none.
+     */
+    public Map<String, String> getConditionMap(int toknum)
+    {
+        return _conditionMaps.get(Integer.valueOf(toknum));
+    }
+
+    /**
+     * Returns the compiled condition codes of a sale or quote condition token.
+     *
+     * @param toknum The token number.
+     * @return The ConditionTable object, or null if there is none.
+     */
+    public ConditionTable getConditionTable(int toknum)
+    {
+        return _conditionTable.get(toknum);
+    }
+
+    /**
+     * Returns the condition maps keyed on token number.
+     *
+     * @return The unmodifiable map of condition maps.
+     */
+    public SortedMap<Integer, Map<String, String>> getConditionMaps()
+    {
+        return _conditionMaps;
+    }
+
+    /**
+     * Returns a builder that starts from the content of this snapshot.
+     *
+     * @return The Builder object.
+     */
+    public Builder toBuilder()
+    {
+        return new Builder(this);
+    }
+
+    /**
+     * Returns the string representation of this snapshot.
+     *
+     * @return The version and the number of tokens.
+     */
+    @Override
+    public String toString()
+    {
+        return "DictSnapshot[version=" + _version + ", dictionary=" + getDictionaryVersion()
+                + ", tokens=" + _tokenNumMap.size() + "]";
+    }
+
+    /**
+     * This class collects definitions for a new snapshot. A builder is used
+     * by a single thread, and can be filled for as long as needed without
+     * affecting the snapshot DataDict currently holds.
+     */
+    public static final class Builder
+    {
+        // The definitions collected so far.
+        private final Map<Integer, Token> _tokens = new HashMap<Integer, Token>();
+        private final Map<Integer, Exchange> _exchanges = new HashMap<Integer, Exchange>();
+        private final Map<String, Currency> _currencies = new HashMap<String, Currency>();
+        private final Map<Integer, Status> _statuses = new HashMap<Integer, Status>();
+        private final Properties _marketCenterCodes = new Properties();
+        private final Map<Integer, Map<String, String>> _conditionMaps = new HashMap<Integer, Map<String, String>>();
+        private Enum _dictVersion;
+
+        // The definitions of every enumerated token, keyed on token number and value.
+        private final Map<Integer, Map<Integer, Enum>> _enums = new HashMap<Integer, Map<Integer, Enum>>();
+
+        /**
+         * Creates an empty builder.
+         */
+        public Builder()
+        {
+        }
+
+        /**
+         * Creates a builder that starts from the content of a snapshot.
+         *
+         * @param base The snapshot to start from.
+         */
+        public Builder(DictSnapshot base)
+        {
+            _tokens.putAll(base._tokenNumMap);
+            _exchanges.putAll(base._exchMap);
+            _currencies.putAll(base._currencyMap);
+            _statuses.putAll(base._statusMap);
+            _marketCenterCodes.putAll(base._marketCenterCodeMap);
+            for (Map.Entry<Integer, Map<String, String>> entry : base._conditionMaps.entrySet())
+            {
+                _conditionMaps.put(entry.getKey(), new TreeMap<String, String>(entry.getValue()));
+            }
+            _dictVersion = base._dictVersion;
+            for (EnumTable table : base._enumTableMap.values())
+            {
+                Map<Integer, Enum> enums = new HashMap<Integer, Enum>();
+                for (Enum enm : table.getEnums())
+                {
+                    enums.put(Integer.valueOf(enm.enumval), enm);
+                }
+                _enums.put(Integer.valueOf(table.getTokenNum()), enums);
+            }
+        }
+
+        /**
+         * Creates or updates a token definition.
+         *
+         * @param token The Token object.
+         * @return This builder.
+         */
+        public Builder addToken(Token token)
+        {
+            _tokens.put(Integer.valueOf(token.num), token);
+            return this;
+        }
+
+        /**
+         * Creates or updates the token definitions.
+         *
+         * @param tokens The Token objects.
+         * @return This builder.
+         */
+        public Builder addTokens(Collection<Token> tokens)
+        {
+            for (Token token : tokens)
+            {
+                addToken(token);
+            }
+            return this;
+        }
+
+        /**
+         * Creates or updates an enumeration definition. Enumerations of
+         * SRC.ID and QUERY.STATUS are kept as Exchange and Status objects,
+         * those of CURRENCY also as Currency objects. The one of
+         * DICTIONARY.VERSION is the dictionary version.
+         *
+         * @param enm The enumeration object.
+         * @return This builder.
+         */
+        public Builder addEnum(Enum enm)
+        {
+            String desc = (enm.enumdesc != null) ? enm.enumdesc.intern() : null;
+            Integer value = Integer.valueOf(enm.enumval);
+
+            if (enm.toknum == 201)
+            {
+                Exchange exch = new Exchange(enm.toknum, enm.enumval, desc);
+                _exchanges.put(value, exch);
+                enm = exch;
+            }
+            else if (enm.toknum == 262)
+            {
+                _currencies.put(String.valueOf(enm.enumval), new Currency(enm.toknum, enm.enumval, desc));
+                enm = new Enum(enm.toknum, enm.enumval, desc);
+            }
+            else if (enm.toknum == 5025)
+            {
+                Status status = new Status(enm.toknum, enm.enumval, desc);
+                _statuses.put(value, status);
+                enm = status;
+            }
+            else
+            {
+                enm = new Enum(enm.toknum, enm.enumval, desc);
+                if (enm.toknum == 5051)
+                {
+                    _dictVersion = enm;
+                }
+            }
+
+            Map<Integer, Enum> enums = _enums.get(Integer.valueOf(enm.toknum));
+            if (enums == null)
+            {
+                _enums.put(Integer.valueOf(enm.toknum), enums=new HashMap<Integer, Enum>());
+            }
+            enums.put(value, enm);
+            return this;
+        }
+
+        /**
+         * Creates or updates the enumeration definitions.
+         *
+         * @param enums The enumeration objects.
+         * @return This builder.
+         */
+        public Builder addEnums(Collection<Enum> enums)
+        {
+            for (Enum enm : enums)
+            {
+                addEnum(enm);
+            }
+            return this;
+        }
+
+        /**
+         * Adds the sale and quote condition definitions.
+         *
+         * @param conditionMaps The condition maps keyed on token number.
+         * @return This builder.
+         */
+        public Builder addConditionCodes(Map<Integer, Map<String, String>> conditionMaps)
+        {
+            for (Map.Entry<Integer, Map<String, String>> entry : conditionMaps.entrySet())
+            {
+                Map<String, String> cmap = _conditionMaps.get(entry.getKey());
+                if (cmap == null)
+                {
+                    _conditionMaps.put(entry.getKey(), cmap=new TreeMap<String, String>());
+                }
+                cmap.putAll(entry.getValue());
+            }
+            return this;
+        }
+
+        /**
+         * Adds market center codes.
+         *
+         * @param codes The market center names keyed on code.
+         * @return This builder.
+         */
+        public Builder addMarketCenterCodes(Map<?, ?> codes)
+        {
+            _marketCenterCodes.putAll(codes);
+            return this;
+        }
+
+        /**
+         * Adds the definition carried by a message, as received in a
+         * ListAvailableTokens response or read from the dictionary files. A
+         * message with CTF.TOKEN.NAME (5010) is a token definition, one with
+         * CTF.ENUM.VALUE (5034) is an enumeration definition. Other messages,
+         * for e.g. the status at the end of the response, are ignored.
+         *
+         * @param msg The Message object.
+         * @return {@code true} if the message carried a definition.
+         */
+        public boolean add(Message msg)
+        {
+            if (msg.get(5035) == null)
+            {
+                return false;
+            }
+
+            if (msg.get(5010) != null)
+            {
+                addToken(new Token(msg));
+                return true;
+            }
+
+            if (msg.get(5034) != null)
+            {
+                addEnum(new Enum(msg));
+                return true;
+            }
+
+            return false;
+        }
+
+        /**
+         * Reads token definitions from an input stream in the format of "tokens.dat".
+         *
+         * @param is The InputStream that contains the token definitions.
+         * @return This builder.
+         */
+        public Builder loadTokens(InputStream is)
+        {
+            return addTokens(DataDict.readTokens(is));
+        }
+
+        /**
+         * Reads enumeration definitions from an input stream in the format of "enums.dat".
+         *
+         * @param is The InputStream that contains the enumeration definitions.
+         * @return This builder.
+         */
+        public Builder loadEnums(InputStream is)
+        {
+            return addEnums(DataDict.readEnums(is));
+        }
+
+        /**
+         * Reads market center codes from an input stream in the format of "mccodes.dat".
+         *
+         * @param is The InputStream that contains the market center codes.
+         * @return This builder.
+         * @throws IOException If the stream can't be read.
+         */
+        public Builder loadMarketCenterCodes(InputStream is) throws IOException
+        {
+            _marketCenterCodes.load(is);
+            return this;
+        }
+
+        /**
+         * Reads sale and quote condition definitions from an input stream in
+         * the format of "ccodes.dat".
+         *
+         * @param is The InputStream that contains the condition definitions.
+         * @return This builder.
+         */
+        public Builder loadConditionCodes(InputStream is)
+        {
+            return addConditionCodes(DataDict.readConditionCodes(is));
+        }
+
+        /**
+         * Creates a snapshot of the definitions collected so far. The builder
+         * can be used again afterwards.
+         *
+         * @return The DictSnapshot object.
+         */
+        public DictSnapshot build()
+        {
+            return new DictSnapshot(this);
+        }
+    }
+}
@@ -0,0 +1,304 @@
+/*
+ * EnumTable.java
+ */
+
+package com.idms.csp.ctf.data;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * This class holds the enumeration definitions of one token, for e.g. all the
+ * SIC.DESC codes, and decodes enumerated values without allocating. For e.g.
+ * <br><code>EnumTable sic = DataDict.getEnumTable("SIC.DESC");
+ * <br>String desc = sic.getDescription(view.getBuffer(), off, len);</code>
+ * <p>
+ * The definitions are kept in an array indexed by value minus the smallest
+ * value when the values are close together, which is a bounds check and an
+ * array load. Tokens with a few values spread far apart, for e.g.
+ * FUND.FOOTNOTE, use a binary search on the sorted values instead, so the
+ * table stays small. The descriptions are interned, so descriptions shared
+ * between tokens, for e.g. SRC.ID and PREV.SRC.ID, are held once.
+ * <p>
+ * A DictSnapshot holds one table for each token that has enumerations, see
+ * DictSnapshot.getEnumTable(int).
+ */
+public final class EnumTable
+{
+    // A dense array may hold at most this many slots per definition.
+    private static final int MAX_SLOTS_PER_ENUM = 16;
+
+    // Dense arrays smaller than this are always used.
+    private static final int MIN_DENSE_SLOTS = 1024;
+
+    // The token the enumerations are defined for.
+    private final int _toknum;
+
+    // The value of the first slot, when dense.
+    private final int _base;
+
+    // The definitions indexed by value - _base, or null if not dense.
+    private final Enum[] _dense;
+
+    // The sorted values and their definitions, when not dense.
+    private final int[] _keys;
+    private final Enum[] _values;
+
+    // The definitions sorted on value, for iteration.
+    private final SortedMap<Integer, Enum> _enums;
+
+    /**
+     * Creates the table of a token.
+     *
+     * @param toknum The token number.
+     * @param enums The definitions keyed on value.
+     */
+    EnumTable(int toknum, Map<Integer, ? extends Enum> enums)
+    {
+        _toknum = toknum;
+        _enums = Collections.unmodifiableSortedMap(new TreeMap<Integer, Enum>(enums));
+
+        int size = _enums.size();
+        long span = size > 0 ? (long) _enums.lastKey() - _enums.firstKey() + 1 : 0;
+
+        if (span <= Math.max(MIN_DENSE_SLOTS, (long) size * MAX_SLOTS_PER_ENUM))
+        {
+            _base = size > 0 ? _enums.firstKey() : 0;
+            _dense = new Enum[(int) span];
+            for (Enum enm : _enums.values())
+            {
+                _dense[enm.enumval - _base] = enm;
+            }
+            _keys = null;
+            _values = null;
+        }
+        else
+        {
+            _base = 0;
+            _dense = null;
+            _keys = new int[size];
+            _values = new Enum[size];
+            int i = 0;
+            for (Enum enm : _enums.values())
+            {
+                _keys[i] = enm.enumval;
+                _values[i++] = enm;
+            }
+        }
+    }
+
+    /**
+     * Returns the token the enumerations are defined for.
+     *
+     * @return The token number.
+     */
+    public int getTokenNum()
+    {
+        return _toknum;
+    }
+
+    /**
+     * Returns the number of definitions.
+     *
+     * @return The number of enumerated values.
+     */
+    public int size()
+    {
+        return _enums.size();
+    }
+
+    /**
+     * Returns the definition of an enumerated value. For SRC.ID and
+     * QUERY.STATUS the definitions are Exchange and Status objects.
+     *
+     * @param value The enumerated value.
+     * @return The Enum object, or null if the value is not defined.
+     */
+    public Enum get(int value)
+    {
+        if (_dense != null)
+        {
+            int i = value - _base;
+            return (i >= 0 && i < _dense.length) ? _dense[i] : null;
+        }
+
+        int i = Arrays.binarySearch(_keys, value);
+        return (i >= 0) ? _values[i] : null;
+    }
+
+    /**
+     * Returns the definition of an enumerated value given as text.
+     *
+     * @param value The enumerated value, for e.g. "111".
+     * @return The Enum object, or null if the text is not a defined value.
+     */
+    public Enum get(CharSequence value)
+    {
+        if (value == null)
+        {
+            return null;
+        }
+
+        int len = value.length();
+        if (len == 0 || len > 11)
+        {
+            return null;
+        }
+
+        int i = 0;
+        boolean negative = (value.charAt(0) == '-');
+        if (negative && len == 1)
+        {
+            return null;
+        }
+        if (negative)
+        {
+            i++;
+        }
+
+        long n = 0;
+        for (; i<len; i++)
+        {
+            int digit = value.charAt(i) - '0';
+            if (digit < 0 || digit > 9)
+            {
+                return null;
+            }
+            n = n * 10 + digit;
+        }
+
+        return lookup(negative ? -n : n);
+    }
+
+    /**
+     * Returns the definition of an enumerated value held as ASCII digits in
+     * a buffer, for e.g. a value indexed by a MessageView.
+     *
+     * @param buf The buffer holding the digits.
+     * @param off The index of the first character.
+     * @param len The number of characters.
+     * @return The Enum object, or null if the characters are not a defined value.
+     */
+    public Enum get(ByteBuffer buf, int off, int len)
+    {
+        if (len <= 0 || len > 11)
+        {
+            return null;
+        }
+
+        int i = off;
+        int end = off + len;
+        boolean negative = (buf.get(off) == '-');
+        if (negative && len == 1)
+        {
+            return null;
+        }
+        if (negative)
+        {
+            i++;
+        }
+
+        long n = 0;
+        for (; i<end; i++)
+        {
+            int digit = buf.get(i) - '0';
+            if (digit < 0 || digit > 9)
+            {
+                return null;
+            }
+            n = n * 10 + digit;
+        }
+
+        return lookup(negative ? -n : n);
+    }
+
+    /**
+     * Returns the description of an enumerated value.
+     *
+     * @param value The enumerated value.
+     * @return The interned description, or null if the value is not defined.
+     */
+    public String getDescription(int value)
+    {
+        Enum enm = get(value);
+        return (enm != null) ? enm.enumdesc : null;
+    }
+
+    /**
+     * Returns the description of an enumerated value given as text.
+     *
+     * @param value The enumerated value, for e.g. "111".
+     * @return The interned description, or null if the text is not a defined value.
+     */
+    public String getDescription(CharSequence value)
+    {
+        Enum enm = get(value);
+        return (enm != null) ? enm.enumdesc : null;
+    }
+
+    /**
+     * Returns the description of an enumerated value held as ASCII digits in
+     * a buffer.
+     *
+     * @param buf The buffer holding the digits.
+     * @param off The index of the first character.
+     * @param len The number of characters.
+     * @return The interned description, or null if the characters are not a
+     * defined value.
+     */
+    public String getDescription(ByteBuffer buf, int off, int len)
+    {
+        Enum enm = get(buf, off, len);
+        return (enm != null) ? enm.enumdesc : null;
+    }
+
+    /**
+     * Checks if a value is defined.
+     *
+     * @param value The enumerated value.
+     * @return {@code true} if the value is defined, {@code false} otherwise.
+     */
+    public boolean contains(int value)
+    {
+        return get(value) != null;
+    }
+
+    /**
+     * Returns the definitions sorted on value.
+     *
+     * @return The unmodifiable collection of definitions.
+     */
+    public Collection<Enum> getEnums()
+    {
+        return _enums.values();
+    }
+
+    /**
+     * Looks up a parsed value, which may be out of the int range.
+     */
+    private Enum lookup(long value)
+    {
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE)
+        {
+            return null;
+        }
+
+        return get((int) value);
+    }
+
+    /**
+     * Returns the string representation of this table.
+     *
+     * @return The token number and the number of definitions.
+     */
+    @Override
+    public String toString()
+    {
+        return "EnumTable [Token=" + _toknum + ",Size=" + _enums.size() + "]";
+    }
+}
@@ -4,6 +4,8 @@
 
 package com.idms.csp.ctf.data;
 
+import com.idms.csp.ctf.util.TimestampFormatter;
+import com.idms.csp.ctf.util.Price;
 import com.idms.csp.ctf.util.Util;
 
 import java.io.PrintStream;
@@ -21,6 +23,10 @@ public class Field
     
     // Value associated with this field
     private String _value;
+
+    // The data dictionary of the message holding this field, or null for
+    // the default one.
+    DictSnapshot _dict;
     
     /**
      * Default constructor.
@@ -141,6 +147,17 @@ public class Field
         return Double.NaN;
     }
 
+    /**
+     * Returns the value of the token associated with this field as an exact
+     * fixed point price. See the Price class.
+     * 
+     * @return The fixed point price, or Price.NaN if the value is not a number.
+     */
+    public long getPriceValue()
+    {
+        return Price.parse(_value);
+    }
+
     /**
      * Returns the value of the token associated with this field as the UTC time
      * in milliseconds.
@@ -157,6 +174,42 @@ public class Field
         return -1;
     }
 
+    /**
+     * Returns the enumeration definition of the value of this field, for e.g.
+     * the SIC.DESC "111" decodes to "Wheat". The value is looked up in the
+     * EnumTable of the token without allocating.
+     * 
+     * @return The Enum object, or null if the token has no enumerations or
+     * the value is not defined.
+     */
+    public Enum getEnum()
+    {
+        if (_token != null && _value != null)
+        {
+            DictSnapshot dict = (_dict != null) ? _dict : DataDict.getSnapshot();
+            EnumTable table = dict.getEnumTable(_token.num);
+            if (table != null)
+            {
+                return table.get(_value);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns the description of the enumerated value of this field.
+     * 
+     * @return The description, or null if the value is not a defined
+     * enumeration.
+     */
+    public String getEnumDescription()
+    {
+        Enum enm = getEnum();
+
+        return (enm != null) ? enm.enumdesc : null;
+    }
+
     /**
      * Returns the Date String associated with the DateTime value for this field
      * in MM/dd/yyyy format. For e.g. "05/20/2008"
@@ -210,7 +263,18 @@ public class Field
         {
             if (_token.type == Token.Type.DATETIME)
             {
-                out.println("  <"+_token.name+"=\""+this.getDate()+" "+this.getTime()+"\"/>");
+                StringBuilder sb = new StringBuilder(64);
+                sb.append("  <").append(_token.name).append("=\"");
+                long time = getUTCTimeValue();
+                if (time != -1)
+                {
+                    TimestampFormatter.local().append(time, sb);
+                }
+                else
+                {
+                    sb.append(_value);
+                }
+                out.println(sb.append("\"/>"));
             }
             else
             {
@@ -0,0 +1,134 @@
+/*
+ * IntTable.java
+ */
+
+package com.idms.csp.ctf.data;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class is an immutable table of objects keyed on small integers, for
+ * e.g. tokens keyed on token number. The objects are held in an array indexed
+ * by key minus the smallest key, so a lookup is a bounds check and an array
+ * load. Keys far outside the range of token numbers are rare, they are kept
+ * in a hash map rather than stretching the array.
+ * <p>
+ * A table never changes once it is created. Updates create a new table, which
+ * the owner publishes through a volatile field, so readers never lock.
+ */
+final class IntTable<T>
+{
+    // Range of keys held in the array.
+    private static final int DENSE_MIN = -0x10000;
+    private static final int DENSE_MAX = 0x20000;
+
+    // The table without entries.
+    private static final IntTable<Object> EMPTY = new IntTable<Object>(0, new Object[0], null);
+
+    // The key of the first array element.
+    private final int _base;
+
+    // The objects in the dense range, indexed by key - _base.
+    private final Object[] _values;
+
+    // The objects outside the dense range, or null if there are none.
+    private final Map<Integer, Object> _sparse;
+
+    /**
+     * Creates a table from its parts.
+     */
+    private IntTable(int base, Object[] values, Map<Integer, Object> sparse)
+    {
+        _base = base;
+        _values = values;
+        _sparse = sparse;
+    }
+
+    /**
+     * Returns the table without entries.
+     *
+     * @return The empty table.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> IntTable<T> empty()
+    {
+        return (IntTable<T>) EMPTY;
+    }
+
+    /**
+     * Returns the object keyed on the given integer.
+     *
+     * @param key The key.
+     * @return The object, or null if there is none.
+     */
+    @SuppressWarnings("unchecked")
+    T get(int key)
+    {
+        int i = key - _base;
+        if (i >= 0 && i < _values.length)
+        {
+            return (T) _values[i];
+        }
+
+        if (_sparse != null)
+        {
+            return (T) _sparse.get(Integer.valueOf(key));
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns a new table holding the entries of this table and the given
+     * entries, which replace entries with the same key. Add entries in bulk
+     * where possible, each call copies the table.
+     *
+     * @param entries The entries to add.
+     * @return The new table.
+     */
+    IntTable<T> with(Map<Integer, ? extends T> entries)
+    {
+        // Range of the dense keys of both.
+        int min = _base;
+        int max = _base + _values.length - 1;
+        boolean dense = (_values.length > 0);
+
+        for (Integer key : entries.keySet())
+        {
+            if (key >= DENSE_MIN && key <= DENSE_MAX)
+            {
+                min = dense ? Math.min(min, key) : key;
+                max = dense ? Math.max(max, key) : key;
+                dense = true;
+            }
+        }
+
+        Object[] values = new Object[dense ? max - min + 1 : 0];
+        if (_values.length > 0)
+        {
+            System.arraycopy(_values, 0, values, _base - min, _values.length);
+        }
+
+        Map<Integer, Object> sparse = (_sparse != null) ? new HashMap<Integer, Object>(_sparse) : null;
+
+        for (Map.Entry<Integer, ? extends T> entry : entries.entrySet())
+        {
+            int key = entry.getKey();
+            if (key >= DENSE_MIN && key <= DENSE_MAX)
+            {
+                values[key - min] = entry.getValue();
+            }
+            else
+            {
+                if (sparse == null)
+                {
+                    sparse = new HashMap<Integer, Object>();
+                }
+                sparse.put(key, entry.getValue());
+            }
+        }
+
+        return new IntTable<T>(dense ? min : 0, values, sparse);
+    }
+}
@@ -0,0 +1,564 @@
+/*
+ * JSONWriter.java
+ */
+
+package com.idms.csp.ctf.data;
+
+import com.idms.csp.ctf.util.Price;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * This class writes messages as JSON objects keyed on token name, one object
+ * per line, for e.g.
+ * <br><code>{"SYMBOL.TICKER":"IBM","TRADE.PRICE":101.19,"TRADE.SIZE":100,"PERMISSION":[2,7]}</code>
+ * <p>
+ * The values of INTEGER, FLOAT and DATETIME tokens are written as JSON
+ * numbers, and those of BOOL tokens as true or false, see Token.getType().
+ * A value that is not a valid JSON number, for e.g. an empty one, is written
+ * as a string. A token repeated in a message is written once, with an array
+ * of its values. The <code>"NAME":</code> key of each token is compiled once.
+ * <p>
+ * Option chains are written as one object holding the calls and the puts.
+ * The routines that write the keys and values are available to subclasses,
+ * for e.g. TaSJSONWriter. See MessageWriter.
+ */
+public class JSONWriter extends MessageWriter
+{
+    // Literals.
+    private static final byte[] NULL = ascii("null");
+    private static final byte[] TRUE = ascii("true");
+    private static final byte[] FALSE = ascii("false");
+
+    // Keys of the option chain object.
+    private static final byte[] CALLS = key("calls");
+    private static final byte[] PUTS = key("puts");
+    private static final byte[] STATUS = key("status");
+
+    // Hexadecimal digits, for the escaped characters.
+    private static final byte[] HEX = ascii("0123456789abcdef");
+
+    // Set once a value has been written in the current object or array, so
+    // the next one is preceded by a comma.
+    private boolean _comma;
+
+    // The token of the field being written.
+    private Token _token;
+
+    // Scratch space for the digits of a number.
+    private final byte[] _digits = new byte[20];
+
+    /**
+     * Creates a writer that keeps the output in its buffer.
+     */
+    public JSONWriter()
+    {
+        super(null, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Creates a writer to a stream.
+     *
+     * @param out The OutputStream to write to.
+     */
+    public JSONWriter(OutputStream out)
+    {
+        super(out);
+    }
+
+    /**
+     * Creates a writer to a stream.
+     *
+     * @param out The OutputStream to write to, or null to keep the output in
+     * the buffer.
+     * @param size The size of the buffer.
+     */
+    public JSONWriter(OutputStream out, int size)
+    {
+        super(out, size);
+    }
+
+    /**
+     * Writes a message as an object on its own line.
+     *
+     * @param msg The Message object.
+     * @throws IOException If the stream can't be written to.
+     */
+    @Override
+    public void write(Message msg) throws IOException
+    {
+        super.write(msg);
+        endLine();
+    }
+
+    /**
+     * Writes an option chain as an object on its own line, for e.g.
+     * <br><code>{"status":"OK","calls":[{...},...],"puts":[{...},...]}</code>
+     *
+     * @param chain The OptionChain object.
+     * @throws IOException If the stream can't be written to.
+     */
+    public void write(OptionChain chain) throws IOException
+    {
+        beginObject();
+
+        Status status = chain.getStatus();
+        if (status != null)
+        {
+            key(STATUS);
+            putString(status.getDescription());
+        }
+
+        key(CALLS);
+        beginArray();
+        for (Message msg : chain.getCallChain())
+        {
+            super.write(msg);
+        }
+        endArray();
+
+        key(PUTS);
+        beginArray();
+        for (Message msg : chain.getPutChain())
+        {
+            super.write(msg);
+        }
+        endArray();
+
+        endObject();
+        endLine();
+    }
+
+    /**
+     * Discards the output held in the buffer, including a partly written
+     * object, so the buffer can be reused.
+     */
+    @Override
+    public void reset()
+    {
+        super.reset();
+        _comma = false;
+    }
+
+    @Override
+    protected void begin(Message msg) throws IOException
+    {
+        beginObject();
+    }
+
+    @Override
+    protected void field(Field field) throws IOException
+    {
+        Token token = field.getToken();
+        key(tokenBytes(token));
+        putValue(token, field.getValue());
+    }
+
+    @Override
+    protected boolean groupsRepeats()
+    {
+        return true;
+    }
+
+    @Override
+    protected void beginRepeat(Field field) throws IOException
+    {
+        _token = field.getToken();
+        key(tokenBytes(_token));
+        beginArray();
+    }
+
+    @Override
+    protected void repeat(Field field) throws IOException
+    {
+        putValue(_token, field.getValue());
+    }
+
+    @Override
+    protected void endRepeat() throws IOException
+    {
+        endArray();
+    }
+
+    @Override
+    protected void end(Message msg) throws IOException
+    {
+        endObject();
+    }
+
+    /**
+     * Compiles the key of a token, for e.g. "TRADE.PRICE":
+     */
+    @Override
+    protected byte[] compile(Token token)
+    {
+        return key(token.getName());
+    }
+
+    /**
+     * Returns the bytes of a key, for e.g. "name": for name.
+     *
+     * @param name The key, made of ASCII characters that need no escaping.
+     * @return The bytes of the quoted key and the colon.
+     */
+    protected static byte[] key(String name)
+    {
+        return ascii("\"" + name + "\":");
+    }
+
+    /**
+     * Starts an object.
+     *
+     * @throws IOException If the stream can't be written to.
+     */
+    protected final void beginObject() throws IOException
+    {
+        separate();
+        put((byte) '{');
+        _comma = false;
+    }
+
+    /**
+     * Ends an object.
+     *
+     * @throws IOException If the stream can't be written to.
+     */
+    protected final void endObject() throws IOException
+    {
+        put((byte) '}');
+        _comma = true;
+    }
+
+    /**
+     * Starts an array.
+     *
+     * @throws IOException If the stream can't be written to.
+     */
+    protected final void beginArray() throws IOException
+    {
+        separate();
+        put((byte) '[');
+        _comma = false;
+    }
+
+    /**
+     * Ends an array.
+     *
+     * @throws IOException If the stream can't be written to.
+     */
+    protected final void endArray() throws IOException
+    {
+        put((byte) ']');
+        _comma = true;
+    }
+
+    /**
+     * Ends the line of a top level value.
+     *
+     * @throws IOException If the stream can't be written to.
+     */
+    protected final void endLine() throws IOException
+    {
+        put((byte) '\n');
+        _comma = false;
+    }
+
+    /**
+     * Writes the key of the next value of an object.
+     *
+     * @param key The key bytes, see key(String).
+     * @throws IOException If the stream can't be written to.
+     */
+    protected final void key(byte[] key) throws IOException
+    {
+        separate();
+        put(key);
+        _comma = false;
+    }
+
+    /**
+     * Writes an integer.
+     *
+     * @param value The value.
+     * @throws IOException If the stream can't be written to.
+     */
+    protected final void putNumber(long value) throws IOException
+    {
+        separate();
+        putDigits(value);
+        _comma = true;
+    }
+
+    /**
+     * Writes a fixed point price as a number, see Price. The NaN price is
+     * written as null.
+     *
+     * @param price The price.
+     * @throws IOException If the stream can't be written to.
+     */
+    protected final void putPrice(long price) throws IOException
+    {
+        separate();
+        _comma = true;
+
+        if (Price.isNaN(price))
+        {
+            put(NULL);
+            return;
+        }
+
+        long mantissa = Price.mantissa(price);
+        int scale = Price.scale(price);
+        if (scale == 0)
+        {
+            putDigits(mantissa);
+            return;
+        }
+
+        if (mantissa < 0)
+        {
+            put((byte) '-');
+            mantissa = -mantissa;
+        }
+
+        long pow = 1;
+        for (int i=0; i<scale; i++)
+        {
+            pow *= 10;
+        }
+
+        putDigits(mantissa / pow);
+        put((byte) '.');
+
+        // The fraction, with its leading zeros.
+        long fraction = mantissa % pow;
+        for (long p=pow/10; p>fraction && p>1; p/=10)
+        {
+            put((byte) '0');
+        }
+        putDigits(fraction);
+    }
+
+    /**
+     * Writes a string, or null.
+     *
+     * @param value The value.
+     * @throws IOException If the stream can't be written to.
+     */
+    protected final void putString(String value) throws IOException
+    {
+        separate();
+        _comma = true;
+
+        if (value == null)
+        {
+            put(NULL);
+            return;
+        }
+
+        put((byte) '"');
+        boolean plain = true;
+        for (int i=0; i<value.length() && plain; i++)
+        {
+            char c = value.charAt(i);
+            plain = (c >= 0x20 && c < 0x80 && c != '"' && c != '\\');
+        }
+
+        if (plain)
+        {
+            putAscii(value);
+        }
+        else
+        {
+            putEscaped(value);
+        }
+        put((byte) '"');
+    }
+
+    /**
+     * Writes a value of a token, as a number, a boolean or a string
+     * according to its type.
+     *
+     * @param token The Token object.
+     * @param value The value.
+     * @throws IOException If the stream can't be written to.
+     */
+    protected final void putValue(Token token, String value) throws IOException
+    {
+        if (value == null)
+        {
+            separate();
+            put(NULL);
+            _comma = true;
+            return;
+        }
+
+        switch (token.getType())
+        {
+            case INTEGER:
+            case FLOAT:
+            case DATETIME:
+                if (isNumber(value))
+                {
+                    separate();
+                    putAscii(value);
+                    _comma = true;
+                    return;
+                }
+                break;
+
+            case BOOL:
+                // As Field.getBoolValue()
+                separate();
+                put("0".equals(value) ? FALSE : TRUE);
+                _comma = true;
+                return;
+
+            default:
+                break;
+        }
+
+        putString(value);
+    }
+
+    /**
+     * Writes a comma if a value precedes.
+     */
+    private void separate() throws IOException
+    {
+        if (_comma)
+        {
+            put((byte) ',');
+        }
+    }
+
+    /**
+     * Writes the digits of an integer, rendered backwards into a scratch
+     * array.
+     */
+    private void putDigits(long value) throws IOException
+    {
+        if (value == Long.MIN_VALUE)
+        {
+            putAscii(Long.toString(value));
+            return;
+        }
+
+        boolean negative = (value < 0);
+        if (negative)
+        {
+            value = -value;
+        }
+
+        int i = _digits.length;
+        do
+        {
+            _digits[--i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        while (value != 0);
+
+        if (negative)
+        {
+            _digits[--i] = '-';
+        }
+        put(_digits, i, _digits.length - i);
+    }
+
+    /**
+     * Writes the characters of a string, escaping quotes, backslashes,
+     * control characters and characters outside the ASCII range.
+     */
+    private void putEscaped(String value) throws IOException
+    {
+        for (int i=0; i<value.length(); i++)
+        {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\')
+            {
+                put((byte) '\\');
+                put((byte) c);
+            }
+            else if (c >= 0x20 && c < 0x80)
+            {
+                put((byte) c);
+            }
+            else
+            {
+                put((byte) '\\');
+                put((byte) 'u');
+                put(HEX[(c >> 12) & 0xf]);
+                put(HEX[(c >> 8) & 0xf]);
+                put(HEX[(c >> 4) & 0xf]);
+                put(HEX[c & 0xf]);
+            }
+        }
+    }
+
+    /**
+     * Checks if a value is a valid JSON number, for e.g. "-12.5" but not
+     * "+1", "007" or "1.".
+     */
+    private static boolean isNumber(String value)
+    {
+        int len = value.length();
+        int i = 0;
+
+        if (i < len && value.charAt(i) == '-')
+        {
+            i++;
+        }
+
+        // Integer part, without leading zeros.
+        int start = i;
+        while (i < len && isDigit(value.charAt(i)))
+        {
+            i++;
+        }
+        if (i == start || (value.charAt(start) == '0' && i - start > 1))
+        {
+            return false;
+        }
+
+        // Fraction
+        if (i < len && value.charAt(i) == '.')
+        {
+            start = ++i;
+            while (i < len && isDigit(value.charAt(i)))
+            {
+                i++;
+            }
+            if (i == start)
+            {
+                return false;
+            }
+        }
+
+        // Exponent
+        if (i < len && (value.charAt(i) == 'e' || value.charAt(i) == 'E'))
+        {
+            i++;
+            if (i < len && (value.charAt(i) == '+' || value.charAt(i) == '-'))
+            {
+                i++;
+            }
+            start = i;
+            while (i < len && isDigit(value.charAt(i)))
+            {
+                i++;
+            }
+            if (i == start)
+            {
+                return false;
+            }
+        }
+
+        return i == len;
+    }
+
+    private static boolean isDigit(char c)
+    {
+        return c >= '0' && c <= '9';
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * MarketCenterTable.java
+ */
+
+package com.idms.csp.ctf.data;
+
+import java.util.Map;
+
+/**
+ * This class holds the market center names, for e.g. "n" -> "NYSE", in an
+ * array indexed by the participant code, so a name is looked up with an
+ * array load. Participant codes are single ASCII characters, records keep
+ * them as a byte rather than a String. Per participant figures can be kept
+ * in arrays of SIZE elements, for e.g.
+ * <br><code>long[] volume = new long[MarketCenterTable.SIZE];
+ * <br>volume[trade.getParticipant()] += trade.getTradeSize();</code>
+ * <p>
+ * The table of a data dictionary is built when its market center codes are
+ * loaded, see DictSnapshot.getMarketCenterTable().
+ */
+public final class MarketCenterTable
+{
+    // Number of participant codes, the ASCII characters.
+    public static final int SIZE = 128;
+
+    // The code of a record without participant.
+    public static final byte NONE = 0;
+
+    // The one character strings of the codes, so they are never allocated.
+    private static final String[] CODES = new String[SIZE];
+    static
+    {
+        for (int i=1; i<SIZE; i++)
+        {
+            CODES[i] = String.valueOf((char) i).intern();
+        }
+    }
+
+    // The market center names indexed by participant code.
+    private final String[] _names = new String[SIZE];
+
+    /**
+     * Creates the table from the market center codes, as read from
+     * "mccodes.dat". Codes that are not a single ASCII character are ignored.
+     *
+     * @param codes The market center names keyed on code.
+     */
+    MarketCenterTable(Map<?, ?> codes)
+    {
+        for (Map.Entry<?, ?> entry : codes.entrySet())
+        {
+            byte code = codeOf(String.valueOf(entry.getKey()));
+            if (code != NONE)
+            {
+                _names[code] = String.valueOf(entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Returns the participant code of a one character string.
+     *
+     * @param code The participant code, for e.g. "n".
+     * @return The code as a byte, or NONE if it is null, empty or not a
+     * single ASCII character.
+     */
+    public static byte codeOf(String code)
+    {
+        if (code == null || code.length() != 1)
+        {
+            return NONE;
+        }
+
+        char c = code.charAt(0);
+        return (c < SIZE) ? (byte) c : NONE;
+    }
+
+    /**
+     * Returns the string of a participant code, without allocating.
+     *
+     * @param code The participant code.
+     * @return The one character string, or null for NONE or a code outside
+     * the ASCII range.
+     */
+    public static String toString(byte code)
+    {
+        return (code > 0) ? CODES[code] : null;
+    }
+
+    /**
+     * Returns the market center name of a participant code.
+     *
+     * @param code The participant code.
+     * @return The name, for e.g. "NYSE", or null if the code is not defined.
+     */
+    public String getName(byte code)
+    {
+        return (code > 0) ? _names[code] : null;
+    }
+
+    /**
+     * Returns the market center name of a participant code.
+     *
+     * @param code The participant code, for e.g. 'n'.
+     * @return The name, or null if the code is not defined.
+     */
+    public String getName(char code)
+    {
+        return (code > 0 && code < SIZE) ? _names[code] : null;
+    }
+
+    /**
+     * Checks if a participant code is defined.
+     *
+     * @param code The participant code.
+     * @return {@code true} if the code has a name.
+     */
+    public boolean contains(byte code)
+    {
+        return getName(code) != null;
+    }
+}
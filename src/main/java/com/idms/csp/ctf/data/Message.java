@@ -7,20 +7,31 @@
 
 package com.idms.csp.ctf.data;
 
+import com.idms.csp.ctf.util.Ascii;
+import com.idms.csp.ctf.util.OptionSymbol;
 import com.idms.csp.ctf.util.Util;
 
+import java.io.IOException;
 import java.io.PrintStream;
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.StringTokenizer;
 
 /**
  * This class represents the CTF message.
+ * <p>
+ * By default a message can be read and modified from several threads at once,
+ * every access takes a lock. A message created in SINGLE_WRITER mode takes no
+ * locks: it is filled by one thread and then frozen with <code>freeze()</code>
+ * before it is handed to other threads, which can then read it concurrently.
  */
 public class Message 
 {
+    /** Concurrency Modes */
+    public static enum Mode { SHARED, SINGLE_WRITER }
+
     // CTF Frame Constants
     public static final byte CTF_FRAME_START         = 0x04;
     public static final byte CTF_PROTOCOL_SIGNATURE  = 0x20;
@@ -29,16 +40,82 @@ public class Message
     // Length of CTF Header and Trailer
     public static final int CTF_FRAME_OVERHEAD_SIZE = 7;
 
+    // Token used to tell calls from puts.
+    private static final TokenHandle SYMBOL_TICKER = TokenHandle.of("SYMBOL.TICKER");
+
     // The Fields
-    private List<Field> _fields 
-            = Collections.synchronizedList(new ArrayList<Field>());
+    private List<Field> _fields = new ArrayList<Field>();
+
+    // Slots of the fields in _fields keyed on token number.
+    private TokenIndex _index = new TokenIndex();
+
+    // Guards _fields and _index in SHARED mode. Null in SINGLE_WRITER mode.
+    private final Object _lock;
+
+    // Set once the message can no longer change. Reads take no lock from then on.
+    private volatile boolean _frozen = false;
+
+    // The pool this message is returned to on release(). Null if not pooled.
+    private final MessagePool _pool;
+
+    // Set once the message is released, whether the pool kept it or dropped
+    // it, until acquired again. Guarded by the pool.
+    boolean _pooled = false;
+
+    // Fields of the previous use of a pooled message, reused by add().
+    private Field[] _spareFields;
+    private int _spareCount;
+
+    // The data dictionary the fields are resolved against. Taken when the
+    // message is created or handed out by its pool.
+    DictSnapshot _dict;
+
+    // The MessageKind bits of the fields added so far. Guarded like _fields.
+    private int _kind;
             
     /**
      * Default constructor.
      */
     public Message() 
     {
-        
+        this(Mode.SHARED);
+    }
+
+    /**
+     * Constructs an empty message in the given concurrency mode.
+     * 
+     * @param mode SHARED for a message that is modified while other threads
+     * read it, SINGLE_WRITER for a message that is built by one thread.
+     */
+    public Message(Mode mode)
+    {
+        this(mode, DataDict.getDefault());
+    }
+
+    /**
+     * Constructs an empty message bound to a data dictionary, for e.g. the
+     * one of a second feed.
+     * 
+     * @param mode The concurrency mode.
+     * @param dict The data dictionary tokens are resolved against.
+     */
+    public Message(Mode mode, DataDictionary dict)
+    {
+        _lock = (mode == Mode.SHARED) ? _fields : null;
+        _pool = null;
+        _dict = dict.getSnapshot();
+    }
+
+    /**
+     * Constructs an empty SINGLE_WRITER message owned by a pool.
+     * 
+     * @param pool The pool the message is returned to.
+     */
+    Message(MessagePool pool)
+    {
+        _lock = null;
+        _pool = pool;
+        _dict = pool.getDictionary().getSnapshot();
     }
 
     /**
@@ -49,6 +126,33 @@ public class Message
      */
     public Message(String msg)
     {
+        this(msg, Mode.SHARED);
+    }
+
+    /**
+     * Constructs a message object in the given concurrency mode given a CTF
+     * message.
+     * 
+     * @param msg The CTF message.
+     * @param mode The concurrency mode.
+     */
+    public Message(String msg, Mode mode)
+    {
+        this(msg, mode, DataDict.getDefault());
+    }
+
+    /**
+     * Constructs a message object bound to a data dictionary given a CTF
+     * message.
+     * 
+     * @param msg The CTF message.
+     * @param mode The concurrency mode.
+     * @param dict The data dictionary tokens are resolved against.
+     */
+    public Message(String msg, Mode mode, DataDictionary dict)
+    {
+        this(mode, dict);
+
         StringTokenizer st = new StringTokenizer(msg, "|");
         while (st.hasMoreTokens())
         {
@@ -68,6 +172,56 @@ public class Message
         }
     }
 
+    /**
+     * Constructs a message object given the payload of a CTF frame, parsed
+     * straight from its bytes between the position and the limit of the
+     * buffer. The position of the buffer is not changed.
+     *
+     * @param payload The CTF payload.
+     */
+    public Message(ByteBuffer payload)
+    {
+        this(payload, Mode.SHARED, DataDict.getDefault());
+    }
+
+    /**
+     * Constructs a message object bound to a data dictionary given the
+     * payload of a CTF frame.
+     *
+     * @param payload The CTF payload.
+     * @param mode The concurrency mode.
+     * @param dict The data dictionary tokens are resolved against.
+     */
+    public Message(ByteBuffer payload, Mode mode, DataDictionary dict)
+    {
+        this(mode, dict);
+
+        int end = payload.limit();
+        int pos = payload.position();
+        while (pos < end)
+        {
+            // The value may itself hold '=', so only the first one ends the token number.
+            int eq = Ascii.indexOf(payload, MessageView.VALUE_SEPARATOR, MessageView.FIELD_SEPARATOR, pos, end);
+            if (eq == end || payload.get(eq) == MessageView.FIELD_SEPARATOR)
+            {
+                // Missing value
+                pos = eq + 1;
+                continue;
+            }
+
+            int bar = Ascii.indexOf(payload, MessageView.FIELD_SEPARATOR, eq + 1, end);
+
+            // Skip malformed token numbers.
+            int toknum = Ascii.parseInt(payload, pos, eq - pos);
+            if (toknum >= 0)
+            {
+                add(toknum, Ascii.toString(payload, eq + 1, bar - eq - 1));
+            }
+
+            pos = bar + 1;
+        }
+    }
+
     /**
      * Returns the field associated with the token number. For e.g. To obtain
      * the current price field whose token number is "14":
@@ -78,14 +232,33 @@ public class Message
      */
     public Field get(int toknum)
     {
-        // Find the token definition in the Data Dict by number
-        Token token = DataDict.getToken(toknum);
+        if (isLockFree())
+        {
+            return lookup(toknum);
+        }
 
-        if (token != null)
+        synchronized(_lock)
         {
-            return find(token);
+            return lookup(toknum);
         }
-        
+    }
+
+    /**
+     * Returns the first field that carries the token. The caller holds the
+     * lock if one is needed.
+     * 
+     * @param toknum The token number.
+     * @return The Field object.
+     */
+    private Field lookup(int toknum)
+    {
+        // Only tokens defined in the Data Dict are ever indexed
+        int slot = _index.first(toknum);
+        if (slot != TokenIndex.NONE)
+        {
+            return _fields.get(slot);
+        }
+
         return null;
     }
     
@@ -100,7 +273,7 @@ public class Message
     public Field get(String tokname)
     {
         // Find the token definition in the Data Dict by name
-        Token token = DataDict.getToken(tokname);
+        Token token = _dict.getToken(tokname);
 
         if (token != null)
         {
@@ -110,6 +283,23 @@ public class Message
         return null;
     }
 
+    /**
+     * Returns the field associated with the token handle. Unlike get(String),
+     * the token name is not looked up for every message, see TokenHandle.
+     * For e.g.
+     * <br><code>static final TokenHandle TRADE_PRICE = TokenHandle.of("TRADE.PRICE");
+     * <br>Field lastPrice = msg.get(TRADE_PRICE);</code>
+     * 
+     * @param handle The token handle.
+     * @return The Field object.
+     */
+    public Field get(TokenHandle handle)
+    {
+        int toknum = handle.getNum(_dict);
+
+        return (toknum >= 0) ? get(toknum) : null;
+    }
+
     /**
      * Returns all the fields associated with the token name. For e.g. To 
      * obtain all the fields that contain permission token "PERMISSION":
@@ -121,7 +311,7 @@ public class Message
     public Field[] getAll(String tokname)
     {
         // Find the token definition in the Data Dict by name
-        Token token = DataDict.getToken(tokname);
+        Token token = _dict.getToken(tokname);
         
         if (token != null)
         {
@@ -131,6 +321,20 @@ public class Message
         return new Field[0];
     }
     
+    /**
+     * Returns all the fields associated with the token handle. Unlike
+     * getAll(String), the token name is not looked up for every message.
+     * 
+     * @param handle The token handle.
+     * @return The array of field objects.
+     */
+    public Field[] getAll(TokenHandle handle)
+    {
+        int toknum = handle.getNum(_dict);
+
+        return (toknum >= 0) ? getAll(toknum) : new Field[0];
+    }
+
     /**
      * Returns all the fields associated with the token number. For e.g. To 
      * obtain all the fields that contain permission token "3":
@@ -140,26 +344,33 @@ public class Message
      * @return The array of field objects.
      */
     public Field[] getAll(int toknum)
+    {
+        if (isLockFree())
+        {
+            return lookupAll(toknum);
+        }
+
+        synchronized(_lock)
+        {
+            return lookupAll(toknum);
+        }
+    }
+
+    /**
+     * Returns all the fields that carry the token. The caller holds the lock
+     * if one is needed.
+     * 
+     * @param toknum The token number.
+     * @return The array of field objects.
+     */
+    private Field[] lookupAll(int toknum)
     {
         List flist = new ArrayList();
         
-        // Find the token definition in the Data Dict by num
-        Token token = DataDict.getToken(toknum);
-
-        if (token != null)
+        // Follow the chain of fields that carry the token
+        for (int slot=_index.first(toknum); slot!=TokenIndex.NONE; slot=_index.next(slot))
         {
-            // Search for the token in the fields
-            synchronized(_fields)
-            {
-                for (Field field : _fields)
-                {
-                    // Collect all the matching tokens
-                    if (field.getToken().num == token.num)
-                    {
-                        flist.add(field);
-                    }
-                }
-            }
+            flist.add(_fields.get(slot));
         }
         
         return (Field[]) flist.toArray(new Field[flist.size()]);
@@ -172,7 +383,15 @@ public class Message
      */
     public Field[] getAll()
     {
-        return (Field[]) _fields.toArray(new Field[_fields.size()]);
+        if (isLockFree())
+        {
+            return _fields.toArray(new Field[_fields.size()]);
+        }
+
+        synchronized(_lock)
+        {
+            return _fields.toArray(new Field[_fields.size()]);
+        }
     }
     
     /**
@@ -184,20 +403,7 @@ public class Message
      */
     public Field find(Token token)
     {
-        // Search for the token in the fields
-        synchronized(_fields)
-        {
-            for (Field field : _fields)
-            {
-                // Return the first field found
-                if (field != null && field.getToken().num == token.num)
-                {
-                    return field;
-                }
-            }
-        }
-
-        return null;
+        return get(token.num);
     }
     
     /**
@@ -210,12 +416,15 @@ public class Message
         String msg = "";
         StringBuffer sb = new StringBuffer();
 
-        synchronized(_fields)
+        if (isLockFree())
         {
-            for (Field field : _fields)
+            appendRawMessage(sb);
+        }
+        else
+        {
+            synchronized(_lock)
             {
-                sb.append(field.getToken().num).append("=").append(field.getValue());
-                sb.append("|");
+                appendRawMessage(sb);
             }
         }
 
@@ -231,6 +440,21 @@ public class Message
 
         return msg;
     }
+
+    /**
+     * Appends the fields in CTF format, each followed by a "|". The caller
+     * holds the lock if one is needed.
+     * 
+     * @param sb The StringBuffer to append to.
+     */
+    private void appendRawMessage(StringBuffer sb)
+    {
+        for (Field field : _fields)
+        {
+            sb.append(field.getToken().num).append("=").append(field.getValue());
+            sb.append("|");
+        }
+    }
     
     /**
      * Converts this object into a byte stream after applying the CTF protocol
@@ -240,30 +464,318 @@ public class Message
      */
     public byte[] serialize()
     {
-        String msg = this.getRawMessage();
-        byte[] data = msg.getBytes();
-        
-        // Create the CTF command
-        ByteBuffer cmdBuffer = ByteBuffer.allocate(data.length+Message.CTF_FRAME_OVERHEAD_SIZE);
+        if (isLockFree())
+        {
+            return toFrame();
+        }
 
-        // Frame Start, Protocol Signature
-        cmdBuffer.put(Message.CTF_FRAME_START).put(Message.CTF_PROTOCOL_SIGNATURE);
+        synchronized(_lock)
+        {
+            return toFrame();
+        }
+    }
 
-        // Payload size, Payload
-        cmdBuffer.putInt(data.length).put(data);
+    /**
+     * Writes this message, with the CTF protocol headers and trailers, at the
+     * position of the buffer. Several messages can be written one after the
+     * other to send them with a single socket write. Nothing is written if the
+     * buffer is too small.
+     * 
+     * @param out The buffer to write to.
+     * @return The number of bytes written.
+     * @throws BufferOverflowException If the frame does not fit in the buffer.
+     */
+    public int serialize(ByteBuffer out)
+    {
+        if (isLockFree())
+        {
+            return writeFrame(out);
+        }
+
+        synchronized(_lock)
+        {
+            return writeFrame(out);
+        }
+    }
+
+    /**
+     * Writes a CTF formatted message given as text, with the CTF protocol
+     * headers and trailers, at the position of the buffer. For e.g.
+     * <br><code>Message.serialize("5022=ListAvailableTokens|5026=1", out);</code>
+     * 
+     * @param msg The CTF message.
+     * @param out The buffer to write to.
+     * @return The number of bytes written.
+     * @throws BufferOverflowException If the frame does not fit in the buffer.
+     */
+    public static int serialize(CharSequence msg, ByteBuffer out)
+    {
+        int size = msg.length() + Message.CTF_FRAME_OVERHEAD_SIZE;
+        if (out.remaining() < size)
+        {
+            throw new BufferOverflowException();
+        }
+
+        putHeader(out, msg.length());
+        Ascii.put(out, msg);
+        out.put(Message.CTF_FRAME_END);
+
+        return size;
+    }
+
+    /**
+     * Returns the frame holding this message in a new array. The caller holds
+     * the lock if one is needed.
+     * 
+     * @return The CTF frame.
+     */
+    private byte[] toFrame()
+    {
+        ByteBuffer cmdBuffer = ByteBuffer.allocate(getPayloadSize() + Message.CTF_FRAME_OVERHEAD_SIZE);
+        writeFrame(cmdBuffer);
 
-        // Frame End
-        cmdBuffer.put(Message.CTF_FRAME_END);
-        
         return cmdBuffer.array();
     }
 
+    /**
+     * Writes the frame holding this message at the position of the buffer.
+     * The caller holds the lock if one is needed.
+     * 
+     * @param out The buffer to write to.
+     * @return The number of bytes written.
+     */
+    private int writeFrame(ByteBuffer out)
+    {
+        int payloadSize = getPayloadSize();
+        if (out.remaining() < payloadSize + Message.CTF_FRAME_OVERHEAD_SIZE)
+        {
+            throw new BufferOverflowException();
+        }
+
+        putHeader(out, payloadSize);
+
+        // Same layout as getRawMessage(), without the last "|"
+        for (int i=0; i<_fields.size(); i++)
+        {
+            Field field = _fields.get(i);
+            if (i > 0)
+            {
+                out.put(MessageView.FIELD_SEPARATOR);
+            }
+            Ascii.putLong(out, field.getToken().num);
+            out.put(MessageView.VALUE_SEPARATOR);
+            Ascii.put(out, String.valueOf(field.getValue()));
+        }
+
+        // Frame End
+        out.put(Message.CTF_FRAME_END);
+
+        return payloadSize + Message.CTF_FRAME_OVERHEAD_SIZE;
+    }
+
+    /**
+     * Returns the size in bytes of this message in CTF format. The caller
+     * holds the lock if one is needed.
+     * 
+     * @return The payload size.
+     */
+    private int getPayloadSize()
+    {
+        int size = 0;
+        for (Field field : _fields)
+        {
+            // "num=value|"
+            size += Ascii.sizeOf(field.getToken().num) + String.valueOf(field.getValue()).length() + 2;
+        }
+
+        return (size > 0) ? size - 1 : 0;
+    }
+
+    /**
+     * Writes the frame start, protocol signature and payload size.
+     * 
+     * @param out The buffer to write to.
+     * @param payloadSize The payload size.
+     */
+    private static void putHeader(ByteBuffer out, int payloadSize)
+    {
+        out.put(Message.CTF_FRAME_START).put(Message.CTF_PROTOCOL_SIGNATURE);
+
+        // Payload size in network order, whatever the order of the buffer
+        out.put((byte) (payloadSize >>> 24)).put((byte) (payloadSize >>> 16));
+        out.put((byte) (payloadSize >>> 8)).put((byte) payloadSize);
+    }
+
     /**
      * Clears all the tokens from this message.
      */
     public void clear()
     {
-       _fields.clear(); 
+        if (_lock == null)
+        {
+            checkNotFrozen();
+            _fields.clear();
+            _index.clear();
+            _kind = 0;
+            return;
+        }
+
+        synchronized(_lock)
+        {
+            checkNotFrozen();
+            _fields.clear();
+            _index.clear();
+            _kind = 0;
+        }
+    }
+
+    /**
+     * Makes this message immutable. Any further attempt to add or clear fields
+     * fails, and all reads are served without locking. A message built in
+     * SINGLE_WRITER mode must be frozen by its writer before it is shared with
+     * other threads.
+     * 
+     * @return This message.
+     */
+    public Message freeze()
+    {
+        if (_lock == null)
+        {
+            // The volatile write publishes the fields to the readers.
+            _frozen = true;
+            return this;
+        }
+
+        synchronized(_lock)
+        {
+            _frozen = true;
+        }
+
+        return this;
+    }
+
+    /**
+     * Returns this message to the pool it was acquired from once the consumer
+     * is done with it. The message and its fields must not be used after this
+     * call. Does nothing if the message does not come from a pool.
+     */
+    public void release()
+    {
+        if (_pool != null)
+        {
+            _pool.release(this);
+        }
+    }
+
+    /**
+     * Empties this message so its pool can hand it out again. The fields are
+     * kept aside and reused by the next calls to add().
+     */
+    void recycle()
+    {
+        if (_spareFields == null || _spareFields.length < _spareCount + _fields.size())
+        {
+            Field[] spare = new Field[_spareCount + _fields.size()];
+            if (_spareFields != null)
+            {
+                System.arraycopy(_spareFields, 0, spare, 0, _spareCount);
+            }
+            _spareFields = spare;
+        }
+
+        for (Field field : _fields)
+        {
+            field.setToken(null);
+            field.setValue(null);
+            _spareFields[_spareCount++] = field;
+        }
+
+        _fields.clear();
+        _index.clear();
+        _kind = 0;
+        _frozen = false;
+    }
+
+    /**
+     * Returns a field holding the token and value, reusing a spare field of
+     * a pooled message when there is one.
+     * 
+     * @param token The Token object.
+     * @param value The token value.
+     * @return The Field object.
+     */
+    private Field newField(Token token, String value)
+    {
+        Field field;
+        if (_spareCount == 0)
+        {
+            field = new Field(token, value);
+        }
+        else
+        {
+            field = _spareFields[--_spareCount];
+            _spareFields[_spareCount] = null;
+            field.setToken(token);
+            field.setValue(value);
+        }
+        field._dict = _dict;
+
+        return field;
+    }
+
+    /**
+     * Returns the data dictionary the fields of this message were resolved
+     * against.
+     * 
+     * @return The DictSnapshot object.
+     */
+    public DictSnapshot getDictSnapshot()
+    {
+        return _dict;
+    }
+
+    /**
+     * Returns the version of the data dictionary the fields of this message
+     * were resolved against, see DictSnapshot.getVersion().
+     * 
+     * @return The snapshot version.
+     */
+    public long getDictVersion()
+    {
+        return _dict.getVersion();
+    }
+
+    /**
+     * Checks if this message has been frozen.
+     * 
+     * @return {@code true} if the message is immutable, {@code false} otherwise.
+     */
+    public boolean isFrozen()
+    {
+        return _frozen;
+    }
+
+    /**
+     * Checks if the fields can be read without taking the lock. The frozen
+     * flag is read first, so a reader on another thread always performs the
+     * volatile read that pairs with the write in freeze().
+     * 
+     * @return {@code true} once frozen or in SINGLE_WRITER mode.
+     */
+    private boolean isLockFree()
+    {
+        return _frozen || _lock == null;
+    }
+
+    /**
+     * Fails if this message has been frozen.
+     */
+    private void checkNotFrozen()
+    {
+        if (_frozen)
+        {
+            throw new IllegalStateException("The message is frozen");
+        }
     }
     
     /**
@@ -276,7 +788,7 @@ public class Message
         Field field = get(5001);
         if (field != null)
         {
-            return DataDict.getStatus(field.getIntValue());
+            return _dict.getStatus(field.getIntValue());
         }
         
         return null;
@@ -312,16 +824,100 @@ public class Message
     {
         out.println("<CTFMessage>");
 
-        synchronized(_fields)
+        if (isLockFree())
+        {
+            printFields(out);
+        }
+        else
         {
-            for (Field field : _fields)
+            synchronized(_lock)
             {
-                field.print(out);
+                printFields(out);
             }
         }
         out.println("</CTFMessage>");
     }
     
+    /**
+     * Prints the fields in XML format. The caller holds the lock if one is
+     * needed.
+     * 
+     * @param out The PrintStream to print to.
+     */
+    private void printFields(PrintStream out)
+    {
+        for (Field field : _fields)
+        {
+            field.print(out);
+        }
+    }
+    
+    /**
+     * Renders this message with a writer, see MessageWriter.
+     * 
+     * @param writer The MessageWriter object.
+     * @throws IOException If the stream of the writer can't be written to.
+     */
+    void writeTo(MessageWriter writer) throws IOException
+    {
+        if (isLockFree())
+        {
+            writeFields(writer);
+            return;
+        }
+
+        synchronized(_lock)
+        {
+            writeFields(writer);
+        }
+    }
+
+    /**
+     * Renders the fields with a writer. The caller holds the lock if one is
+     * needed.
+     * 
+     * @param writer The MessageWriter object.
+     * @throws IOException If the stream of the writer can't be written to.
+     */
+    private void writeFields(MessageWriter writer) throws IOException
+    {
+        writer.begin(this);
+        if (!writer.groupsRepeats())
+        {
+            for (int i=0; i<_fields.size(); i++)
+            {
+                writer.field(_fields.get(i));
+            }
+            writer.end(this);
+            return;
+        }
+
+        for (int i=0; i<_fields.size(); i++)
+        {
+            Field field = _fields.get(i);
+            int num = field.getToken().num;
+            if (_index.first(num) != i)
+            {
+                // Written with the first field of the token.
+                continue;
+            }
+
+            if (_index.next(i) == TokenIndex.NONE)
+            {
+                writer.field(field);
+                continue;
+            }
+
+            writer.beginRepeat(field);
+            for (int slot=i; slot!=TokenIndex.NONE; slot=_index.next(slot))
+            {
+                writer.repeat(_fields.get(slot));
+            }
+            writer.endRepeat();
+        }
+        writer.end(this);
+    }
+    
     /**
      * Prints this message. Defaults to XML format.
      * 
@@ -341,12 +937,15 @@ public class Message
     {
         StringBuffer sb = new StringBuffer();
 
-        synchronized(_fields)
+        if (isLockFree())
         {
-            for (Field field : _fields)
+            appendValues(sb);
+        }
+        else
+        {
+            synchronized(_lock)
             {
-                sb.append(field.getValue());
-                sb.append(",");
+                appendValues(sb);
             }
         }
 
@@ -360,6 +959,21 @@ public class Message
             
         }
     }
+
+    /**
+     * Appends the field values, each followed by a ",". The caller holds the
+     * lock if one is needed.
+     * 
+     * @param sb The StringBuffer to append to.
+     */
+    private void appendValues(StringBuffer sb)
+    {
+        for (Field field : _fields)
+        {
+            sb.append(field.getValue());
+            sb.append(",");
+        }
+    }
     
     /**
      * Adds a field to this message given the token number and token value. For
@@ -373,10 +987,10 @@ public class Message
     public Field add(int toknum, String value)
     {
         Field field = null;
-        Token token = DataDict.getToken(toknum);
+        Token token = _dict.getToken(toknum);
         if (token != null)
         {
-            _fields.add(field = new Field(token, value));
+            append(field = newField(token, value));
         }
         
         return field;
@@ -394,10 +1008,10 @@ public class Message
     public Field add(String tokname, String value)
     {
         Field field = null;
-        Token token = DataDict.getToken(tokname);
+        Token token = _dict.getToken(tokname);
         if (token != null)
         {
-            _fields.add(field = new Field(token, value));
+            append(field = newField(token, value));
         }
         
         return field;
@@ -416,6 +1030,54 @@ public class Message
     {
         return add(toknum, String.valueOf(value));
     }
+
+    /**
+     * Appends the field and indexes it by its token number.
+     * 
+     * @param field The Field object.
+     */
+    private void append(Field field)
+    {
+        int num = field.getToken().num;
+        int kind = MessageKind.of(_dict.getMessageKind(num), field.getValue());
+
+        if (_lock == null)
+        {
+            checkNotFrozen();
+            _index.add(num, _fields.size());
+            _fields.add(field);
+            _kind |= kind;
+            return;
+        }
+
+        synchronized(_lock)
+        {
+            checkNotFrozen();
+            _index.add(num, _fields.size());
+            _fields.add(field);
+            _kind |= kind;
+        }
+    }
+
+    /**
+     * Returns the kind of this message, computed as the fields are added.
+     * For e.g. to route level 1 messages:
+     * <br><code>if ((msg.getKind() &amp; MessageKind.LEVEL1) != 0)</code>
+     * 
+     * @return The MessageKind bits, 0 if the message is of no known kind.
+     */
+    public int getKind()
+    {
+        if (isLockFree())
+        {
+            return _kind;
+        }
+
+        synchronized(_lock)
+        {
+            return _kind;
+        }
+    }
     
     /**
      * Checks if the message is a REFRESH (cycle) message.
@@ -425,7 +1087,7 @@ public class Message
      */
     public boolean isRefresh()
     {
-        return Util.isRefresh(this);
+        return (getKind() & MessageKind.REFRESH) != 0;
     }
     
     /**
@@ -434,7 +1096,7 @@ public class Message
      */
     public boolean isTrade()
     {
-        return Util.isTrade(this);
+        return (getKind() & MessageKind.TRADE) != 0;
     }
     
     /**
@@ -443,7 +1105,7 @@ public class Message
      */
     public boolean isQuote()
     {
-        return Util.isQuote(this);
+        return (getKind() & MessageKind.QUOTE) != 0;
     }
     
     /**
@@ -452,7 +1114,7 @@ public class Message
      */
     public boolean isLevel1()
     {
-        return Util.isLevel1(this);
+        return (getKind() & MessageKind.LEVEL1) != 0;
     }
     
     /**
@@ -461,7 +1123,7 @@ public class Message
      */
     public boolean isLevel2()
     {
-        return Util.isLevel2(this);
+        return (getKind() & MessageKind.LEVEL2) != 0;
     }
 
     /**
@@ -470,7 +1132,7 @@ public class Message
      */
     public boolean isStatus()
     {
-        return Util.isStatus(this);
+        return (getKind() & MessageKind.STATUS) != 0;
     }
 
     /**
@@ -483,11 +1145,15 @@ public class Message
         
         sb.append("<CTFMessage>");
 
-        synchronized(_fields)
+        if (isLockFree())
+        {
+            appendXML(sb);
+        }
+        else
         {
-            for (Field field : _fields)
+            synchronized(_lock)
             {
-                sb.append(Util.formatXML(field));
+                appendXML(sb);
             }
         }
         
@@ -496,6 +1162,20 @@ public class Message
         return sb.toString();
     }
     
+    /**
+     * Appends the fields in XML format. The caller holds the lock if one is
+     * needed.
+     * 
+     * @param sb The StringBuffer to append to.
+     */
+    private void appendXML(StringBuffer sb)
+    {
+        for (Field field : _fields)
+        {
+            sb.append(Util.formatXML(field));
+        }
+    }
+    
     /**
      * 
      * @param token
@@ -506,20 +1186,37 @@ public class Message
        return "<CTFMessage>" + Util.formatXML(this, token) + "</CTFMessage>"; 
     }
 
+    /**
+     * 
+     * @param token
+     * @return
+     */
+    public String toXML(TokenHandle[] token)
+    {
+       return "<CTFMessage>" + Util.formatXML(this, token) + "</CTFMessage>"; 
+    }
+
+    /**
+     * Returns the option symbol key of the ticker symbol, decoded in one pass.
+     * 
+     * @return The key, or OptionSymbol.NONE if the message has no option
+     * ticker symbol.
+     * @see OptionSymbol
+     */
+    public long getOptionSymbol()
+    {
+        Field sym = this.get(SYMBOL_TICKER);
+
+        return (sym != null) ? OptionSymbol.parse(sym.getValue()) : OptionSymbol.NONE;
+    }
+
     /**
      * 
      * @return
      */
     public boolean isCall()
     {
-        Field sym = this.get("SYMBOL.TICKER");
-        
-        if (sym != null)
-        {
-            return Util.isCall(sym.getValue());
-        }
-        
-        return false;
+        return OptionSymbol.isCall(getOptionSymbol());
     }
     
     /**
@@ -528,14 +1225,7 @@ public class Message
      */
     public boolean isPut()
     {
-        Field sym = this.get("SYMBOL.TICKER");
-        
-        if (sym != null)
-        {
-            return Util.isPut(sym.getValue());
-        }
-        
-        return false;
+        return OptionSymbol.isPut(getOptionSymbol());
     }
     
     /**
@@ -0,0 +1,181 @@
+/*
+ * MessageKind.java
+ */
+
+package com.idms.csp.ctf.data;
+
+import com.idms.csp.ctf.util.Ascii;
+
+import java.nio.ByteBuffer;
+
+/**
+ * This class defines the kinds of a CTF message as bits, for e.g. a message
+ * with both a trade and a quote is TRADE | QUOTE. The kind is computed while
+ * the fields are added or indexed, with a table of the kind each token number
+ * marks, and can be used as a routing key:
+ * <br><code>switch (msg.getKind() &amp; MessageKind.LEVEL1)</code>
+ * <br><code>if ((view.getKind() &amp; MessageKind.LEVEL2) != 0)</code>
+ * <p>
+ * A message is a trade if it has TRADE.PRICE or TRADE.SIZE, a quote if it has
+ * BID/ASK.PRICE or BID/ASK.SIZE, a buy (sell) order if it has
+ * BID(ASK).PART.PRICE or BID(ASK).PART.SIZE, and deletes an order if one of
+ * the part sizes is 0. STATUS is for ENUM.QUERY.STATUS and REFRESH for
+ * REFRESH.
+ */
+public final class MessageKind
+{
+    // Message kinds.
+    public static final int TRADE           = 0x01;
+    public static final int QUOTE           = 0x02;
+    public static final int BUY_ORDER       = 0x04;
+    public static final int SELL_ORDER      = 0x08;
+    public static final int DELETE_ORDER    = 0x10;
+    public static final int STATUS          = 0x20;
+    public static final int REFRESH         = 0x40;
+
+    // Level 1 and level 2 messages.
+    public static final int LEVEL1 = TRADE | QUOTE;
+    public static final int LEVEL2 = BUY_ORDER | SELL_ORDER;
+
+    // Marks the part sizes, a message deletes an order when one is 0.
+    private static final int PART_SIZE     = 0x80;
+
+    // Token number of ENUM.QUERY.STATUS.
+    private static final int STATUS_TOKNUM = 5001;
+
+    // The tokens that mark a kind.
+    private static final String[] NAMES =
+    {
+        "TRADE.PRICE", "TRADE.SIZE", "BID.PRICE", "BID.SIZE", "ASK.PRICE", "ASK.SIZE",
+        "BID.PART.PRICE", "BID.PART.SIZE", "ASK.PART.PRICE", "ASK.PART.SIZE", "REFRESH"
+    };
+    private static final int[] KINDS =
+    {
+        TRADE, TRADE, QUOTE, QUOTE, QUOTE, QUOTE,
+        BUY_ORDER, BUY_ORDER | PART_SIZE, SELL_ORDER, SELL_ORDER | PART_SIZE, REFRESH
+    };
+
+    /**
+     * This class can't be instantiated.
+     */
+    private MessageKind()
+    {
+    }
+
+    /**
+     * Builds the table of the kind marked by each token number of a data
+     * dictionary.
+     *
+     * @param dict The data dictionary.
+     * @return The kinds indexed by token number.
+     */
+    static byte[] compile(DictSnapshot dict)
+    {
+        int max = STATUS_TOKNUM;
+        for (String name : NAMES)
+        {
+            Token token = dict.getToken(name);
+            if (token != null)
+            {
+                max = Math.max(max, token.num);
+            }
+        }
+
+        byte[] kinds = new byte[max + 1];
+        kinds[STATUS_TOKNUM] = STATUS;
+        for (int i=0; i<NAMES.length; i++)
+        {
+            Token token = dict.getToken(NAMES[i]);
+            if (token != null && token.num >= 0)
+            {
+                kinds[token.num] |= (byte) KINDS[i];
+            }
+        }
+
+        return kinds;
+    }
+
+    /**
+     * Returns the kind a field gives to its message.
+     *
+     * @param kind The kind marked by the token, see DictSnapshot.getMessageKind().
+     * @param value The field value.
+     * @return The message kind bits.
+     */
+    static int of(int kind, String value)
+    {
+        if ((kind & PART_SIZE) != 0)
+        {
+            kind = (kind & ~PART_SIZE) | (isZero(value) ? DELETE_ORDER : 0);
+        }
+
+        return kind;
+    }
+
+    /**
+     * Returns the kind a field gives to its message.
+     *
+     * @param kind The kind marked by the token, see DictSnapshot.getMessageKind().
+     * @param buf The buffer holding the field value.
+     * @param off The index of the value.
+     * @param len The length of the value.
+     * @return The message kind bits.
+     */
+    static int of(int kind, ByteBuffer buf, int off, int len)
+    {
+        if ((kind & PART_SIZE) != 0)
+        {
+            kind = (kind & ~PART_SIZE) | ((Ascii.parseLong(buf, off, len) == 0) ? DELETE_ORDER : 0);
+        }
+
+        return kind;
+    }
+
+    /**
+     * Returns the names of the kinds, for e.g. "TRADE|QUOTE".
+     *
+     * @param kind The message kind bits.
+     * @return The names separated by "|", or "NONE".
+     */
+    public static String toString(int kind)
+    {
+        String[] names = { "TRADE", "QUOTE", "BUY_ORDER", "SELL_ORDER", "DELETE_ORDER", "STATUS", "REFRESH" };
+        StringBuilder sb = new StringBuilder();
+        for (int i=0; i<names.length; i++)
+        {
+            if ((kind & (1 << i)) != 0)
+            {
+                sb.append((sb.length() > 0) ? "|" : "").append(names[i]);
+            }
+        }
+
+        return (sb.length() > 0) ? sb.toString() : "NONE";
+    }
+
+    /**
+     * Checks if the value is an integer 0, for e.g. "0" or "-00".
+     */
+    private static boolean isZero(String value)
+    {
+        if (value == null)
+        {
+            return false;
+        }
+
+        int i = (value.length() > 1 && (value.charAt(0) == '-' || value.charAt(0) == '+')) ? 1 : 0;
+        if (i == value.length())
+        {
+            return false;
+        }
+
+        for (; i<value.length(); i++)
+        {
+            if (value.charAt(i) != '0')
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
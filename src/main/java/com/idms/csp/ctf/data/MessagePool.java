@@ -0,0 +1,217 @@
+/*
+ * MessagePool.java
+ */
+
+package com.idms.csp.ctf.data;
+
+import java.io.PrintStream;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * This class recycles Message objects, and the Field objects they hold, on the
+ * decode path. For e.g.
+ * <br><code>Message msg = MessagePool.local().acquire();
+ * <br>view.toMessage(msg);
+ * <br>...
+ * <br>msg.release();</code>
+ * <p>
+ * Pooled messages are in SINGLE_WRITER mode. The consumer calls
+ * <code>release()</code> on the message when it is done with it, from any
+ * thread, and must not keep references to the message or its fields after
+ * that. A message that is never released is simply garbage collected.
+ * <p>
+ * Setting the system property "ctf.pool.debug" to "true" records where each
+ * outstanding message was acquired, so leaks can be listed with
+ * <code>reportLeaks()</code>.
+ */
+public class MessagePool
+{
+    // Default number of idle messages kept by a pool.
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    // Leak detection, enabled with -Dctf.pool.debug=true
+    static final boolean DEBUG = Boolean.getBoolean("ctf.pool.debug");
+
+    // One pool per decoding thread.
+    private static final ThreadLocal<MessagePool> _localPool = new ThreadLocal<MessagePool>()
+    {
+        @Override
+        protected MessagePool initialValue()
+        {
+            return new MessagePool();
+        }
+    };
+
+    // The data dictionary the messages are resolved against.
+    private final DataDictionary _dictionary;
+
+    // Idle messages. Guarded by this.
+    private final Message[] _free;
+    private int _freeCount;
+
+    // Outstanding messages and where they were acquired, in debug mode only. Guarded by this.
+    private final Map<Message, Throwable> _outstanding;
+
+    /**
+     * Creates a pool with the default capacity, for the default data
+     * dictionary.
+     */
+    public MessagePool()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a pool with the default capacity.
+     *
+     * @param dict The data dictionary of the feed.
+     */
+    public MessagePool(DataDictionary dict)
+    {
+        this(DEFAULT_CAPACITY, dict);
+    }
+
+    /**
+     * Creates a pool for the default data dictionary.
+     *
+     * @param capacity The maximum number of idle messages kept.
+     */
+    public MessagePool(int capacity)
+    {
+        this(capacity, DataDict.getDefault());
+    }
+
+    /**
+     * Creates a pool.
+     *
+     * @param capacity The maximum number of idle messages kept.
+     * @param dict The data dictionary of the feed.
+     */
+    public MessagePool(int capacity, DataDictionary dict)
+    {
+        _dictionary = dict;
+        _free = new Message[capacity];
+        _outstanding = DEBUG ? new IdentityHashMap<Message, Throwable>() : null;
+    }
+
+    /**
+     * Returns the pool of the calling thread.
+     *
+     * @return The MessagePool object.
+     */
+    public static MessagePool local()
+    {
+        return _localPool.get();
+    }
+
+    /**
+     * Returns the data dictionary the messages are resolved against.
+     *
+     * @return The DataDictionary object.
+     */
+    public DataDictionary getDictionary()
+    {
+        return _dictionary;
+    }
+
+    /**
+     * Returns an empty message, recycled if one is available.
+     *
+     * @return The Message object.
+     */
+    public synchronized Message acquire()
+    {
+        Message msg;
+        if (_freeCount > 0)
+        {
+            msg = _free[--_freeCount];
+            _free[_freeCount] = null;
+            msg._pooled = false;
+            msg._dict = _dictionary.getSnapshot();
+        }
+        else
+        {
+            msg = new Message(this);
+        }
+
+        if (_outstanding != null)
+        {
+            _outstanding.put(msg, new Throwable("Message acquired here"));
+        }
+
+        return msg;
+    }
+
+    /**
+     * Takes back a message. Use Message.release() instead.
+     *
+     * @param msg The Message object.
+     * @throws IllegalStateException If the message has already been released.
+     */
+    synchronized void release(Message msg)
+    {
+        if (msg._pooled)
+        {
+            throw new IllegalStateException("The message has already been released");
+        }
+
+        if (_outstanding != null)
+        {
+            _outstanding.remove(msg);
+        }
+
+        // Marked even when dropped, so a second release is detected.
+        msg._pooled = true;
+
+        // Drop the message when the pool is full.
+        if (_freeCount < _free.length)
+        {
+            msg.recycle();
+            _free[_freeCount++] = msg;
+        }
+    }
+
+    /**
+     * Returns the number of idle messages in the pool.
+     *
+     * @return The number of idle messages.
+     */
+    public synchronized int getIdleCount()
+    {
+        return _freeCount;
+    }
+
+    /**
+     * Returns the number of messages acquired and not yet released. Only
+     * tracked in debug mode.
+     *
+     * @return The number of outstanding messages, or -1 if not tracked.
+     */
+    public synchronized int getOutstandingCount()
+    {
+        return (_outstanding != null) ? _outstanding.size() : -1;
+    }
+
+    /**
+     * Prints the messages acquired and not yet released, with the stack trace
+     * of the code that acquired them. Only tracked in debug mode.
+     *
+     * @param out The PrintStream to print to.
+     */
+    public synchronized void reportLeaks(PrintStream out)
+    {
+        if (_outstanding == null)
+        {
+            out.println("Leak detection is off, set -Dctf.pool.debug=true");
+            return;
+        }
+
+        out.println(_outstanding.size() + " message(s) not released");
+        for (Map.Entry<Message, Throwable> leak : _outstanding.entrySet())
+        {
+            out.println(leak.getKey());
+            leak.getValue().printStackTrace(out);
+        }
+    }
+}
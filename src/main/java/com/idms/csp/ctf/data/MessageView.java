@@ -0,0 +1,484 @@
+/*
+ * MessageView.java
+ */
+
+package com.idms.csp.ctf.data;
+
+import com.idms.csp.ctf.util.Ascii;
+import com.idms.csp.ctf.util.Price;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * This class is a reusable, read only view over the payload of a CTF frame.
+ * The payload is indexed once when it is wrapped, and token values are then
+ * decoded straight from the payload bytes. For e.g.
+ * <br><code>view.wrap(payload);
+ * <br>double lastPrice = view.getDouble(8);</code>
+ * <p>
+ * Wrapping and reading do not allocate once the view has grown to the size
+ * of the largest message, so a single view can be reused for every frame
+ * received on a connection. Message and Field objects are only created when
+ * asked for with <code>toMessage()</code> or <code>getField()</code>.
+ * <p>
+ * A view is not thread safe and is only valid until the next call to
+ * <code>wrap()</code> or until the wrapped bytes are modified.
+ */
+public class MessageView
+{
+    // Initial number of fields a view can index before growing.
+    private static final int INITIAL_CAPACITY = 32;
+
+    // CTF Delimiters
+    static final byte FIELD_SEPARATOR = '|';
+    static final byte VALUE_SEPARATOR = '=';
+
+    // The payload being viewed.
+    private ByteBuffer _buffer;
+
+    // The array wrapped by _buffer when the payload was given as a byte array.
+    private byte[] _array;
+
+    // Number of fields indexed.
+    private int _count;
+
+    // Token number, value offset and value length of each field.
+    private int[] _toknums = new int[INITIAL_CAPACITY];
+    private int[] _offsets = new int[INITIAL_CAPACITY];
+    private int[] _lengths = new int[INITIAL_CAPACITY];
+
+    // Positions of the fields keyed on token number.
+    private TokenIndex _index = new TokenIndex();
+
+    // The data dictionary fields and enumerations are resolved against.
+    private final DataDictionary _dictionary;
+
+    // The snapshot of the dictionary the payload was indexed with.
+    private DictSnapshot _dict;
+
+    // The MessageKind bits of the payload.
+    private int _kind;
+
+    /**
+     * Creates an empty view for the default data dictionary.
+     */
+    public MessageView()
+    {
+        this(DataDict.getDefault());
+    }
+
+    /**
+     * Creates an empty view.
+     *
+     * @param dict The data dictionary of the feed.
+     */
+    public MessageView(DataDictionary dict)
+    {
+        _dictionary = dict;
+    }
+
+    /**
+     * Points this view to the payload between the position and the limit of
+     * the buffer and indexes it. The position of the buffer is not changed.
+     *
+     * @param payload The CTF payload without the frame header and trailer.
+     * @return This view.
+     */
+    public MessageView wrap(ByteBuffer payload)
+    {
+        _buffer = payload;
+        _array = null;
+        index(payload.position(), payload.limit());
+
+        return this;
+    }
+
+    /**
+     * Points this view to a payload held in a byte array and indexes it.
+     *
+     * @param payload The array holding the CTF payload.
+     * @param offset The index of the first byte of the payload.
+     * @param length The length of the payload.
+     * @return This view.
+     */
+    public MessageView wrap(byte[] payload, int offset, int length)
+    {
+        // Reuse the wrapper when the caller recycles its receive buffer.
+        if (_array != payload)
+        {
+            _buffer = ByteBuffer.wrap(payload);
+            _array = payload;
+        }
+        index(offset, offset + length);
+
+        return this;
+    }
+
+    /**
+     * Builds the field index of the payload between start and end.
+     *
+     * @param start The index of the first byte of the payload.
+     * @param end The index following the last byte of the payload.
+     */
+    private void index(int start, int end)
+    {
+        _count = 0;
+        _kind = 0;
+        _index.clear();
+        _dict = _dictionary.getSnapshot();
+
+        int pos = start;
+        while (pos < end)
+        {
+            // The value may itself hold '=', so only the first one ends the token number.
+            int eq = Ascii.indexOf(_buffer, VALUE_SEPARATOR, FIELD_SEPARATOR, pos, end);
+            if (eq == end || _buffer.get(eq) == FIELD_SEPARATOR)
+            {
+                // A token without a value.
+                pos = eq + 1;
+                continue;
+            }
+
+            int bar = Ascii.indexOf(_buffer, FIELD_SEPARATOR, eq + 1, end);
+
+            // Skip malformed token numbers.
+            int toknum = Ascii.parseInt(_buffer, pos, eq - pos);
+            if (toknum >= 0)
+            {
+                append(toknum, eq + 1, bar - eq - 1);
+            }
+
+            pos = bar + 1;
+        }
+    }
+
+    /**
+     * Adds a field to the index, growing the index if needed.
+     */
+    private void append(int toknum, int offset, int length)
+    {
+        if (_count == _toknums.length)
+        {
+            int capacity = _count * 2;
+            _toknums = Arrays.copyOf(_toknums, capacity);
+            _offsets = Arrays.copyOf(_offsets, capacity);
+            _lengths = Arrays.copyOf(_lengths, capacity);
+        }
+
+        _kind |= MessageKind.of(_dict.getMessageKind(toknum), _buffer, offset, length);
+        _index.add(toknum, _count);
+        _toknums[_count] = toknum;
+        _offsets[_count] = offset;
+        _lengths[_count] = length;
+        _count++;
+    }
+
+    /**
+     * Returns the kind of the payload, computed while it is indexed.
+     *
+     * @return The MessageKind bits, 0 if the payload is of no known kind.
+     */
+    public int getKind()
+    {
+        return _kind;
+    }
+
+    /**
+     * Returns the number of fields in the payload.
+     *
+     * @return The number of fields.
+     */
+    public int size()
+    {
+        return _count;
+    }
+
+    /**
+     * Returns the buffer holding the payload.
+     *
+     * @return The payload buffer.
+     */
+    public ByteBuffer getBuffer()
+    {
+        return _buffer;
+    }
+
+    /**
+     * Returns the token number of the field at the given position.
+     *
+     * @param i The position of the field in the payload.
+     * @return The token number.
+     */
+    public int getTokenNum(int i)
+    {
+        return _toknums[i];
+    }
+
+    /**
+     * Returns the index in the buffer of the value of the field at the given
+     * position.
+     *
+     * @param i The position of the field in the payload.
+     * @return The index of the first byte of the value.
+     */
+    public int getValueOffset(int i)
+    {
+        return _offsets[i];
+    }
+
+    /**
+     * Returns the length of the value of the field at the given position.
+     *
+     * @param i The position of the field in the payload.
+     * @return The length of the value in bytes.
+     */
+    public int getValueLength(int i)
+    {
+        return _lengths[i];
+    }
+
+    /**
+     * Returns the position of the first field that carries the token.
+     *
+     * @param toknum The token number.
+     * @return The position of the field, or -1 if the token is not present.
+     */
+    public int indexOf(int toknum)
+    {
+        return _index.first(toknum);
+    }
+
+    /**
+     * Returns the position of the next field that carries the same token as
+     * the field at the given position. For e.g. to visit all PERMISSION fields:
+     * <br><code>for (int i=view.indexOf(3); i>=0; i=view.nextIndexOf(i))</code>
+     *
+     * @param i The position of a field.
+     * @return The position of the next field, or -1 if there are no more.
+     */
+    public int nextIndexOf(int i)
+    {
+        return _index.next(i);
+    }
+
+    /**
+     * Checks if the payload carries the token.
+     *
+     * @param toknum The token number.
+     * @return {@code true} if the token is present, {@code false} otherwise.
+     */
+    public boolean contains(int toknum)
+    {
+        return indexOf(toknum) >= 0;
+    }
+
+    /**
+     * Returns the value of the token as an integer.
+     *
+     * @param toknum The token number.
+     * @return The integer value, or -1 if the token is not present or not a number.
+     */
+    public int getInt(int toknum)
+    {
+        int i = indexOf(toknum);
+        if (i >= 0)
+        {
+            return Ascii.parseInt(_buffer, _offsets[i], _lengths[i]);
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns the value of the token as a long.
+     *
+     * @param toknum The token number.
+     * @return The long value, or -1 if the token is not present or not a number.
+     */
+    public long getLong(int toknum)
+    {
+        int i = indexOf(toknum);
+        if (i >= 0)
+        {
+            return Ascii.parseLong(_buffer, _offsets[i], _lengths[i]);
+        }
+
+        return -1L;
+    }
+
+    /**
+     * Returns the value of the token as a double.
+     *
+     * @param toknum The token number.
+     * @return The double value, or NaN if the token is not present or not a number.
+     */
+    public double getDouble(int toknum)
+    {
+        int i = indexOf(toknum);
+        if (i >= 0)
+        {
+            return Ascii.parseDouble(_buffer, _offsets[i], _lengths[i]);
+        }
+
+        return Double.NaN;
+    }
+
+    /**
+     * Returns the value of the token as an exact fixed point price. See the
+     * Price class.
+     *
+     * @param toknum The token number.
+     * @return The price, or Price.NaN if the token is not present or not a number.
+     */
+    public long getPrice(int toknum)
+    {
+        int i = indexOf(toknum);
+        if (i >= 0)
+        {
+            return Price.parse(_buffer, _offsets[i], _lengths[i]);
+        }
+
+        return Price.NaN;
+    }
+
+    /**
+     * Appends the value of the token to a character sink, e.g. a
+     * StringBuilder that is reset and reused for every message, or a Writer.
+     *
+     * @param toknum The token number.
+     * @param sink The Appendable to append to.
+     * @return {@code true} if the token is present, {@code false} otherwise.
+     * @throws IOException If the sink can't be written to.
+     */
+    public boolean getAscii(int toknum, Appendable sink) throws IOException
+    {
+        int i = indexOf(toknum);
+        if (i >= 0)
+        {
+            Ascii.append(_buffer, _offsets[i], _lengths[i], sink);
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns the value of the token as a String. This allocates, prefer the
+     * typed getters on the hot path.
+     *
+     * @param toknum The token number.
+     * @return The value, or null if the token is not present.
+     */
+    public String getString(int toknum)
+    {
+        int i = indexOf(toknum);
+        if (i >= 0)
+        {
+            return Ascii.toString(_buffer, _offsets[i], _lengths[i]);
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns the enumeration definition of the value of the token, decoded
+     * in place without allocating.
+     *
+     * @param toknum The token number.
+     * @return The Enum object, or null if the token is not present, has no
+     * enumerations or the value is not defined.
+     */
+    public Enum getEnum(int toknum)
+    {
+        int i = indexOf(toknum);
+        if (i >= 0)
+        {
+            EnumTable table = _dict.getEnumTable(toknum);
+            if (table != null)
+            {
+                return table.get(_buffer, _offsets[i], _lengths[i]);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Creates the field object for the first occurrence of the token.
+     *
+     * @param toknum The token number.
+     * @return The Field object, or null if the token is not present or not
+     * defined in the data dictionary.
+     */
+    public Field getField(int toknum)
+    {
+        int i = indexOf(toknum);
+        if (i >= 0)
+        {
+            Token token = _dict.getToken(toknum);
+            if (token != null)
+            {
+                Field field = new Field(token, Ascii.toString(_buffer, _offsets[i], _lengths[i]));
+                field._dict = _dict;
+                return field;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Creates a message object holding all the fields of the payload. The
+     * message is in SINGLE_WRITER mode, freeze it before sharing it with
+     * other threads.
+     *
+     * @return The Message object.
+     */
+    public Message toMessage()
+    {
+        return toMessage(new Message(Message.Mode.SINGLE_WRITER, _dictionary));
+    }
+
+    /**
+     * Adds all the fields of the payload to the given message, for e.g. one
+     * acquired from a MessagePool.
+     *
+     * @param msg The Message object to fill.
+     * @return The Message object.
+     */
+    public Message toMessage(Message msg)
+    {
+        for (int i=0; i<_count; i++)
+        {
+            msg.add(_toknums[i], Ascii.toString(_buffer, _offsets[i], _lengths[i]));
+        }
+
+        return msg;
+    }
+
+    /**
+     * Returns the string representation of the payload.
+     *
+     * @return The payload in CTF format.
+     */
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append("[");
+        for (int i=0; i<_count; i++)
+        {
+            if (i > 0)
+            {
+                sb.append("|");
+            }
+            sb.append(_toknums[i]).append("=");
+            Ascii.append(_buffer, _offsets[i], _lengths[i], sb);
+        }
+        sb.append("]");
+
+        return sb.toString();
+    }
+}
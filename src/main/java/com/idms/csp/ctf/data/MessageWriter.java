@@ -0,0 +1,391 @@
+/*
+ * MessageWriter.java
+ */
+
+package com.idms.csp.ctf.data;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * This class is the base of the writers that render messages as text, for
+ * e.g. XMLWriter and CSVWriter. A message is rendered straight into a byte
+ * buffer, without intermediate String objects, and the buffer is written to
+ * the OutputStream when it fills up. A writer created without a stream keeps
+ * the output in its buffer, which grows as needed and is reused after
+ * <code>reset()</code>. For e.g.
+ * <br><code>XMLWriter writer = new XMLWriter(new FileOutputStream("eod.xml"));
+ * <br>writer.write(msg);
+ * <br>writer.flush();</code>
+ * <p>
+ * The bytes each format writes for a token, for e.g. its XML tag, are
+ * compiled the first time the token is written, and kept for the token
+ * definitions of the last two data dictionaries seen, so messages of two
+ * feeds, or those built before and after a reload, can be interleaved.
+ * <p>
+ * Values are written one byte per character, characters outside the ASCII
+ * range as "?". A writer is not thread safe.
+ */
+public abstract class MessageWriter
+{
+    // Default size of the buffer.
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    // The stream the buffer is written to, or null to keep the output.
+    private final OutputStream _out;
+
+    // The output not yet written to the stream.
+    private byte[] _buf;
+    private int _pos;
+
+    // Ways of the token bytes cache, the definitions kept per token number.
+    private static final int WAYS = 2;
+
+    // The token definitions compiled and their bytes, WAYS per token number,
+    // the most recently compiled first.
+    private Token[] _tokens = new Token[0];
+    private byte[][] _tokenBytes = new byte[0][];
+
+    /**
+     * Creates a writer to a stream.
+     *
+     * @param out The OutputStream to write to.
+     */
+    protected MessageWriter(OutputStream out)
+    {
+        this(out, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Creates a writer to a stream.
+     *
+     * @param out The OutputStream to write to, or null to keep the output in
+     * the buffer.
+     * @param size The size of the buffer.
+     */
+    protected MessageWriter(OutputStream out, int size)
+    {
+        _out = out;
+        _buf = new byte[Math.max(size, 64)];
+    }
+
+    /**
+     * Writes a message.
+     *
+     * @param msg The Message object.
+     * @throws IOException If the stream can't be written to.
+     */
+    public void write(Message msg) throws IOException
+    {
+        msg.writeTo(this);
+    }
+
+    /**
+     * Writes the start of a message.
+     *
+     * @param msg The Message object.
+     * @throws IOException If the stream can't be written to.
+     */
+    protected abstract void begin(Message msg) throws IOException;
+
+    /**
+     * Writes a field of the message.
+     *
+     * @param field The Field object.
+     * @throws IOException If the stream can't be written to.
+     */
+    protected abstract void field(Field field) throws IOException;
+
+    /**
+     * Tells if the fields of a token repeated in a message, for e.g.
+     * PERMISSION, are written together, with beginRepeat(), repeat() and
+     * endRepeat(), where the first of them is. Defaults to false, all the
+     * fields are written with field() in the order of the message.
+     *
+     * @return true if repeated tokens are grouped.
+     */
+    protected boolean groupsRepeats()
+    {
+        return false;
+    }
+
+    /**
+     * Writes the start of the fields of a repeated token.
+     *
+     * @param field The first Field object of the token.
+     * @throws IOException If the stream can't be written to.
+     */
+    protected void beginRepeat(Field field) throws IOException
+    {
+    }
+
+    /**
+     * Writes a field of a repeated token.
+     *
+     * @param field The Field object.
+     * @throws IOException If the stream can't be written to.
+     */
+    protected void repeat(Field field) throws IOException
+    {
+        field(field);
+    }
+
+    /**
+     * Writes the end of the fields of a repeated token.
+     *
+     * @throws IOException If the stream can't be written to.
+     */
+    protected void endRepeat() throws IOException
+    {
+    }
+
+    /**
+     * Writes the end of a message.
+     *
+     * @param msg The Message object.
+     * @throws IOException If the stream can't be written to.
+     */
+    protected abstract void end(Message msg) throws IOException;
+
+    /**
+     * Compiles the bytes this format writes for a token.
+     *
+     * @param token The Token object.
+     * @return The bytes of the token.
+     */
+    protected abstract byte[] compile(Token token);
+
+    /**
+     * Returns the bytes compiled for a token, compiling them the first time
+     * the token definition is written.
+     *
+     * @param token The Token object.
+     * @return The bytes of the token.
+     */
+    protected final byte[] tokenBytes(Token token)
+    {
+        int slot = token.num * WAYS;
+        if (slot < 0)
+        {
+            return compile(token);
+        }
+
+        if (slot >= _tokens.length)
+        {
+            int length = Math.max(slot + WAYS, _tokens.length * 2);
+            _tokens = Arrays.copyOf(_tokens, length);
+            _tokenBytes = Arrays.copyOf(_tokenBytes, length);
+        }
+
+        for (int i=slot; i<slot+WAYS; i++)
+        {
+            if (_tokens[i] == token)
+            {
+                return _tokenBytes[i];
+            }
+        }
+
+        // Evict the least recently compiled definition.
+        System.arraycopy(_tokens, slot, _tokens, slot + 1, WAYS - 1);
+        System.arraycopy(_tokenBytes, slot, _tokenBytes, slot + 1, WAYS - 1);
+
+        byte[] bytes = compile(token);
+        _tokens[slot] = token;
+        _tokenBytes[slot] = bytes;
+
+        return bytes;
+    }
+
+    /**
+     * Writes a byte.
+     *
+     * @param b The byte.
+     * @throws IOException If the stream can't be written to.
+     */
+    protected final void put(byte b) throws IOException
+    {
+        if (_pos == _buf.length)
+        {
+            ensure(1);
+        }
+        _buf[_pos++] = b;
+    }
+
+    /**
+     * Writes bytes.
+     *
+     * @param bytes The bytes.
+     * @throws IOException If the stream can't be written to.
+     */
+    protected final void put(byte[] bytes) throws IOException
+    {
+        put(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Writes bytes.
+     *
+     * @param bytes The array holding the bytes.
+     * @param off The index of the first byte.
+     * @param len The number of bytes.
+     * @throws IOException If the stream can't be written to.
+     */
+    protected final void put(byte[] bytes, int off, int len) throws IOException
+    {
+        ensure(len);
+        if (len > _buf.length - _pos)
+        {
+            // Larger than the buffer of a stream writer.
+            _out.write(bytes, off, len);
+            return;
+        }
+        System.arraycopy(bytes, off, _buf, _pos, len);
+        _pos += len;
+    }
+
+    /**
+     * Writes the characters, one byte each, characters outside the ASCII
+     * range as "?".
+     *
+     * @param chars The characters.
+     * @throws IOException If the stream can't be written to.
+     */
+    protected final void put(CharSequence chars) throws IOException
+    {
+        int len = chars.length();
+        ensure(len);
+        for (int i=0; i<len; i++)
+        {
+            char c = chars.charAt(i);
+            if (_pos == _buf.length)
+            {
+                ensure(1);
+            }
+            _buf[_pos++] = (c < 0x80) ? (byte) c : (byte) '?';
+        }
+    }
+
+    /**
+     * Writes the characters of a string known to be ASCII, copied in bulk.
+     *
+     * @param s The string.
+     * @throws IOException If the stream can't be written to.
+     */
+    @SuppressWarnings("deprecation")
+    protected final void putAscii(String s) throws IOException
+    {
+        int len = s.length();
+        ensure(len);
+        if (len > _buf.length - _pos)
+        {
+            // Larger than the buffer of a stream writer.
+            put(ascii(s));
+            return;
+        }
+        s.getBytes(0, len, _buf, _pos);
+        _pos += len;
+    }
+
+    /**
+     * Makes room for bytes in the buffer, writing the buffer to the stream,
+     * or growing it when there is no stream.
+     *
+     * @param len The number of bytes.
+     * @throws IOException If the stream can't be written to.
+     */
+    protected final void ensure(int len) throws IOException
+    {
+        if (len <= _buf.length - _pos)
+        {
+            return;
+        }
+
+        if (_out != null)
+        {
+            _out.write(_buf, 0, _pos);
+            _pos = 0;
+            return;
+        }
+
+        byte[] buf = new byte[Math.max(_buf.length * 2, _pos + len)];
+        System.arraycopy(_buf, 0, buf, 0, _pos);
+        _buf = buf;
+    }
+
+    /**
+     * Writes the buffer to the stream and flushes the stream. Does nothing if
+     * the writer has no stream.
+     *
+     * @throws IOException If the stream can't be written to.
+     */
+    public void flush() throws IOException
+    {
+        if (_out != null)
+        {
+            _out.write(_buf, 0, _pos);
+            _pos = 0;
+            _out.flush();
+        }
+    }
+
+    /**
+     * Returns the buffer holding the output not yet written to the stream,
+     * i.e. all the output since the last reset if the writer has no stream.
+     *
+     * @return The buffer, valid until the next write.
+     */
+    public byte[] getBuffer()
+    {
+        return _buf;
+    }
+
+    /**
+     * Returns the number of bytes held in the buffer.
+     *
+     * @return The number of bytes.
+     */
+    public int size()
+    {
+        return _pos;
+    }
+
+    /**
+     * Discards the output held in the buffer, so it can be reused.
+     */
+    public void reset()
+    {
+        _pos = 0;
+    }
+
+    /**
+     * Returns the ASCII bytes of a string, characters outside the ASCII range
+     * as "?".
+     *
+     * @param s The string.
+     * @return The bytes.
+     */
+    protected static byte[] ascii(String s)
+    {
+        byte[] b = new byte[s.length()];
+        for (int i=0; i<b.length; i++)
+        {
+            char c = s.charAt(i);
+            b[i] = (c < 0x80) ? (byte) c : (byte) '?';
+        }
+
+        return b;
+    }
+
+    /**
+     * Returns the output held in the buffer as a String.
+     *
+     * @return The String.
+     */
+    @Override
+    @SuppressWarnings("deprecation")
+    public String toString()
+    {
+        return new String(_buf, 0, 0, _pos);
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * NameTable.java
+ */
+
+package com.idms.csp.ctf.data;
+
+import java.util.Map;
+
+/**
+ * This class is an immutable table of objects keyed on names, for e.g. tokens
+ * keyed on token name. It is an open addressing hash table that compares the
+ * cached String hash codes before the names, so a lookup usually costs one
+ * equals() call instead of the string comparisons of a TreeMap.
+ * <p>
+ * A table never changes once it is created. Updates create a new table, which
+ * the owner publishes through a volatile field, so readers never lock.
+ */
+final class NameTable<T>
+{
+    // The table without entries.
+    private static final NameTable<Object> EMPTY = new NameTable<Object>(new String[1], new int[1], new Object[1], 0);
+
+    // Name, name hash code and object of each bucket.
+    private final String[] _names;
+    private final int[] _hashes;
+    private final Object[] _values;
+
+    // Number of entries.
+    private final int _size;
+
+    /**
+     * Creates a table from its parts.
+     */
+    private NameTable(String[] names, int[] hashes, Object[] values, int size)
+    {
+        _names = names;
+        _hashes = hashes;
+        _values = values;
+        _size = size;
+    }
+
+    /**
+     * Returns the table without entries.
+     *
+     * @return The empty table.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> NameTable<T> empty()
+    {
+        return (NameTable<T>) EMPTY;
+    }
+
+    /**
+     * Returns the object keyed on the given name.
+     *
+     * @param name The name.
+     * @return The object, or null if there is none.
+     */
+    @SuppressWarnings("unchecked")
+    T get(String name)
+    {
+        if (name == null)
+        {
+            return null;
+        }
+
+        int hash = name.hashCode();
+        int mask = _names.length - 1;
+        for (int i=spread(hash) & mask; ; i=(i+1) & mask)
+        {
+            String key = _names[i];
+            if (key == null)
+            {
+                return null;
+            }
+            if (_hashes[i] == hash && (key == name || key.equals(name)))
+            {
+                return (T) _values[i];
+            }
+        }
+    }
+
+    /**
+     * Returns a new table holding the entries of this table and the given
+     * entries, which replace entries with the same name. Add entries in bulk
+     * where possible, each call copies the table.
+     *
+     * @param entries The entries to add.
+     * @return The new table.
+     */
+    NameTable<T> with(Map<String, ? extends T> entries)
+    {
+        // Keep the table at most half full so probe sequences stay short.
+        int buckets = 2;
+        while (buckets < (_size + entries.size()) * 2)
+        {
+            buckets *= 2;
+        }
+
+        String[] names = new String[buckets];
+        int[] hashes = new int[buckets];
+        Object[] values = new Object[buckets];
+        int size = 0;
+
+        for (int i=0; i<_names.length; i++)
+        {
+            if (_names[i] != null)
+            {
+                size += put(names, hashes, values, _names[i], _values[i]);
+            }
+        }
+
+        for (Map.Entry<String, ? extends T> entry : entries.entrySet())
+        {
+            size += put(names, hashes, values, entry.getKey(), entry.getValue());
+        }
+
+        return new NameTable<T>(names, hashes, values, size);
+    }
+
+    /**
+     * Puts an entry into the buckets.
+     *
+     * @return 1 if the name was added, 0 if it replaced an entry.
+     */
+    private static int put(String[] names, int[] hashes, Object[] values, String name, Object value)
+    {
+        int hash = name.hashCode();
+        int mask = names.length - 1;
+        int i = spread(hash) & mask;
+
+        while (names[i] != null)
+        {
+            if (hashes[i] == hash && names[i].equals(name))
+            {
+                values[i] = value;
+                return 0;
+            }
+            i = (i+1) & mask;
+        }
+
+        names[i] = name;
+        hashes[i] = hash;
+        values[i] = value;
+        return 1;
+    }
+
+    /**
+     * Spreads the hash codes of similar names, for e.g. "BID.PRICE" and
+     * "ASK.PRICE", over the buckets.
+     */
+    private static int spread(int hash)
+    {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -7,6 +7,8 @@
 
 package com.idms.csp.ctf.data;
 
+import com.idms.csp.ctf.util.OptionSymbol;
+
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
@@ -18,6 +20,10 @@ import java.util.TreeSet;
  */
 public class OptionChain
 {
+    // Tokens used to pick options out of the chains.
+    private static final TokenHandle EXPIRATION_DATE = TokenHandle.of("EXPIRATION.DATE");
+    private static final TokenHandle STRIKE_PRICE = TokenHandle.of("STRIKE.PRICE");
+
     // Call chain.
     private List<Message> _callChain = new ArrayList<Message>();
     
@@ -35,11 +41,13 @@ public class OptionChain
     {
         for (Message item : msg)
         {
-           if (item.isCall())
+           // Classify on the ticker symbol, decoded once.
+           long sym = item.getOptionSymbol();
+           if (OptionSymbol.isCall(sym))
            {
                _callChain.add(item);
            }
-           else if (item.isPut())
+           else if (OptionSymbol.isPut(sym))
            {
                _putChain.add(item);
            }
@@ -97,7 +105,7 @@ public class OptionChain
         
         for (Message call : _callChain)
         {
-            Field expiration = call.get("EXPIRATION.DATE");
+            Field expiration = call.get(EXPIRATION_DATE);
             if (expiration != null && expiration.getValue().equals(expirationDate))
             {
                 calls.add(call);
@@ -118,7 +126,7 @@ public class OptionChain
         
         for (Message call : _callChain)
         {
-            Field strike = call.get("STRIKE.PRICE");
+            Field strike = call.get(STRIKE_PRICE);
             if (strike != null && strike.getValue().equals(strikePrice))
             {
                 calls.add(call);
@@ -148,7 +156,7 @@ public class OptionChain
         
         for (Message put : _putChain)
         {
-            Field expiration = put.get("EXPIRATION.DATE");
+            Field expiration = put.get(EXPIRATION_DATE);
             if (expiration != null && expiration.getValue().equals(expirationDate))
             {
                 puts.add(put);
@@ -169,7 +177,7 @@ public class OptionChain
         
         for (Message put : _putChain)
         {
-            Field strike = put.get("STRIKE.PRICE");
+            Field strike = put.get(STRIKE_PRICE);
             if (strike != null && strike.getValue().equals(strikePrice))
             {
                 puts.add(put);
@@ -190,7 +198,7 @@ public class OptionChain
         // get all the strike prices from the call chain.
         for (Message option : _callChain)
         {
-            Field strike = option.get("STRIKE.PRICE");
+            Field strike = option.get(STRIKE_PRICE);
             if (strike != null)
             {
                 strikePrices.add(strike.getValue());
@@ -200,7 +208,7 @@ public class OptionChain
         // get all the strike prices from the put chain.
         for (Message option : _putChain)
         {
-            Field strike = option.get("STRIKE.PRICE");
+            Field strike = option.get(STRIKE_PRICE);
             if (strike != null)
             {
                 strikePrices.add(strike.getValue());
@@ -221,7 +229,7 @@ public class OptionChain
         // get all the expiry dates from the call chain.
         for (Message option : _callChain)
         {
-            Field expiration = option.get("EXPIRATION.DATE");
+            Field expiration = option.get(EXPIRATION_DATE);
             if (expiration != null)
             {
                 expiryDates.add(expiration.getValue());
@@ -231,7 +239,7 @@ public class OptionChain
         // get all the expiry dates from the put chain.
         for (Message option : _putChain)
         {
-            Field expiration = option.get("EXPIRATION.DATE");
+            Field expiration = option.get(EXPIRATION_DATE);
             if (expiration != null)
             {
                 expiryDates.add(expiration.getValue());
@@ -75,7 +75,20 @@ public class Symbol
      */
     public Symbol(int exch, String ticker)
     {
-        this.exch = DataDict.getExchange(exch);
+        this(exch, ticker, DataDict.getDefault());
+    }
+    
+    /**
+     * Constructs a symbol object given exchange id and ticker symbol, with
+     * the exchange defined in the data dictionary of a feed.
+     * 
+     * @param exch The exchange id
+     * @param ticker The ticker symbol
+     * @param dict The data dictionary
+     */
+    public Symbol(int exch, String ticker, DataDictionary dict)
+    {
+        this.exch = dict.getExchange(exch);
         this.ticker = ticker;
     }
     
@@ -87,7 +100,7 @@ public class Symbol
      */
     public Symbol(Message msg)
     {
-        this.exch = DataDict.getExchange(msg.get(4).getIntValue());
+        this.exch = msg.getDictSnapshot().getExchange(msg.get(4).getIntValue());
         this.ticker = msg.get(5).getValue();
     }
     
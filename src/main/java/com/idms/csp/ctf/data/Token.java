@@ -54,6 +54,25 @@ public class Token
         }
     }
 
+    /**
+     * Creates a new instance of Token from values already parsed, for e.g.
+     * read from a dictionary image.
+     * 
+     * @param num The CTF token number.
+     * @param name The CTF token name.
+     * @param type The CTF token type.
+     * @param size The CTF token size.
+     * @param store The CTF token store.
+     */
+    Token(int num, String name, Type type, int size, boolean store)
+    {
+        this.num = num;
+        this.name = name;
+        this.type = type;
+        this.size = size;
+        this.store = store;
+    }
+
     /**
      * Creates a new instance of token defined in a CTF message. For e.g.
      * <br>5011=20|5010=PERMISSION|5002=1|5012=INTEGER|5035=3|5026=1|
@@ -0,0 +1,196 @@
+/*
+ * TokenHandle.java
+ */
+
+package com.idms.csp.ctf.data;
+
+/**
+ * This class is a token name resolved against the data dictionary once and
+ * then reused, so the name is not looked up again for every message. Handles
+ * are meant to be kept in constants. For e.g.
+ * <br><code>static final TokenHandle TRADE_PRICE = TokenHandle.of("TRADE.PRICE");
+ * <br>Field lastPrice = msg.get(TRADE_PRICE);</code>
+ * <p>
+ * A handle can be created before the data dictionary is initialized. It is
+ * resolved by name the first time it is used with a DictSnapshot, and the
+ * resolution is kept for that snapshot. Against another snapshot, for e.g.
+ * that of another feed or one installed by a reload, the cached token number
+ * is checked with a lookup by number, which is a lock free array load, and
+ * the name is looked up again only if the number now holds another token.
+ * Either way the handle is then resolved for the new snapshot.
+ * Handles are immutable apart from that cache and are safe to share between
+ * threads.
+ */
+public final class TokenHandle
+{
+    // The token name.
+    private final String _name;
+
+    // The last resolution of the name, or null if not yet resolved.
+    private volatile Resolved _resolved;
+
+    /**
+     * Creates a handle for the token name.
+     *
+     * @param name The token name.
+     */
+    private TokenHandle(String name)
+    {
+        if (name == null)
+        {
+            throw new NullPointerException("name");
+        }
+        _name = name;
+    }
+
+    /**
+     * Returns a handle for the token name. For e.g. TokenHandle.of("SYMBOL.TICKER")
+     *
+     * @param name The token name.
+     * @return The TokenHandle object.
+     */
+    public static TokenHandle of(String name)
+    {
+        return new TokenHandle(name);
+    }
+
+    /**
+     * Returns the handles for the token names, in the same order.
+     *
+     * @param names The token names.
+     * @return The array of TokenHandle objects.
+     */
+    public static TokenHandle[] ofAll(String... names)
+    {
+        TokenHandle[] handles = new TokenHandle[names.length];
+        for (int i=0; i<names.length; i++)
+        {
+            handles[i] = new TokenHandle(names[i]);
+        }
+
+        return handles;
+    }
+
+    /**
+     * Returns the token name.
+     *
+     * @return The token name.
+     */
+    public String getName()
+    {
+        return _name;
+    }
+
+    /**
+     * Returns the token definition.
+     *
+     * @return The Token object, or null if the name is not defined in the
+     * data dictionary.
+     */
+    public Token getToken()
+    {
+        return getToken(DataDict.getDefault().getSnapshot());
+    }
+
+    /**
+     * Returns the token definition in a given data dictionary, for e.g. the
+     * one a message was built with.
+     *
+     * @param dict The data dictionary.
+     * @return The Token object, or null if the name is not defined in it.
+     */
+    public Token getToken(DictSnapshot dict)
+    {
+        Resolved resolved = _resolved;
+
+        if (resolved != null)
+        {
+            if (resolved.dict == dict)
+            {
+                return resolved.token;
+            }
+
+            // Another snapshot, the token number most likely still holds the name.
+            if (resolved.token != null)
+            {
+                Token token = dict.getToken(resolved.token.num);
+                if (token != null && _name.equals(token.name))
+                {
+                    _resolved = new Resolved(dict, token);
+                    return token;
+                }
+            }
+        }
+
+        Token token = dict.getToken(_name);
+        _resolved = new Resolved(dict, token);
+
+        return token;
+    }
+
+    /**
+     * Returns the token number in a given data dictionary.
+     *
+     * @param dict The data dictionary.
+     * @return The token number, or -1 if the name is not defined in it.
+     */
+    public int getNum(DictSnapshot dict)
+    {
+        Token token = getToken(dict);
+
+        return (token != null) ? token.num : -1;
+    }
+
+    /**
+     * Returns the token number.
+     *
+     * @return The token number, or -1 if the name is not defined.
+     */
+    public int getNum()
+    {
+        Token token = getToken();
+
+        return (token != null) ? token.num : -1;
+    }
+
+    /**
+     * Returns the token type.
+     *
+     * @return The token type, or null if the name is not defined.
+     */
+    public Token.Type getType()
+    {
+        Token token = getToken();
+
+        return (token != null) ? token.type : null;
+    }
+
+    /**
+     * Returns the string representation of this handle.
+     *
+     * @return The token name.
+     */
+    @Override
+    public String toString()
+    {
+        return _name;
+    }
+
+    /**
+     * A token name resolved in a data dictionary.
+     */
+    private static final class Resolved
+    {
+        // The data dictionary.
+        final DictSnapshot dict;
+
+        // The token definition, or null if the name is not defined in it.
+        final Token token;
+
+        Resolved(DictSnapshot dict, Token token)
+        {
+            this.dict = dict;
+            this.token = token;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * TokenIndex.java
+ */
+
+package com.idms.csp.ctf.data;
+
+import java.util.Arrays;
+
+/**
+ * This class maps token numbers to the positions (slots) of the fields that
+ * carry them in a message. It is an open addressing hash table of primitive
+ * ints, so lookups take constant time and do not box. Repeated tokens, for
+ * e.g. PERMISSION, are chained from the first slot to the next in the order
+ * they were added.
+ * <p>
+ * Slots must be added in increasing order, as fields are appended to a
+ * message. This class is not thread safe.
+ */
+final class TokenIndex
+{
+    // Marks an unused bucket and the end of a chain.
+    static final int NONE = -1;
+
+    // Initial number of buckets. Enough for a typical Level 1 message.
+    private static final int INITIAL_BUCKETS = 64;
+
+    // Token number, first slot and last slot of each bucket.
+    private int[] _keys;
+    private int[] _heads;
+    private int[] _tails;
+
+    // Next slot carrying the same token, for each slot.
+    private int[] _next;
+
+    // Number of distinct tokens.
+    private int _size;
+
+    /**
+     * Creates an empty index.
+     */
+    TokenIndex()
+    {
+        _keys = new int[INITIAL_BUCKETS];
+        _heads = new int[INITIAL_BUCKETS];
+        _tails = new int[INITIAL_BUCKETS];
+        _next = new int[INITIAL_BUCKETS / 2];
+        Arrays.fill(_keys, NONE);
+    }
+
+    /**
+     * Records that the field at the given slot carries the token.
+     *
+     * @param toknum The token number.
+     * @param slot The position of the field in the message.
+     */
+    void add(int toknum, int slot)
+    {
+        if (slot >= _next.length)
+        {
+            _next = Arrays.copyOf(_next, Math.max(slot + 1, _next.length * 2));
+        }
+        _next[slot] = NONE;
+
+        int bucket = bucket(toknum);
+        if (_keys[bucket] == toknum)
+        {
+            // Repeated token, chain it after the last one.
+            _next[_tails[bucket]] = slot;
+            _tails[bucket] = slot;
+            return;
+        }
+
+        _keys[bucket] = toknum;
+        _heads[bucket] = slot;
+        _tails[bucket] = slot;
+
+        // Keep the table at most half full so probe sequences stay short.
+        if (++_size * 2 > _keys.length)
+        {
+            rehash(_keys.length * 2);
+        }
+    }
+
+    /**
+     * Returns the slot of the first field carrying the token.
+     *
+     * @param toknum The token number.
+     * @return The slot, or NONE if the token is not present.
+     */
+    int first(int toknum)
+    {
+        int mask = _keys.length - 1;
+        for (int i=hash(toknum) & mask; ; i=(i+1) & mask)
+        {
+            int key = _keys[i];
+            if (key == toknum)
+            {
+                return _heads[i];
+            }
+            if (key == NONE)
+            {
+                return NONE;
+            }
+        }
+    }
+
+    /**
+     * Returns the slot of the next field carrying the same token.
+     *
+     * @param slot The slot of a field.
+     * @return The next slot, or NONE if it was the last one.
+     */
+    int next(int slot)
+    {
+        return _next[slot];
+    }
+
+    /**
+     * Removes all the tokens from this index.
+     */
+    void clear()
+    {
+        if (_size > 0)
+        {
+            Arrays.fill(_keys, NONE);
+            _size = 0;
+        }
+    }
+
+    /**
+     * Returns the bucket holding the token, or the empty bucket where it
+     * should be inserted.
+     */
+    private int bucket(int toknum)
+    {
+        int mask = _keys.length - 1;
+        int i = hash(toknum) & mask;
+        while (_keys[i] != NONE && _keys[i] != toknum)
+        {
+            i = (i+1) & mask;
+        }
+
+        return i;
+    }
+
+    /**
+     * Moves all the tokens into a table with the given number of buckets.
+     */
+    private void rehash(int buckets)
+    {
+        int[] keys = _keys;
+        int[] heads = _heads;
+        int[] tails = _tails;
+
+        _keys = new int[buckets];
+        _heads = new int[buckets];
+        _tails = new int[buckets];
+        Arrays.fill(_keys, NONE);
+
+        for (int i=0; i<keys.length; i++)
+        {
+            if (keys[i] != NONE)
+            {
+                int bucket = bucket(keys[i]);
+                _keys[bucket] = keys[i];
+                _heads[bucket] = heads[i];
+                _tails[bucket] = tails[i];
+            }
+        }
+    }
+
+    /**
+     * Spreads the token numbers, which are mostly small and dense, over the
+     * buckets.
+     */
+    private static int hash(int toknum)
+    {
+        int h = toknum * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
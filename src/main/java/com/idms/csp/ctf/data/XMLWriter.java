@@ -0,0 +1,148 @@
+/*
+ * XMLWriter.java
+ */
+
+package com.idms.csp.ctf.data;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * This class writes messages in the XML format of Message.toXML(), one
+ * message per line, for e.g.
+ * <br><code>&lt;CTFMessage&gt;&lt;SYMBOL_TICKER&gt;IBM&lt;/SYMBOL_TICKER&gt;&lt;TRADE_PRICE&gt;101.19&lt;/TRADE_PRICE&gt;&lt;/CTFMessage&gt;</code>
+ * <p>
+ * The tag of each token is compiled once, and the characters of the values
+ * that are special in XML are escaped. See MessageWriter.
+ */
+public class XMLWriter extends MessageWriter
+{
+    // The message element.
+    private static final byte[] BEGIN = ascii("<CTFMessage>");
+    private static final byte[] END = ascii("</CTFMessage>\n");
+
+    // The escaped forms of the special characters.
+    private static final byte[] AMP = ascii("&amp;");
+    private static final byte[] LT = ascii("&lt;");
+    private static final byte[] GT = ascii("&gt;");
+    private static final byte[] QUOT = ascii("&quot;");
+
+    /**
+     * Creates a writer that keeps the output in its buffer.
+     */
+    public XMLWriter()
+    {
+        super(null, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Creates a writer to a stream.
+     *
+     * @param out The OutputStream to write to.
+     */
+    public XMLWriter(OutputStream out)
+    {
+        super(out);
+    }
+
+    /**
+     * Creates a writer to a stream.
+     *
+     * @param out The OutputStream to write to.
+     * @param size The size of the buffer.
+     */
+    public XMLWriter(OutputStream out, int size)
+    {
+        super(out, size);
+    }
+
+    @Override
+    protected void begin(Message msg) throws IOException
+    {
+        put(BEGIN);
+    }
+
+    @Override
+    protected void field(Field field) throws IOException
+    {
+        Token token = field.getToken();
+        String value = field.getValue();
+        if (token == null || value == null)
+        {
+            return;
+        }
+
+        // The open tag is followed by the close tag, one byte longer.
+        byte[] tags = tokenBytes(token);
+        int open = tags.length / 2;
+
+        put(tags, 0, open);
+        putEscaped(value);
+        put(tags, open, tags.length - open);
+    }
+
+    @Override
+    protected void end(Message msg) throws IOException
+    {
+        put(END);
+    }
+
+    /**
+     * Compiles the open and close tags of a token, for e.g.
+     * "&lt;TRADE_PRICE&gt;&lt;/TRADE_PRICE&gt;".
+     */
+    @Override
+    protected byte[] compile(Token token)
+    {
+        String name = token.getName().replace('.', '_');
+
+        return ascii("<" + name + "></" + name + ">");
+    }
+
+    /**
+     * Writes a value, escaping the characters that are special in XML.
+     */
+    private void putEscaped(String value) throws IOException
+    {
+        boolean plain = true;
+        for (int i=0; i<value.length() && plain; i++)
+        {
+            char c = value.charAt(i);
+            plain = (c < 0x80 && c != '&' && c != '<' && c != '>' && c != '"');
+        }
+
+        if (plain)
+        {
+            putAscii(value);
+            return;
+        }
+
+        ensure(value.length());
+        for (int i=0; i<value.length(); i++)
+        {
+            char c = value.charAt(i);
+            switch (c)
+            {
+                case '&':
+                    put(AMP);
+                    break;
+
+                case '<':
+                    put(LT);
+                    break;
+
+                case '>':
+                    put(GT);
+                    break;
+
+                case '"':
+                    put(QUOT);
+                    break;
+
+                default:
+                    put((c < 0x80) ? (byte) c : (byte) '?');
+                    break;
+            }
+        }
+    }
+}
@@ -0,0 +1,686 @@
+/*
+ * ColumnarTimeAndSales.java
+ */
+
+package com.idms.csp.ctf.tas;
+
+import com.idms.csp.ctf.util.Price;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class holds Time and Sales data in columns of primitive values rather
+ * than as record objects, for the long histories of liquid symbols where a
+ * full day is millions of records. Times and sequence numbers are held in
+ * PackedColumn objects, as differences that mostly take 1 or 2 bytes, and
+ * the values of trades and of quotes in columns of their own, so the prices,
+ * sizes and sequence numbers of one kind never widen the columns of the
+ * other. Prices are held at the scale of their column, see PriceColumn, and
+ * the conditions as an index into the distinct condition sets. A record
+ * takes about a quarter of the heap of a TradeRecord or QuoteRecord object in
+ * a list, see TimeAndSalesBenchmark.main(). For e.g.
+ * <br><code>ColumnarTimeAndSales tas = new ColumnarTimeAndSales(srcid, sym, from, to);
+ * <br>decoder.decode(payload, tas);
+ * <br>...
+ * <br>ColumnarTimeAndSales.Cursor cursor = tas.cursor();
+ * <br>while (cursor.next())
+ * <br>{
+ * <br>&nbsp;&nbsp;&nbsp;&nbsp;if (cursor.isNBBO())
+ * <br>&nbsp;&nbsp;&nbsp;&nbsp;{
+ * <br>&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;NBBORecord nbbo = (NBBORecord) cursor.getRecord();
+ * <br>&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;...</code>
+ * <p>
+ * A Cursor scans the records in order, loading each into a record object it
+ * reuses, so a scan does not allocate. The lists returned by getAllRecords()
+ * and the typed getters are views that create a record for each element
+ * they return.
+ * <p>
+ * The records added must be TradeRecord, QuoteRecord and NBBORecord objects
+ * of their own type, T, Q and B, as TaSRecordDecoder creates them. This
+ * class is not thread safe.
+ */
+public class ColumnarTimeAndSales extends TimeAndSales
+{
+    // Initial number of records.
+    private static final int INITIAL_CAPACITY = 64;
+
+    // Bytes of each record in _codes: the type, the participant, the bid and
+    // ask participants of NBBO records, and the row of the record in the
+    // columns of its kind, counted from the first row of its block.
+    private static final int CODES = 5;
+
+    // Records per block, as a shift. A block has at most 128 records, so the
+    // row of a record in its block fits a byte.
+    private static final int BLOCK_SHIFT = 7;
+
+    // Ints of each condition set in _conditionSets.
+    private static final int CONDITION_SIZE = 6;
+
+    // The type, participant, bid and ask participant codes and the row of
+    // the records.
+    private byte[] _codes = new byte[INITIAL_CAPACITY * CODES];
+
+    // The first trade row and quote row of each block of records.
+    private int[] _blockRows = new int[16 * 2];
+
+    // Number of trade rows and quote rows.
+    private int _tradeRows;
+    private int _quoteRows;
+
+    // The activity date times and the tas sequence numbers of the records.
+    private final PackedColumn _times = new PackedColumn(-1L);
+    private final PackedColumn _tasSeqs = new PackedColumn(-1L);
+
+    // The trade price, VWAP, size, sequence number and condition set index of
+    // the trades, by trade row.
+    private final PriceColumn _tradePrices = new PriceColumn();
+    private final PriceColumn _vwaps = new PriceColumn();
+    private final PackedColumn _tradeSizes = new PackedColumn(Long.MIN_VALUE);
+    private final PackedColumn _tradeSeqs = new PackedColumn(Long.MIN_VALUE);
+    private final PackedColumn _tradeConditions = new PackedColumn(Long.MIN_VALUE);
+
+    // The bid and ask prices and sizes and the condition set index of the
+    // quote and NBBO records, by quote row.
+    private final PriceColumn _bidPrices = new PriceColumn();
+    private final PriceColumn _askPrices = new PriceColumn();
+    private final PackedColumn _bidSizes = new PackedColumn(Long.MIN_VALUE);
+    private final PackedColumn _askSizes = new PackedColumn(Long.MIN_VALUE);
+    private final PackedColumn _quoteConditions = new PackedColumn(Long.MIN_VALUE);
+
+    // The distinct condition sets, CONDITION_SIZE ints each: the conditions
+    // 1, 2 and 4 and their categories. Trades only use condition 1.
+    private int[] _conditionSets = new int[16 * CONDITION_SIZE];
+    private int _conditionCount;
+
+    // Open addressing table of the condition sets, holding index + 1.
+    private int[] _conditionTable = new int[32];
+
+    // Number of records.
+    private int _size;
+
+    // All the records, a view that creates the record of each element.
+    private final List<TaSRecord> _allRecordsView = new AbstractList<TaSRecord>()
+    {
+        @Override
+        public TaSRecord get(int i)
+        {
+            return ColumnarTimeAndSales.this.get(i);
+        }
+
+        @Override
+        public int size()
+        {
+            return _size;
+        }
+    };
+
+    /**
+     *
+     * @param srcid
+     * @param sym
+     * @param fromCTFDateTime
+     * @param toCTFDateTime
+     */
+    public ColumnarTimeAndSales(int srcid, String sym, String fromCTFDateTime, String toCTFDateTime)
+    {
+        super(srcid, sym, fromCTFDateTime, toCTFDateTime);
+    }
+
+    /**
+     *
+     * @param srcid
+     * @param sym
+     * @param fromCTFDateTime
+     * @param toCTFDateTime
+     * @param pivotCTFDateTime
+     * @param pivotCount
+     */
+    public ColumnarTimeAndSales(int srcid, String sym, String fromCTFDateTime, String toCTFDateTime, String pivotCTFDateTime, int pivotCount)
+    {
+        super(srcid, sym, fromCTFDateTime, toCTFDateTime, pivotCTFDateTime, pivotCount);
+    }
+
+    /**
+     * Adds a record, copying its values into the columns. The record object
+     * is not kept.
+     *
+     * @param newrec The TradeRecord, QuoteRecord or NBBORecord object.
+     * @throws IllegalArgumentException If the record is of another type.
+     */
+    @Override
+    public void add(TaSRecord newrec)
+    {
+        byte type = typeOf(newrec);
+        if (type == 0)
+        {
+            throw new IllegalArgumentException("Unsupported record type: " + newrec.getType());
+        }
+
+        if ((_size + 1) * CODES > _codes.length)
+        {
+            _codes = Arrays.copyOf(_codes, Math.max(_codes.length * 2, INITIAL_CAPACITY * CODES));
+        }
+
+        int block = _size >>> BLOCK_SHIFT;
+        if ((_size & ((1 << BLOCK_SHIFT) - 1)) == 0)
+        {
+            // First record of the block.
+            if (block * 2 == _blockRows.length)
+            {
+                _blockRows = Arrays.copyOf(_blockRows, _blockRows.length * 2);
+            }
+            _blockRows[block * 2] = _tradeRows;
+            _blockRows[block * 2 + 1] = _quoteRows;
+        }
+
+        int i = _size * CODES;
+        _codes[i] = type;
+        _codes[i + 1] = newrec._participantCode;
+        _times.add(newrec._activityDateTime);
+        _tasSeqs.add(newrec._tasSeq);
+
+        if (type == 'T')
+        {
+            TradeRecord trade = (TradeRecord) newrec;
+            _codes[i + 4] = (byte) (_tradeRows++ - _blockRows[block * 2]);
+            _tradePrices.add(trade._tradePrice);
+            _vwaps.add(trade._vwap);
+            _tradeSizes.add(trade._tradeSize);
+            _tradeSeqs.add(trade._tradeSeq);
+            _tradeConditions.add(internConditions(trade._tradeCondition1, 0, 0, trade._conditionCategories, 0, 0));
+        }
+        else
+        {
+            QuoteRecord quote = (QuoteRecord) newrec;
+            _codes[i + 4] = (byte) (_quoteRows++ - _blockRows[block * 2 + 1]);
+            _bidPrices.add(quote._bidPrice);
+            _askPrices.add(quote._askPrice);
+            _bidSizes.add(quote._bidSize);
+            _askSizes.add(quote._askSize);
+            _quoteConditions.add(internConditions(quote._quoteCondition1, quote._quoteCondition2,
+                    quote._quoteCondition4, quote._categories1, quote._categories2, quote._categories4));
+
+            if (type == 'B')
+            {
+                NBBORecord nbbo = (NBBORecord) newrec;
+                _codes[i + 2] = nbbo._bidParticipantCode;
+                _codes[i + 3] = nbbo._askParticipantCode;
+            }
+        }
+
+        index(newrec, _size);
+        _size++;
+    }
+
+    /**
+     * Returns the number of records.
+     *
+     * @return The number of records.
+     */
+    public int size()
+    {
+        return _size;
+    }
+
+    /**
+     * Returns a record, as a new object.
+     *
+     * @param i The index of the record.
+     * @return The TradeRecord, QuoteRecord or NBBORecord object.
+     */
+    public TaSRecord get(int i)
+    {
+        checkIndex(i);
+        TaSRecord record = newRecord(_codes[i * CODES]);
+        load(i, record);
+
+        return record;
+    }
+
+    /**
+     * Returns a cursor over the records, positioned before the first one.
+     *
+     * @return The Cursor object.
+     */
+    public Cursor cursor()
+    {
+        return new Cursor();
+    }
+
+    /**
+     * Releases the room reserved for more records.
+     */
+    public void trim()
+    {
+        _codes = Arrays.copyOf(_codes, _size * CODES);
+        _blockRows = Arrays.copyOf(_blockRows, Math.max((_size + (1 << BLOCK_SHIFT) - 1) >>> BLOCK_SHIFT, 1) * 2);
+        _times.trim();
+        _tasSeqs.trim();
+        _tradePrices.trim();
+        _vwaps.trim();
+        _tradeSizes.trim();
+        _tradeSeqs.trim();
+        _tradeConditions.trim();
+        _bidPrices.trim();
+        _askPrices.trim();
+        _bidSizes.trim();
+        _askSizes.trim();
+        _quoteConditions.trim();
+    }
+
+    /**
+     * Returns all the records, as a list that creates the record of each
+     * element it returns.
+     *
+     * @return The records.
+     */
+    @Override
+    public List<TaSRecord> getAllRecords()
+    {
+        return _allRecordsView;
+    }
+
+    @Override
+    TaSRecord recordAt(int position)
+    {
+        return get(position);
+    }
+
+    /**
+     * This class scans the records in order. The values of the current
+     * record are read straight from the columns, for e.g. getBidPriceFixed(),
+     * which only touches the columns a scan needs, or from the record returned
+     * by getRecord(), loaded into a record object that is reused, so it is
+     * only valid until the cursor moves.
+     */
+    public final class Cursor
+    {
+        // The index of the current record, and its row in the columns of its
+        // kind.
+        private int _index = -1;
+        private int _row;
+
+        // The index of the record loaded into the record objects.
+        private int _loaded = -1;
+
+        // The reused record objects.
+        private final TradeRecord _trade = new TradeRecord();
+        private final QuoteRecord _quote = new QuoteRecord();
+        private final NBBORecord _nbbo = new NBBORecord();
+
+        private Cursor()
+        {
+        }
+
+        /**
+         * Moves to the next record.
+         *
+         * @return false if there are no more records.
+         */
+        public boolean next()
+        {
+            if (_index + 1 >= _size)
+            {
+                _index = _size;
+                return false;
+            }
+
+            _index++;
+            _row = row(_index);
+            return true;
+        }
+
+        /**
+         * Moves to a record.
+         *
+         * @param i The index of the record.
+         */
+        public void seek(int i)
+        {
+            checkIndex(i);
+            _index = i;
+            _row = row(i);
+        }
+
+        /**
+         * Returns the index of the current record.
+         *
+         * @return The index.
+         */
+        public int getIndex()
+        {
+            return _index;
+        }
+
+        /**
+         * Returns the type of the current record.
+         *
+         * @return TaSRecord.RECTYPE_TRADE, RECTYPE_QUOTE or RECTYPE_NBBO.
+         */
+        public String getType()
+        {
+            switch (type())
+            {
+                case 'T':
+                    return TaSRecord.RECTYPE_TRADE;
+
+                case 'B':
+                    return TaSRecord.RECTYPE_NBBO;
+
+                default:
+                    return TaSRecord.RECTYPE_QUOTE;
+            }
+        }
+
+        /**
+         * Checks if the current record is a trade.
+         *
+         * @return true if it is.
+         */
+        public boolean isTrade()
+        {
+            return type() == 'T';
+        }
+
+        /**
+         * Checks if the current record is a quote.
+         *
+         * @return true if it is.
+         */
+        public boolean isQuote()
+        {
+            return type() == 'Q';
+        }
+
+        /**
+         * Checks if the current record is an NBBO record.
+         *
+         * @return true if it is.
+         */
+        public boolean isNBBO()
+        {
+            return type() == 'B';
+        }
+
+        /**
+         * Returns the activity date time of the current record.
+         *
+         * @return The UTC time in milliseconds.
+         */
+        public long getActivityDateTime()
+        {
+            return _times.get(_index);
+        }
+
+        /**
+         * Returns the tas sequence number of the current record.
+         *
+         * @return The tas sequence number.
+         */
+        public int getTaSSeq()
+        {
+            return (int) _tasSeqs.get(_index);
+        }
+
+        /**
+         * Returns the participant code of the current record.
+         *
+         * @return The participant code, MarketCenterTable.NONE if not set.
+         */
+        public byte getParticipant()
+        {
+            return _codes[_index * CODES + 1];
+        }
+
+        /**
+         * Returns the trade price of the current trade.
+         *
+         * @return The fixed point price, see Price.
+         */
+        public long getTradePriceFixed()
+        {
+            return _tradePrices.get(_row);
+        }
+
+        /**
+         * Returns the trade size of the current trade.
+         *
+         * @return The trade size.
+         */
+        public int getTradeSize()
+        {
+            return (int) _tradeSizes.get(_row);
+        }
+
+        /**
+         * Returns the bid price of the current quote or NBBO record.
+         *
+         * @return The fixed point price, see Price.
+         */
+        public long getBidPriceFixed()
+        {
+            return _bidPrices.get(_row);
+        }
+
+        /**
+         * Returns the bid size of the current quote or NBBO record.
+         *
+         * @return The bid size.
+         */
+        public int getBidSize()
+        {
+            return (int) _bidSizes.get(_row);
+        }
+
+        /**
+         * Returns the ask price of the current quote or NBBO record.
+         *
+         * @return The fixed point price, see Price.
+         */
+        public long getAskPriceFixed()
+        {
+            return _askPrices.get(_row);
+        }
+
+        /**
+         * Returns the ask size of the current quote or NBBO record.
+         *
+         * @return The ask size.
+         */
+        public int getAskSize()
+        {
+            return (int) _askSizes.get(_row);
+        }
+
+        /**
+         * Returns the current record, loaded into the record object of its
+         * type that this cursor reuses.
+         *
+         * @return The TradeRecord, QuoteRecord or NBBORecord object, valid
+         * until the cursor moves.
+         */
+        public TaSRecord getRecord()
+        {
+            byte type = type();
+            TaSRecord record = (type == 'T') ? _trade : (type == 'B') ? _nbbo : _quote;
+            if (_loaded != _index)
+            {
+                load(_index, record);
+                _loaded = _index;
+            }
+
+            return record;
+        }
+
+        private byte type()
+        {
+            return _codes[_index * CODES];
+        }
+    }
+
+    /**
+     * Loads the values of a record into a record object of its type.
+     */
+    private void load(int i, TaSRecord record)
+    {
+        int c = i * CODES;
+        record._participantCode = _codes[c + 1];
+        record._activityDateTime = _times.get(i);
+        record._tasSeq = (int) _tasSeqs.get(i);
+
+        int row = row(i);
+        if (_codes[c] == 'T')
+        {
+            TradeRecord trade = (TradeRecord) record;
+            int set = (int) _tradeConditions.get(row) * CONDITION_SIZE;
+            trade._tradePrice = _tradePrices.get(row);
+            trade._vwap = _vwaps.get(row);
+            trade._tradeSize = (int) _tradeSizes.get(row);
+            trade._tradeSeq = (int) _tradeSeqs.get(row);
+            trade._tradeCondition1 = _conditionSets[set];
+            trade._conditionCategories = _conditionSets[set + 3];
+            return;
+        }
+
+        QuoteRecord quote = (QuoteRecord) record;
+        int set = (int) _quoteConditions.get(row) * CONDITION_SIZE;
+        quote._bidPrice = _bidPrices.get(row);
+        quote._askPrice = _askPrices.get(row);
+        quote._bidSize = (int) _bidSizes.get(row);
+        quote._askSize = (int) _askSizes.get(row);
+        quote._quoteCondition1 = _conditionSets[set];
+        quote._quoteCondition2 = _conditionSets[set + 1];
+        quote._quoteCondition4 = _conditionSets[set + 2];
+        quote._categories1 = _conditionSets[set + 3];
+        quote._categories2 = _conditionSets[set + 4];
+        quote._categories4 = _conditionSets[set + 5];
+        quote._conditionCategories = quote._categories1 | quote._categories2 | quote._categories4;
+
+        if (_codes[c] == 'B')
+        {
+            NBBORecord nbbo = (NBBORecord) record;
+            nbbo._bidParticipantCode = _codes[c + 2];
+            nbbo._askParticipantCode = _codes[c + 3];
+        }
+    }
+
+    /**
+     * Returns the row of a record in the columns of its kind.
+     */
+    private int row(int i)
+    {
+        int kind = (_codes[i * CODES] == 'T') ? 0 : 1;
+
+        return _blockRows[(i >>> BLOCK_SHIFT) * 2 + kind] + (_codes[i * CODES + 4] & 0xff);
+    }
+
+    /**
+     * Returns the index of a condition set, adding it if it is new.
+     */
+    private int internConditions(int c1, int c2, int c4, int cat1, int cat2, int cat4)
+    {
+        int mask = _conditionTable.length - 1;
+        int hash = ((c1 * 31 + c2) * 31 + c4) * 31 + cat1 + cat2 + cat4;
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        for (; _conditionTable[slot] != 0; slot=(slot+1) & mask)
+        {
+            int set = (_conditionTable[slot] - 1) * CONDITION_SIZE;
+            if (_conditionSets[set] == c1 && _conditionSets[set + 1] == c2 && _conditionSets[set + 2] == c4
+                    && _conditionSets[set + 3] == cat1 && _conditionSets[set + 4] == cat2
+                    && _conditionSets[set + 5] == cat4)
+            {
+                return _conditionTable[slot] - 1;
+            }
+        }
+
+        int index = _conditionCount++;
+        if (_conditionCount * CONDITION_SIZE > _conditionSets.length)
+        {
+            _conditionSets = Arrays.copyOf(_conditionSets, _conditionSets.length * 2);
+        }
+
+        int set = index * CONDITION_SIZE;
+        _conditionSets[set] = c1;
+        _conditionSets[set + 1] = c2;
+        _conditionSets[set + 2] = c4;
+        _conditionSets[set + 3] = cat1;
+        _conditionSets[set + 4] = cat2;
+        _conditionSets[set + 5] = cat4;
+        _conditionTable[slot] = index + 1;
+
+        // Keep the table at most half full.
+        if (_conditionCount * 2 > _conditionTable.length)
+        {
+            rehashConditions();
+        }
+
+        return index;
+    }
+
+    private void rehashConditions()
+    {
+        int[] table = new int[_conditionTable.length * 2];
+        int mask = table.length - 1;
+        for (int index=0; index<_conditionCount; index++)
+        {
+            int set = index * CONDITION_SIZE;
+            int hash = ((_conditionSets[set] * 31 + _conditionSets[set + 1]) * 31 + _conditionSets[set + 2]) * 31
+                    + _conditionSets[set + 3] + _conditionSets[set + 4] + _conditionSets[set + 5];
+            int slot = (hash ^ (hash >>> 16)) & mask;
+            while (table[slot] != 0)
+            {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = index + 1;
+        }
+
+        _conditionTable = table;
+    }
+
+    /**
+     * Returns the type code of a record, or 0 if it can't be held.
+     */
+    private static byte typeOf(TaSRecord record)
+    {
+        String type = record.getType();
+        if (record instanceof NBBORecord)
+        {
+            return TaSRecord.RECTYPE_NBBO.equals(type) ? (byte) 'B' : 0;
+        }
+        if (record instanceof QuoteRecord)
+        {
+            return TaSRecord.RECTYPE_QUOTE.equals(type) ? (byte) 'Q' : 0;
+        }
+        if (record instanceof TradeRecord)
+        {
+            return TaSRecord.RECTYPE_TRADE.equals(type) ? (byte) 'T' : 0;
+        }
+
+        return 0;
+    }
+
+    private static TaSRecord newRecord(byte type)
+    {
+        switch (type)
+        {
+            case 'T':
+                return new TradeRecord();
+
+            case 'B':
+                return new NBBORecord();
+
+            default:
+                return new QuoteRecord();
+        }
+    }
+
+    private void checkIndex(int i)
+    {
+        if (i < 0 || i >= _size)
+        {
+            throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + _size);
+        }
+    }
+}
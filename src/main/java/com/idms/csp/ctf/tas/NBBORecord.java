@@ -4,6 +4,9 @@
 
 package com.idms.csp.ctf.tas;
 
+import com.idms.csp.ctf.data.MarketCenterTable;
+import com.idms.csp.ctf.util.Price;
+
 /**
  * A sample nbbo record:
  *
@@ -23,10 +26,10 @@ package com.idms.csp.ctf.tas;
 public class NBBORecord extends QuoteRecord
 {
     // The participating exchange or market center code for bid side.
-    String _bidParticipantCode;
+    byte _bidParticipantCode = MarketCenterTable.NONE;
 
     // The participating exchange or market center code for ask side.
-    String _askParticipantCode;
+    byte _askParticipantCode = MarketCenterTable.NONE;
 
     /**
      *
@@ -51,8 +54,8 @@ public class NBBORecord extends QuoteRecord
         if (newrec != null)
         {
             super.copyto(newrec);
-            newrec.setAskParticipantCode(_askParticipantCode);
-            newrec.setBidParticipantCode(_bidParticipantCode);
+            newrec.setAskParticipant(_askParticipantCode);
+            newrec.setBidParticipant(_bidParticipantCode);
         }
     }
 
@@ -62,7 +65,7 @@ public class NBBORecord extends QuoteRecord
      */
     public void setBidParticipantCode(String participantCode)
     {
-       _bidParticipantCode = participantCode;
+       _bidParticipantCode = MarketCenterTable.codeOf(participantCode);
     }
 
     /**
@@ -70,6 +73,26 @@ public class NBBORecord extends QuoteRecord
      * @return
      */
     public String getBidParticipantCode()
+    {
+        return MarketCenterTable.toString(_bidParticipantCode);
+    }
+
+    /**
+     * Sets the participant code for bid side.
+     *
+     * @param code The participant code, an ASCII character.
+     */
+    public void setBidParticipant(byte code)
+    {
+        _bidParticipantCode = (code > 0) ? code : MarketCenterTable.NONE;
+    }
+
+    /**
+     * Returns the participant code for bid side.
+     *
+     * @return The participant code, MarketCenterTable.NONE if not set.
+     */
+    public byte getBidParticipant()
     {
         return _bidParticipantCode;
     }
@@ -80,7 +103,7 @@ public class NBBORecord extends QuoteRecord
      */
     public void setAskParticipantCode(String participantCode)
     {
-       _askParticipantCode = participantCode;
+       _askParticipantCode = MarketCenterTable.codeOf(participantCode);
     }
 
     /**
@@ -88,6 +111,26 @@ public class NBBORecord extends QuoteRecord
      * @return
      */
     public String getAskParticipantCode()
+    {
+        return MarketCenterTable.toString(_askParticipantCode);
+    }
+
+    /**
+     * Sets the participant code for ask side.
+     *
+     * @param code The participant code, an ASCII character.
+     */
+    public void setAskParticipant(byte code)
+    {
+        _askParticipantCode = (code > 0) ? code : MarketCenterTable.NONE;
+    }
+
+    /**
+     * Returns the participant code for ask side.
+     *
+     * @return The participant code, MarketCenterTable.NONE if not set.
+     */
+    public byte getAskParticipant()
     {
         return _askParticipantCode;
     }
@@ -98,7 +141,17 @@ public class NBBORecord extends QuoteRecord
      */
     public double getBidAskSpread()
     {
-        return (_askPrice - _bidPrice);
+        return Price.toDouble(getBidAskSpreadFixed());
+    }
+
+    /**
+     * Returns the exact spread as a fixed point value, see Price.
+     *
+     * @return
+     */
+    public long getBidAskSpreadFixed()
+    {
+        return Price.subtract(_askPrice, _bidPrice);
     }
 
     /**
@@ -114,13 +167,13 @@ public class NBBORecord extends QuoteRecord
 
         sb.append("Time = ").append(_activityDateTime);
         sb.append(", Seq No. = ").append(_tasSeq);
-        sb.append(", Bid Mkt = ").append(_bidParticipantCode);
-        sb.append(", Bid Price = ").append(_bidPrice);
+        sb.append(", Bid Mkt = ").append(getBidParticipantCode());
+        sb.append(", Bid Price = ").append(Price.toString(_bidPrice));
         sb.append(", Bid Size = ").append(_bidSize);
-        sb.append(", Ask Mkt = ").append(_askParticipantCode);
-        sb.append(", Ask Price = ").append(_askPrice);
+        sb.append(", Ask Mkt = ").append(getAskParticipantCode());
+        sb.append(", Ask Price = ").append(Price.toString(_askPrice));
         sb.append(", Ask Size = ").append(_askSize);
-        sb.append(", Bid Ask Spread = ").append(getBidAskSpread());
+        sb.append(", Bid Ask Spread = ").append(Price.toString(getBidAskSpreadFixed()));
 
         sb.append("}");
 
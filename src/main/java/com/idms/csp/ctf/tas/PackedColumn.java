@@ -0,0 +1,314 @@
+/*
+ * PackedColumn.java
+ */
+
+package com.idms.csp.ctf.tas;
+
+import java.util.Arrays;
+
+/**
+ * This class is a growable column of long values, held in blocks of 128 as
+ * their difference to a base value of the block, in the narrowest primitive
+ * array they fit, a byte, short, int or long array. Consecutive values of a
+ * Time and Sales column are close to each other, for e.g. the times, sequence
+ * numbers and prices of a trading day, so most columns take 1 or 2 bytes per
+ * value. The array is widened, once per width, when a value does not fit.
+ * <p>
+ * The null value, for e.g. the NaN price, is held as the smallest value of
+ * the byte, short or int array. This class is not thread safe.
+ */
+final class PackedColumn
+{
+    // Initial number of values.
+    private static final int INITIAL_CAPACITY = 128;
+
+    // Values per block, as a shift.
+    private static final int BLOCK_SHIFT = 7;
+
+    // The value that is null, mapped to the smallest value of the array type.
+    private final long _null;
+
+    // The base of each block, the first value of the block that is not
+    // null, or the base of the previous block if the first is null.
+    private long[] _bases = new long[1];
+
+    // Bytes per value, and the array holding the values for that width.
+    private int _width = 1;
+    private byte[] _bytes = new byte[INITIAL_CAPACITY];
+    private short[] _shorts;
+    private int[] _ints;
+    private long[] _longs;
+
+    // Number of values.
+    private int _size;
+
+    /**
+     * Creates an empty column.
+     *
+     * @param nullValue The value that is null, for e.g. Price.NaN.
+     */
+    PackedColumn(long nullValue)
+    {
+        _null = nullValue;
+    }
+
+    /**
+     * Appends a value.
+     *
+     * @param value The value.
+     */
+    void add(long value)
+    {
+        if (_size == capacity())
+        {
+            grow(_size * 2);
+        }
+
+        int block = _size >>> BLOCK_SHIFT;
+        if ((_size & ((1 << BLOCK_SHIFT) - 1)) == 0)
+        {
+            // First value of the block.
+            if (block == _bases.length)
+            {
+                _bases = Arrays.copyOf(_bases, _bases.length * 2);
+            }
+            _bases[block] = (value != _null) ? value : (block > 0) ? _bases[block - 1] : 0;
+        }
+
+        if (value != _null)
+        {
+            long base = _bases[block];
+            long delta = value - base;
+            if ((value < base) != (delta < 0))
+            {
+                // The difference overflowed, only a long array holds it.
+                widen(8);
+            }
+            else if (!fits(delta, _width))
+            {
+                widen(widthOf(delta));
+            }
+        }
+
+        store(_size++, value);
+    }
+
+    /**
+     * Returns a value.
+     *
+     * @param i The index of the value.
+     * @return The value.
+     */
+    long get(int i)
+    {
+        long delta;
+        switch (_width)
+        {
+            case 1:
+                delta = _bytes[i];
+                if (delta == Byte.MIN_VALUE)
+                {
+                    return _null;
+                }
+                break;
+
+            case 2:
+                delta = _shorts[i];
+                if (delta == Short.MIN_VALUE)
+                {
+                    return _null;
+                }
+                break;
+
+            case 4:
+                delta = _ints[i];
+                if (delta == Integer.MIN_VALUE)
+                {
+                    return _null;
+                }
+                break;
+
+            default:
+                // The null value is held like the others.
+                delta = _longs[i];
+                break;
+        }
+
+        return _bases[i >>> BLOCK_SHIFT] + delta;
+    }
+
+    /**
+     * Returns the number of values.
+     */
+    int size()
+    {
+        return _size;
+    }
+
+    /**
+     * Returns the number of bytes held per value.
+     */
+    int width()
+    {
+        return _width;
+    }
+
+    /**
+     * Trims the array to the number of values.
+     */
+    void trim()
+    {
+        if (_size < capacity())
+        {
+            grow(_size);
+        }
+        _bases = Arrays.copyOf(_bases, Math.max((_size + (1 << BLOCK_SHIFT) - 1) >>> BLOCK_SHIFT, 1));
+    }
+
+    /**
+     * Stores a value in the array, as its difference to the base.
+     */
+    private void store(int i, long value)
+    {
+        long base = _bases[i >>> BLOCK_SHIFT];
+        if (_width == 8)
+        {
+            // Differences are unique modulo 2^64, including that of null.
+            _longs[i] = value - base;
+            return;
+        }
+
+        boolean isNull = (value == _null);
+        switch (_width)
+        {
+            case 1:
+                _bytes[i] = isNull ? Byte.MIN_VALUE : (byte) (value - base);
+                break;
+
+            case 2:
+                _shorts[i] = isNull ? Short.MIN_VALUE : (short) (value - base);
+                break;
+
+            default:
+                _ints[i] = isNull ? Integer.MIN_VALUE : (int) (value - base);
+                break;
+        }
+    }
+
+    /**
+     * Moves the values to an array of the given width.
+     */
+    private void widen(int width)
+    {
+        long[] values = new long[capacity()];
+        for (int i=0; i<_size; i++)
+        {
+            values[i] = get(i);
+        }
+
+        _bytes = null;
+        _shorts = null;
+        _ints = null;
+        _longs = null;
+        _width = width;
+
+        switch (width)
+        {
+            case 2:
+                _shorts = new short[values.length];
+                break;
+
+            case 4:
+                _ints = new int[values.length];
+                break;
+
+            default:
+                _longs = new long[values.length];
+                break;
+        }
+
+        for (int i=0; i<_size; i++)
+        {
+            store(i, values[i]);
+        }
+    }
+
+    private int capacity()
+    {
+        switch (_width)
+        {
+            case 1:
+                return _bytes.length;
+
+            case 2:
+                return _shorts.length;
+
+            case 4:
+                return _ints.length;
+
+            default:
+                return _longs.length;
+        }
+    }
+
+    private void grow(int capacity)
+    {
+        capacity = Math.max(capacity, INITIAL_CAPACITY);
+        switch (_width)
+        {
+            case 1:
+                _bytes = Arrays.copyOf(_bytes, capacity);
+                break;
+
+            case 2:
+                _shorts = Arrays.copyOf(_shorts, capacity);
+                break;
+
+            case 4:
+                _ints = Arrays.copyOf(_ints, capacity);
+                break;
+
+            default:
+                _longs = Arrays.copyOf(_longs, capacity);
+                break;
+        }
+    }
+
+    /**
+     * Checks if a delta fits an array of the given width, the smallest value
+     * of the array type being reserved for null.
+     */
+    private static boolean fits(long delta, int width)
+    {
+        switch (width)
+        {
+            case 1:
+                return delta > Byte.MIN_VALUE && delta <= Byte.MAX_VALUE;
+
+            case 2:
+                return delta > Short.MIN_VALUE && delta <= Short.MAX_VALUE;
+
+            case 4:
+                return delta > Integer.MIN_VALUE && delta <= Integer.MAX_VALUE;
+
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Returns the narrowest width a delta fits, at least the current one.
+     */
+    private int widthOf(long delta)
+    {
+        for (int width=_width; width<8; width*=2)
+        {
+            if (fits(delta, width))
+            {
+                return width;
+            }
+        }
+
+        return 8;
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * PriceColumn.java
+ */
+
+package com.idms.csp.ctf.tas;
+
+import com.idms.csp.ctf.util.Price;
+
+/**
+ * This class is a growable column of fixed point prices, see Price, held in
+ * a PackedColumn. Prices parsed from the feed keep the scale of their text,
+ * "101.2" has the scale 1 and "101.19" the scale 2, so their packed values
+ * are far apart. The prices are held with their mantissa rescaled to the
+ * largest scale of the column, and their own scale in the low bits, so
+ * consecutive prices differ by little whatever their scale and are returned
+ * exactly as they were added. The column is rescaled, once per scale, when a
+ * price has a larger scale than those before it. This class is not thread
+ * safe.
+ */
+final class PriceColumn
+{
+    // Bits of a packed price holding the scale, see Price.
+    private static final long SCALE_MASK = 0xf;
+
+    // Powers of ten up to Price.MAX_SCALE.
+    private static final long[] POW10 = new long[Price.MAX_SCALE + 1];
+    static
+    {
+        POW10[0] = 1L;
+        for (int i=1; i<POW10.length; i++)
+        {
+            POW10[i] = POW10[i-1] * 10;
+        }
+    }
+
+    // The scale the mantissas are held at, or -1 if a mantissa did not fit
+    // and the prices are held as they are.
+    private int _scale;
+
+    // The rescaled prices.
+    private PackedColumn _values = new PackedColumn(Price.NaN);
+
+    /**
+     * Appends a price.
+     *
+     * @param price The fixed point price, or Price.NaN.
+     */
+    void add(long price)
+    {
+        // Encoded first, it may replace the column.
+        long value = encode(price);
+        _values.add(value);
+    }
+
+    /**
+     * Returns a price.
+     *
+     * @param i The index of the price.
+     * @return The fixed point price, as it was added.
+     */
+    long get(int i)
+    {
+        long value = _values.get(i);
+        if (_scale < 0 || value == Price.NaN)
+        {
+            return value;
+        }
+
+        int scale = (int) (value & SCALE_MASK);
+        if (scale == _scale)
+        {
+            // Held as it was added.
+            return value;
+        }
+
+        long mantissa = Price.mantissa(value) / POW10[_scale - scale];
+
+        return Price.valueOf(mantissa, scale);
+    }
+
+    /**
+     * Returns the number of prices.
+     */
+    int size()
+    {
+        return _values.size();
+    }
+
+    /**
+     * Trims the array to the number of prices.
+     */
+    void trim()
+    {
+        _values.trim();
+    }
+
+    /**
+     * Returns the price held for a price, rescaling the column first if the
+     * price has a larger scale.
+     */
+    private long encode(long price)
+    {
+        if (_scale < 0 || price == Price.NaN)
+        {
+            return price;
+        }
+
+        int scale = Price.scale(price);
+        if (scale > _scale && !rescale(scale))
+        {
+            return price;
+        }
+
+        long rescaled = Price.rescale(price, _scale);
+        if (rescaled == Price.NaN)
+        {
+            rescale(-1);
+            return price;
+        }
+
+        return (rescaled & ~SCALE_MASK) | scale;
+    }
+
+    /**
+     * Moves the prices to a larger scale, or to the prices as they are for
+     * -1. Returns false if a price does not fit the scale, the prices are then
+     * held as they are.
+     */
+    private boolean rescale(int scale)
+    {
+        int size = _values.size();
+        long[] prices = new long[size];
+        for (int i=0; i<size; i++)
+        {
+            prices[i] = get(i);
+        }
+
+        _scale = scale;
+        for (int i=0; i<size && _scale>=0; i++)
+        {
+            if (prices[i] != Price.NaN && Price.rescale(prices[i], _scale) == Price.NaN)
+            {
+                _scale = -1;
+            }
+        }
+
+        PackedColumn values = new PackedColumn(Price.NaN);
+        _values = values;
+        for (int i=0; i<size; i++)
+        {
+            values.add(encode(prices[i]));
+        }
+
+        return _scale >= 0;
+    }
+}
@@ -4,6 +4,10 @@
 
 package com.idms.csp.ctf.tas;
 
+import com.idms.csp.ctf.data.ConditionTable;
+import com.idms.csp.ctf.data.DictSnapshot;
+import com.idms.csp.ctf.util.Price;
+
 /**
  * A sample quote record:
  *
@@ -24,14 +28,14 @@ package com.idms.csp.ctf.tas;
  */
 public class QuoteRecord extends TaSRecord
 {
-    // The bid price.
-    double _bidPrice = Double.NaN;
+    // The bid price, fixed point.
+    long _bidPrice = Price.NaN;
 
     // The bid size.
     int _bidSize;
 
-    // The ask price.
-    double _askPrice = Double.NaN;
+    // The ask price, fixed point.
+    long _askPrice = Price.NaN;
 
     // The ask size.
     int _askSize;
@@ -45,6 +49,16 @@ public class QuoteRecord extends TaSRecord
     // The quote condition 4.
     int _quoteCondition4;
 
+    // The categories of each quote condition, see ConditionTable. Those of
+    // code 0, a regular quote, until the condition is set, as the decoder
+    // does for a missing condition.
+    int _categories1 = ConditionTable.REGULAR;
+    int _categories2 = ConditionTable.REGULAR;
+    int _categories4 = ConditionTable.REGULAR;
+
+    // The categories of all the quote conditions.
+    int _conditionCategories = _categories1 | _categories2 | _categories4;
+
     /**
      *
      */
@@ -77,13 +91,19 @@ public class QuoteRecord extends TaSRecord
         if (newrec != null)
         {
             super.copyto(newrec);
-            newrec.setAskPrice(_askPrice);
+            newrec.setAskPriceFixed(_askPrice);
             newrec.setAskSize(_askSize);
-            newrec.setBidPrice(_bidPrice);
-            newrec.setBidSize(_askSize);
-            newrec.setQuoteCondition1(_quoteCondition1);
-            newrec.setQuoteCondition2(_quoteCondition2);
-            newrec.setQuoteCondition4(_quoteCondition4);
+            newrec.setBidPriceFixed(_bidPrice);
+            newrec.setBidSize(_bidSize);
+
+            // The categories may come from another data dictionary than the default one.
+            newrec._quoteCondition1 = _quoteCondition1;
+            newrec._quoteCondition2 = _quoteCondition2;
+            newrec._quoteCondition4 = _quoteCondition4;
+            newrec._categories1 = _categories1;
+            newrec._categories2 = _categories2;
+            newrec._categories4 = _categories4;
+            newrec._conditionCategories = _conditionCategories;
         }
     }
 
@@ -93,7 +113,7 @@ public class QuoteRecord extends TaSRecord
      */
     public void setBidPrice(double price)
     {
-        _bidPrice = price;
+        _bidPrice = Price.valueOf(price);
     }
 
     /**
@@ -101,6 +121,26 @@ public class QuoteRecord extends TaSRecord
      * @return
      */
     public double getBidPrice()
+    {
+        return Price.toDouble(_bidPrice);
+    }
+
+    /**
+     * Sets the fixed point value, see Price.
+     *
+     * @param price
+     */
+    public void setBidPriceFixed(long price)
+    {
+        _bidPrice = price;
+    }
+
+    /**
+     * Returns the fixed point value, see Price.
+     *
+     * @return
+     */
+    public long getBidPriceFixed()
     {
         return _bidPrice;
     }
@@ -129,7 +169,7 @@ public class QuoteRecord extends TaSRecord
      */
     public void setAskPrice(double price)
     {
-        _askPrice = price;
+        _askPrice = Price.valueOf(price);
     }
 
     /**
@@ -137,6 +177,26 @@ public class QuoteRecord extends TaSRecord
      * @return
      */
     public double getAskPrice()
+    {
+        return Price.toDouble(_askPrice);
+    }
+
+    /**
+     * Sets the fixed point value, see Price.
+     *
+     * @param price
+     */
+    public void setAskPriceFixed(long price)
+    {
+        _askPrice = price;
+    }
+
+    /**
+     * Returns the fixed point value, see Price.
+     *
+     * @return
+     */
+    public long getAskPriceFixed()
     {
         return _askPrice;
     }
@@ -166,6 +226,8 @@ public class QuoteRecord extends TaSRecord
     public void setQuoteCondition1(int qc)
     {
         _quoteCondition1 = qc;
+        _categories1 = ConditionTable.categoriesOf(ConditionTable.QUOTE_COND_1, qc);
+        _conditionCategories = _categories1 | _categories2 | _categories4;
     }
 
     /**
@@ -184,6 +246,8 @@ public class QuoteRecord extends TaSRecord
     public void setQuoteCondition2(int qc)
     {
         _quoteCondition2 = qc;
+        _categories2 = ConditionTable.categoriesOf(ConditionTable.QUOTE_COND_2, qc);
+        _conditionCategories = _categories1 | _categories2 | _categories4;
     }
 
     /**
@@ -203,6 +267,23 @@ public class QuoteRecord extends TaSRecord
     public void setQuoteCondition4(int qc)
     {
         _quoteCondition4 = qc;
+        _categories4 = ConditionTable.categoriesOf(ConditionTable.QUOTE_COND_4, qc);
+        _conditionCategories = _categories1 | _categories2 | _categories4;
+    }
+
+    /**
+     * Sets the quote conditions, classified with the condition codes of a
+     * given data dictionary.
+     */
+    void setQuoteConditions(int qc1, int qc2, int qc4, DictSnapshot dict)
+    {
+        _quoteCondition1 = qc1;
+        _quoteCondition2 = qc2;
+        _quoteCondition4 = qc4;
+        _categories1 = ConditionTable.categoriesOf(dict, ConditionTable.QUOTE_COND_1, qc1);
+        _categories2 = ConditionTable.categoriesOf(dict, ConditionTable.QUOTE_COND_2, qc2);
+        _categories4 = ConditionTable.categoriesOf(dict, ConditionTable.QUOTE_COND_4, qc4);
+        _conditionCategories = _categories1 | _categories2 | _categories4;
     }
 
     /**
@@ -214,6 +295,41 @@ public class QuoteRecord extends TaSRecord
         return _quoteCondition4;
     }
 
+    /**
+     * Returns the categories of the quote conditions 1, 2 and 4 together,
+     * looked up when the conditions were set.
+     *
+     * @return The category bits, see ConditionTable. A condition that has
+     * not been set counts as code 0, a regular quote.
+     */
+    public int getConditionCategories()
+    {
+        return _conditionCategories;
+    }
+
+    /**
+     * Checks if any of the quote conditions is in any of the categories. For
+     * e.g. hasCondition(ConditionTable.CROSSED | ConditionTable.LOCKED)
+     *
+     * @param mask The category bits.
+     * @return {@code true} if a condition is in one of the categories.
+     */
+    public boolean hasCondition(int mask)
+    {
+        return (_conditionCategories & mask) != 0;
+    }
+
+    /**
+     * Checks if the quote is firm, regular and neither crossed nor locked, so
+     * it can be used for the NBBO.
+     *
+     * @return {@code true} if the quote is eligible for the NBBO.
+     */
+    public boolean isNBBOEligible()
+    {
+        return (_conditionCategories & ConditionTable.NBBO_INELIGIBLE) == 0;
+    }
+
     /**
      *
      * @return
@@ -227,9 +343,9 @@ public class QuoteRecord extends TaSRecord
 
         sb.append("Time = ").append(_activityDateTime);
         sb.append(", Seq No. = ").append(_tasSeq);
-        sb.append(", Bid Price = ").append(_bidPrice);
+        sb.append(", Bid Price = ").append(Price.toString(_bidPrice));
         sb.append(", Bid Size = ").append(_bidSize);
-        sb.append(", Ask Price = ").append(_askPrice);
+        sb.append(", Ask Price = ").append(Price.toString(_askPrice));
         sb.append(", Ask Size = ").append(_askSize);
         sb.append(", Quote Cond 1 = ").append(_quoteCondition1);
         sb.append(", Quote Cond 2 = ").append(_quoteCondition2);
@@ -0,0 +1,184 @@
+/*
+ * TaSJSONWriter.java
+ */
+
+package com.idms.csp.ctf.tas;
+
+import com.idms.csp.ctf.data.JSONWriter;
+import com.idms.csp.ctf.data.MarketCenterTable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * This class writes time and sales records as JSON objects, one per line,
+ * in addition to the messages of JSONWriter. For e.g.
+ * <br><code>{"type":"T","participant":"N","activityDateTime":1262615400000,"tasSeq":1,"tradePrice":101.19,"tradeSize":100,...}</code>
+ * <p>
+ * Prices are written from their fixed point values, see Price, the NaN price
+ * as null. Times are UTC milliseconds. Participants are the one character
+ * codes, null when not set.
+ */
+public class TaSJSONWriter extends JSONWriter
+{
+    // Keys of all the records.
+    private static final byte[] TYPE = key("type");
+    private static final byte[] PARTICIPANT = key("participant");
+    private static final byte[] ACTIVITY_DATETIME = key("activityDateTime");
+    private static final byte[] TAS_SEQ = key("tasSeq");
+
+    // Keys of the trade records.
+    private static final byte[] TRADE_PRICE = key("tradePrice");
+    private static final byte[] TRADE_SIZE = key("tradeSize");
+    private static final byte[] TRADE_SEQ = key("tradeSeq");
+    private static final byte[] TRADE_CONDITION1 = key("tradeCondition1");
+    private static final byte[] VWAP = key("vwap");
+
+    // Keys of the quote records.
+    private static final byte[] BID_PRICE = key("bidPrice");
+    private static final byte[] BID_SIZE = key("bidSize");
+    private static final byte[] ASK_PRICE = key("askPrice");
+    private static final byte[] ASK_SIZE = key("askSize");
+    private static final byte[] QUOTE_CONDITION1 = key("quoteCondition1");
+    private static final byte[] QUOTE_CONDITION2 = key("quoteCondition2");
+    private static final byte[] QUOTE_CONDITION4 = key("quoteCondition4");
+
+    // Keys of the NBBO records.
+    private static final byte[] BID_PARTICIPANT = key("bidParticipant");
+    private static final byte[] ASK_PARTICIPANT = key("askParticipant");
+
+    /**
+     * Creates a writer that keeps the output in its buffer.
+     */
+    public TaSJSONWriter()
+    {
+        super();
+    }
+
+    /**
+     * Creates a writer to a stream.
+     *
+     * @param out The OutputStream to write to.
+     */
+    public TaSJSONWriter(OutputStream out)
+    {
+        super(out);
+    }
+
+    /**
+     * Creates a writer to a stream.
+     *
+     * @param out The OutputStream to write to, or null to keep the output in
+     * the buffer.
+     * @param size The size of the buffer.
+     */
+    public TaSJSONWriter(OutputStream out, int size)
+    {
+        super(out, size);
+    }
+
+    /**
+     * Writes a trade, quote or NBBO record as an object on its own line.
+     *
+     * @param record The TaSRecord object.
+     * @throws IOException If the stream can't be written to.
+     */
+    public void write(TaSRecord record) throws IOException
+    {
+        if (record instanceof TradeRecord)
+        {
+            write((TradeRecord) record);
+        }
+        else if (record instanceof QuoteRecord)
+        {
+            write((QuoteRecord) record);
+        }
+        else
+        {
+            beginObject();
+            record(record);
+            endObject();
+            endLine();
+        }
+    }
+
+    /**
+     * Writes a trade record as an object on its own line.
+     *
+     * @param trade The TradeRecord object.
+     * @throws IOException If the stream can't be written to.
+     */
+    public void write(TradeRecord trade) throws IOException
+    {
+        beginObject();
+        record(trade);
+
+        key(TRADE_PRICE);
+        putPrice(trade.getTradePriceFixed());
+        key(TRADE_SIZE);
+        putNumber(trade.getTradeSize());
+        key(TRADE_SEQ);
+        putNumber(trade.getTradeSeq());
+        key(TRADE_CONDITION1);
+        putNumber(trade.getTradeCondition1());
+        key(VWAP);
+        putPrice(trade.getVWAPFixed());
+
+        endObject();
+        endLine();
+    }
+
+    /**
+     * Writes a quote or NBBO record as an object on its own line.
+     *
+     * @param quote The QuoteRecord object.
+     * @throws IOException If the stream can't be written to.
+     */
+    public void write(QuoteRecord quote) throws IOException
+    {
+        beginObject();
+        record(quote);
+
+        key(BID_PRICE);
+        putPrice(quote.getBidPriceFixed());
+        key(BID_SIZE);
+        putNumber(quote.getBidSize());
+        key(ASK_PRICE);
+        putPrice(quote.getAskPriceFixed());
+        key(ASK_SIZE);
+        putNumber(quote.getAskSize());
+        key(QUOTE_CONDITION1);
+        putNumber(quote.getQuoteCondition1());
+        key(QUOTE_CONDITION2);
+        putNumber(quote.getQuoteCondition2());
+        key(QUOTE_CONDITION4);
+        putNumber(quote.getQuoteCondition4());
+
+        if (quote instanceof NBBORecord)
+        {
+            NBBORecord nbbo = (NBBORecord) quote;
+            key(BID_PARTICIPANT);
+            putString(MarketCenterTable.toString(nbbo.getBidParticipant()));
+            key(ASK_PARTICIPANT);
+            putString(MarketCenterTable.toString(nbbo.getAskParticipant()));
+        }
+
+        endObject();
+        endLine();
+    }
+
+    /**
+     * Writes the members common to all the records.
+     */
+    private void record(TaSRecord record) throws IOException
+    {
+        key(TYPE);
+        putString(record.getType());
+        key(PARTICIPANT);
+        putString(MarketCenterTable.toString(record.getParticipant()));
+        key(ACTIVITY_DATETIME);
+        putNumber(record.getActivityDateTime());
+        key(TAS_SEQ);
+        putNumber(record.getTaSSeq());
+    }
+}
@@ -4,6 +4,10 @@
 
 package com.idms.csp.ctf.tas;
 
+import com.idms.csp.ctf.data.DataDict;
+import com.idms.csp.ctf.data.DataDictionary;
+import com.idms.csp.ctf.data.MarketCenterTable;
+
 /**
  *
  */
@@ -17,8 +21,9 @@ public abstract class TaSRecord
     // The record type.
     String _type = RECTYPE_QUOTE;
 
-    // The participating exchange or market center code for trade/quote records.
-    String _participantCode;
+    // The participating exchange or market center code for trade/quote
+    // records, an ASCII character. MarketCenterTable.NONE if not set.
+    byte _participantCode = MarketCenterTable.NONE;
 
     // The tas sequence number.
     int _tasSeq = -1;
@@ -65,7 +70,7 @@ public abstract class TaSRecord
         if (newrec != null)
         {
             newrec.setType(_type);
-            newrec.setParticipantCode(_participantCode);
+            newrec.setParticipant(_participantCode);
             newrec.setActivityDateTime(_activityDateTime);
             newrec.setTaSSeq(_tasSeq);
         }
@@ -77,7 +82,7 @@ public abstract class TaSRecord
      */
     public void setParticipantCode(String participantCode)
     {
-        _participantCode = participantCode;
+        _participantCode = MarketCenterTable.codeOf(participantCode);
     }
 
     /**
@@ -85,10 +90,54 @@ public abstract class TaSRecord
      * @return
      */
     public String getParticipantCode()
+    {
+        return MarketCenterTable.toString(_participantCode);
+    }
+
+    /**
+     * Sets the participant code.
+     *
+     * @param code The participant code, an ASCII character.
+     */
+    public void setParticipant(byte code)
+    {
+        _participantCode = (code > 0) ? code : MarketCenterTable.NONE;
+    }
+
+    /**
+     * Returns the participant code, which can index arrays of
+     * MarketCenterTable.SIZE elements.
+     *
+     * @return The participant code, MarketCenterTable.NONE if not set.
+     */
+    public byte getParticipant()
     {
         return _participantCode;
     }
 
+    /**
+     * Returns the name of the participating market center.
+     *
+     * @return The market center name, for e.g. "NYSE", or null if the code
+     * is not defined.
+     */
+    public String getParticipantName()
+    {
+        return DataDict.getMarketCenterTable().getName(_participantCode);
+    }
+
+    /**
+     * Returns the name of the participating market center in the data
+     * dictionary of a feed.
+     *
+     * @param dict The data dictionary.
+     * @return The market center name, or null if the code is not defined.
+     */
+    public String getParticipantName(DataDictionary dict)
+    {
+        return dict.getMarketCenterTable().getName(_participantCode);
+    }
+
     /**
      *
      * @param activityDateTime
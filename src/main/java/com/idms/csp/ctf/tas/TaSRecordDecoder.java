@@ -0,0 +1,329 @@
+/*
+ * TaSRecordDecoder.java
+ */
+
+package com.idms.csp.ctf.tas;
+
+import com.idms.csp.ctf.data.DataDict;
+import com.idms.csp.ctf.data.DataDictionary;
+import com.idms.csp.ctf.data.DictSnapshot;
+import com.idms.csp.ctf.data.InvalidTokenException;
+import com.idms.csp.ctf.data.MarketCenterTable;
+import com.idms.csp.ctf.data.Token;
+import com.idms.csp.ctf.util.Ascii;
+import com.idms.csp.ctf.util.Price;
+
+import java.nio.ByteBuffer;
+
+/**
+ * This class decodes Time and Sales records straight from the payload of CTF
+ * frames, without going through Message and Field objects. The token numbers
+ * of the record fields are looked up in the data dictionary once, when the
+ * decoder is created, and compiled into a table that maps each token number
+ * to the record field it sets. A payload is then decoded in a single pass. For e.g.
+ * <br><code>TaSRecordDecoder decoder = new TaSRecordDecoder();
+ * <br>decoder.decode(payload, tas);</code>
+ * <p>
+ * Create the decoder after the data dictionary has been initialized. A
+ * decoder is bound to one data dictionary, the default one unless given,
+ * and classifies the condition codes with its current definitions. A
+ * decoder is not thread safe, use one per decoding thread.
+ */
+public class TaSRecordDecoder
+{
+    // Record fields. 0 is for tokens that are not part of a record.
+    private static final int NONE = 0;
+    private static final int RECORD_TYPE = 1;
+    private static final int PART_CODE = 2;
+    private static final int BID_PART_CODE = 3;
+    private static final int ASK_PART_CODE = 4;
+    private static final int ACTIVITY_DATETIME = 5;
+    private static final int TAS_SEQ = 6;
+    private static final int TRADE_SEQ = 7;
+    private static final int TRADE_COND_1 = 8;
+    private static final int TRADE_SIZE = 9;
+    private static final int TRADE_PRICE = 10;
+    private static final int VWAP = 11;
+    private static final int QUOTE_COND_1 = 12;
+    private static final int QUOTE_COND_2 = 13;
+    private static final int QUOTE_COND_4 = 14;
+    private static final int BID_SIZE = 15;
+    private static final int ASK_SIZE = 16;
+    private static final int BID_PRICE = 17;
+    private static final int ASK_PRICE = 18;
+    private static final int FIELD_COUNT = 19;
+
+    // Token names of the record fields, indexed by field.
+    private static final String[] FIELD_TOKENS =
+    {
+        null, "TAS.RECORD.TYPE", "PART.CODE", "BID.PART.CODE", "ASK.PART.CODE",
+        "ACTIVITY.DATETIME", "TAS.SEQ", "TRADE.SEQ", "TRADE.COND_1", "TRADE.SIZE",
+        "TRADE.PRICE", "VWAP", "QUOTE.COND_1", "QUOTE.COND_2", "QUOTE.COND_4",
+        "BID.SIZE", "ASK.SIZE", "BID.PRICE", "ASK.PRICE"
+    };
+
+    // How the value of each record field is parsed.
+    private static final byte TEXT = 0;
+    private static final byte INTEGER = 1;
+    private static final byte PRICE = 2;
+    private static final byte DATETIME = 3;
+    private static final byte CODE = 4;
+    private static final byte[] FIELD_TYPES =
+    {
+        TEXT, TEXT, CODE, CODE, CODE,
+        DATETIME, INTEGER, INTEGER, INTEGER, INTEGER,
+        PRICE, PRICE, INTEGER, INTEGER, INTEGER,
+        INTEGER, INTEGER, PRICE, PRICE
+    };
+
+    // One character strings, so record types are not allocated.
+    private static final String[] CHARS = new String[128];
+    static
+    {
+        for (int i=0; i<CHARS.length; i++)
+        {
+            CHARS[i] = String.valueOf((char) i).intern();
+        }
+    }
+
+    // The data dictionary of the feed.
+    private final DataDictionary _dictionary;
+
+    // The record field set by each token, indexed by token number.
+    private final byte[] _fieldOf;
+
+    // Values of the record being decoded, indexed by field. Numbers hold
+    // integers, times in milliseconds, fixed point prices and participant
+    // codes. The record type is the only text field.
+    private final boolean[] _present = new boolean[FIELD_COUNT];
+    private final long[] _numbers = new long[FIELD_COUNT];
+    private String _recordType;
+
+    /**
+     * Creates a decoder for the token definitions of the default data
+     * dictionary.
+     *
+     * @throws InvalidTokenException If a record token is not defined.
+     */
+    public TaSRecordDecoder() throws InvalidTokenException
+    {
+        this(DataDict.getDefault());
+    }
+
+    /**
+     * Creates a decoder for the token definitions of a data dictionary.
+     *
+     * @param dict The data dictionary of the feed.
+     * @throws InvalidTokenException If a record token is not defined.
+     */
+    public TaSRecordDecoder(DataDictionary dict) throws InvalidTokenException
+    {
+        _dictionary = dict;
+
+        int[] toknums = new int[FIELD_COUNT];
+        int maxToknum = 0;
+
+        for (int field=1; field<FIELD_COUNT; field++)
+        {
+            Token token = dict.getToken(FIELD_TOKENS[field]);
+            if (token == null)
+            {
+                throw new InvalidTokenException("Token not defined: " + FIELD_TOKENS[field]);
+            }
+            toknums[field] = token.getNum();
+            maxToknum = Math.max(maxToknum, toknums[field]);
+        }
+
+        _fieldOf = new byte[maxToknum + 1];
+        for (int field=1; field<FIELD_COUNT; field++)
+        {
+            _fieldOf[toknums[field]] = (byte) field;
+        }
+    }
+
+    /**
+     * Decodes the record held in the payload between the position and the
+     * limit of the buffer. The position of the buffer is not changed.
+     *
+     * @param payload The CTF payload without the frame header and trailer.
+     * @return The TradeRecord, QuoteRecord or NBBORecord object, or null if
+     * the payload is not a Time and Sales record (for e.g. the final status).
+     */
+    public TaSRecord decode(ByteBuffer payload)
+    {
+        scan(payload, payload.position(), payload.limit());
+
+        return build();
+    }
+
+    /**
+     * Decodes the record held in the payload and adds it to the Time and Sales
+     * data.
+     *
+     * @param payload The CTF payload without the frame header and trailer.
+     * @param tas The Time and Sales data to add the record to.
+     * @return The record, or null if the payload is not a Time and Sales record.
+     */
+    public TaSRecord decode(ByteBuffer payload, TimeAndSales tas)
+    {
+        TaSRecord record = decode(payload);
+        if (record != null)
+        {
+            tas.add(record);
+        }
+
+        return record;
+    }
+
+    /**
+     * Parses the values of the record fields in a single pass over the payload.
+     */
+    private void scan(ByteBuffer buf, int start, int end)
+    {
+        for (int field=1; field<FIELD_COUNT; field++)
+        {
+            _present[field] = false;
+        }
+
+        int pos = start;
+        while (pos < end)
+        {
+            // Token number
+            int toknum = 0;
+            boolean valid = true;
+            byte b = 0;
+            for (; pos < end; pos++)
+            {
+                b = buf.get(pos);
+                if (b == '=' || b == '|')
+                {
+                    break;
+                }
+                if (b < '0' || b > '9' || toknum > 0xffffff)
+                {
+                    valid = false;
+                }
+                toknum = toknum * 10 + (b - '0');
+            }
+
+            // A token without a value.
+            if (b != '=')
+            {
+                pos++;
+                continue;
+            }
+
+            // Value
+            int valueStart = ++pos;
+            pos = Ascii.indexOf(buf, (byte) '|', pos, end);
+
+            int field = (valid && toknum < _fieldOf.length) ? _fieldOf[toknum] : NONE;
+            if (field != NONE)
+            {
+                parse(field, buf, valueStart, pos - valueStart);
+            }
+
+            pos++;
+        }
+    }
+
+    /**
+     * Parses the value of a record field.
+     */
+    private void parse(int field, ByteBuffer buf, int off, int len)
+    {
+        switch (FIELD_TYPES[field])
+        {
+            case INTEGER:
+                _numbers[field] = Ascii.parseLong(buf, off, len);
+                break;
+
+            case PRICE:
+                _numbers[field] = Price.parse(buf, off, len);
+                break;
+
+            case DATETIME:
+                _numbers[field] = Ascii.parseCTFDateTime(buf, off, len);
+                break;
+
+            case CODE:
+                _numbers[field] = (len == 1) ? buf.get(off) : MarketCenterTable.NONE;
+                break;
+
+            default:
+                int c = (len == 1) ? buf.get(off) : -1;
+                _recordType = (c >= 0 && c < CHARS.length) ? CHARS[c] : Ascii.toString(buf, off, len);
+                break;
+        }
+
+        _present[field] = true;
+    }
+
+    /**
+     * Creates the record from the parsed values.
+     */
+    private TaSRecord build()
+    {
+        if (!_present[RECORD_TYPE])
+        {
+            return null;
+        }
+
+        String type = _recordType;
+        DictSnapshot dict = _dictionary.getSnapshot();
+        TaSRecord record;
+
+        if (TaSRecord.RECTYPE_TRADE.equals(type))
+        {
+            TradeRecord trade = new TradeRecord();
+            trade.setTradeSeq((int) number(TRADE_SEQ, 0));
+            trade.setTradeCondition1((int) number(TRADE_COND_1, 0), dict);
+            trade.setTradeSize((int) number(TRADE_SIZE, 0));
+            trade.setTradePriceFixed(number(TRADE_PRICE, Price.NaN));
+            trade.setVWAPFixed(number(VWAP, Price.NaN));
+            record = trade;
+        }
+        else if (TaSRecord.RECTYPE_QUOTE.equals(type))
+        {
+            QuoteRecord quote = new QuoteRecord();
+            setQuote(quote, dict);
+            record = quote;
+        }
+        else if (TaSRecord.RECTYPE_NBBO.equals(type))
+        {
+            NBBORecord nbbo = new NBBORecord();
+            setQuote(nbbo, dict);
+            nbbo.setBidParticipant((byte) number(BID_PART_CODE, MarketCenterTable.NONE));
+            nbbo.setAskParticipant((byte) number(ASK_PART_CODE, MarketCenterTable.NONE));
+            record = nbbo;
+        }
+        else
+        {
+            return null;
+        }
+
+        record.setParticipant((byte) number(PART_CODE, MarketCenterTable.NONE));
+        record.setActivityDateTime(number(ACTIVITY_DATETIME, -1L));
+        record.setTaSSeq((int) number(TAS_SEQ, -1L));
+
+        return record;
+    }
+
+    /**
+     * Sets the fields common to quote and nbbo records.
+     */
+    private void setQuote(QuoteRecord quote, DictSnapshot dict)
+    {
+        quote.setBidPriceFixed(number(BID_PRICE, Price.NaN));
+        quote.setBidSize((int) number(BID_SIZE, 0));
+        quote.setAskPriceFixed(number(ASK_PRICE, Price.NaN));
+        quote.setAskSize((int) number(ASK_SIZE, 0));
+        quote.setQuoteConditions((int) number(QUOTE_COND_1, 0), (int) number(QUOTE_COND_2, 0),
+                (int) number(QUOTE_COND_4, 0), dict);
+    }
+
+    private long number(int field, long missing)
+    {
+        return _present[field] ? _numbers[field] : missing;
+    }
+}
@@ -4,8 +4,12 @@
 
 package com.idms.csp.ctf.tas;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.RandomAccess;
 
 /**
  * This class encapsulates the Time and Sales data.
@@ -74,16 +78,24 @@ public class TimeAndSales
     private String _status;
 
     // All records.
-    List<TaSRecord> _allRecords = new ArrayList<TaSRecord>();
+    private final List<TaSRecord> _allRecords = new ArrayList<TaSRecord>();
+
+    // All records, read only so the positions below stay in step.
+    private final List<TaSRecord> _allRecordsView = Collections.unmodifiableList(_allRecords);
+
+    // Positions of the NBBO, quote and trade records in the order added.
+    private final Positions _nbboPositions = new Positions();
+    private final Positions _quotePositions = new Positions();
+    private final Positions _tradePositions = new Positions();
 
     // NBBO records.
-    List<NBBORecord> _nbboRecords;
+    private final List<NBBORecord> _nbboRecords = new TypedRecords<NBBORecord>(_nbboPositions);
 
     // Quote records.
-    List<QuoteRecord> _quoteRecords;
+    private final List<QuoteRecord> _quoteRecords = new TypedRecords<QuoteRecord>(_quotePositions);
 
     // Trade records.
-    List<TradeRecord> _tradeRecords;
+    private final List<TradeRecord> _tradeRecords = new TypedRecords<TradeRecord>(_tradePositions);
 
     /**
      *
@@ -245,77 +257,46 @@ public class TimeAndSales
     }
 
     /**
-     * 
-     * @return
+     * Returns all the records, in the order added. The list is a read only
+     * view, updated as records are added, use add() to add records.
+     *
+     * @return The records.
      */
     public List<TaSRecord> getAllRecords()
     {
-        return _allRecords;
+        return _allRecordsView;
     }
 
     /**
+     * Returns the NBBO records. The list is a read only view, updated as
+     * records are added.
      *
-     * @return
+     * @return The NBBO records.
      */
     public List<NBBORecord> getNBBORecrods()
     {
-        if (_nbboRecords == null)
-        {
-            _nbboRecords = new ArrayList<NBBORecord>();
-            for (TaSRecord record : _allRecords)
-            {
-                // Check if it is a "B" record and add it to the list.
-                if (record.getType().equals("B"))
-                {
-                    _nbboRecords.add((NBBORecord)record);
-                }
-            }
-        }
-
         return _nbboRecords;
     }
 
     /**
+     * Returns the quote records. The list is a read only view, updated as
+     * records are added.
      *
-     * @return
+     * @return The quote records.
      */
     public List<QuoteRecord> getQuoteRecrods()
     {
-        if (_quoteRecords == null)
-        {
-            _quoteRecords = new ArrayList<QuoteRecord>();
-            for (TaSRecord record : _allRecords)
-            {
-                // Check if it is a "Q" record and add it to the list.
-                if (record.getType().equals("Q"))
-                {
-                    _quoteRecords.add((QuoteRecord)record);
-                }
-            }
-        }
-
         return _quoteRecords;
     }
 
     /**
+     * Returns the trade records. The list is a read only view, updated as
+     * records are added.
      *
-     * @return
+     * @return The trade records.
      */
     public List<TradeRecord> getTradeRecrods()
     {
-        if (_tradeRecords == null)
-        {
-            _tradeRecords = new ArrayList<TradeRecord>();
-            for (TaSRecord record : _allRecords)
-            {
-                // Check if it is a "T" record and add it to the list.
-                if (record.getType().equals("T"))
-                {
-                    _tradeRecords.add((TradeRecord)record);
-                }
-            }
-        }
-
         return _tradeRecords;
     }
 
@@ -325,6 +306,105 @@ public class TimeAndSales
      */
     public void add(TaSRecord newrec)
     {
+        index(newrec, _allRecords.size());
         _allRecords.add(newrec);
     }
+
+    /**
+     * Returns the record at a position, for the typed views.
+     *
+     * @param position The position of the record in all the records.
+     * @return The TaSRecord object.
+     */
+    TaSRecord recordAt(int position)
+    {
+        return _allRecords.get(position);
+    }
+
+    /**
+     * Records the position of a record in the positions of its type.
+     *
+     * @param record The TaSRecord object.
+     * @param position The position of the record in all the records.
+     */
+    void index(TaSRecord record, int position)
+    {
+        // Check if it is a "B", "Q" or "T" record.
+        String type = record.getType();
+        if (TaSRecord.RECTYPE_NBBO.equals(type))
+        {
+            _nbboPositions.add(position);
+        }
+        else if (TaSRecord.RECTYPE_QUOTE.equals(type))
+        {
+            _quotePositions.add(position);
+        }
+        else if (TaSRecord.RECTYPE_TRADE.equals(type))
+        {
+            _tradePositions.add(position);
+        }
+    }
+
+    /**
+     * The positions of the records of one type, in a growable int array.
+     */
+    private static final class Positions
+    {
+        // The positions.
+        private int[] _positions = new int[16];
+
+        // Number of positions.
+        private int _size;
+
+        void add(int position)
+        {
+            if (_size == _positions.length)
+            {
+                _positions = Arrays.copyOf(_positions, _size * 2);
+            }
+            _positions[_size++] = position;
+        }
+
+        int get(int i)
+        {
+            if (i >= _size)
+            {
+                throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + _size);
+            }
+
+            return _positions[i];
+        }
+
+        int size()
+        {
+            return _size;
+        }
+    }
+
+    /**
+     * A view of the records of one type, through their positions.
+     */
+    private class TypedRecords<T extends TaSRecord> extends AbstractList<T> implements RandomAccess
+    {
+        // The positions of the records.
+        private final Positions _positions;
+
+        TypedRecords(Positions positions)
+        {
+            _positions = positions;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T get(int i)
+        {
+            return (T) recordAt(_positions.get(i));
+        }
+
+        @Override
+        public int size()
+        {
+            return _positions.size();
+        }
+    }
 }
@@ -4,6 +4,10 @@
 
 package com.idms.csp.ctf.tas;
 
+import com.idms.csp.ctf.data.ConditionTable;
+import com.idms.csp.ctf.data.DictSnapshot;
+import com.idms.csp.ctf.util.Price;
+
 /**
  * A sample trade record:
  *
@@ -22,8 +26,8 @@ package com.idms.csp.ctf.tas;
  */
 public class TradeRecord extends TaSRecord
 {
-    // The trade price.
-    double _tradePrice = Double.NaN;
+    // The trade price, fixed point.
+    long _tradePrice = Price.NaN;
 
     // The trade size.
     int _tradeSize;
@@ -34,8 +38,12 @@ public class TradeRecord extends TaSRecord
     // The trade condition.
     int _tradeCondition1;
 
-    // The VWAP
-    double _vwap = Double.NaN;
+    // The categories of the trade condition, see ConditionTable. Unknown
+    // until the condition is set.
+    int _conditionCategories = ConditionTable.UNKNOWN | ConditionTable.EXCLUDED_FROM_VOLUME;
+
+    // The VWAP, fixed point.
+    long _vwap = Price.NaN;
 
     /**
      *
@@ -61,10 +69,13 @@ public class TradeRecord extends TaSRecord
         {
             super.copyto(newrec);
             newrec.setTradeSeq(_tradeSeq);
-            newrec.setTradePrice(_tradePrice);
+            newrec.setTradePriceFixed(_tradePrice);
             newrec.setTradeSize(_tradeSize);
-            newrec.setVWAP(_vwap);
-            newrec.setTradeCondition1(_tradeCondition1);
+            newrec.setVWAPFixed(_vwap);
+
+            // The categories may come from another data dictionary than the default one.
+            newrec._tradeCondition1 = _tradeCondition1;
+            newrec._conditionCategories = _conditionCategories;
         }
     }
 
@@ -74,7 +85,7 @@ public class TradeRecord extends TaSRecord
      */
     public void setTradePrice(double price)
     {
-        _tradePrice = price;
+        _tradePrice = Price.valueOf(price);
     }
 
     /**
@@ -82,6 +93,26 @@ public class TradeRecord extends TaSRecord
      * @return
      */
     public double getTradePrice()
+    {
+        return Price.toDouble(_tradePrice);
+    }
+
+    /**
+     * Sets the fixed point value, see Price.
+     *
+     * @param price
+     */
+    public void setTradePriceFixed(long price)
+    {
+        _tradePrice = price;
+    }
+
+    /**
+     * Returns the fixed point value, see Price.
+     *
+     * @return
+     */
+    public long getTradePriceFixed()
     {
         return _tradePrice;
     }
@@ -111,6 +142,17 @@ public class TradeRecord extends TaSRecord
     public void setTradeCondition1(int tc)
     {
         _tradeCondition1 = tc;
+        _conditionCategories = ConditionTable.categoriesOf(ConditionTable.TRADE_COND_1, tc);
+    }
+
+    /**
+     * Sets the sale condition, classified with the condition codes of a
+     * given data dictionary.
+     */
+    void setTradeCondition1(int tc, DictSnapshot dict)
+    {
+        _tradeCondition1 = tc;
+        _conditionCategories = ConditionTable.categoriesOf(dict, ConditionTable.TRADE_COND_1, tc);
     }
 
     /**
@@ -122,6 +164,60 @@ public class TradeRecord extends TaSRecord
         return _tradeCondition1;
     }
 
+    /**
+     * Returns the categories of the trade condition, looked up when the
+     * condition was set.
+     *
+     * @return The category bits, see ConditionTable, UNKNOWN and
+     * EXCLUDED_FROM_VOLUME if the condition has not been set.
+     */
+    public int getConditionCategories()
+    {
+        return _conditionCategories;
+    }
+
+    /**
+     * Checks if the trade condition is in any of the categories. For e.g.
+     * hasCondition(ConditionTable.OUT_OF_SEQUENCE)
+     *
+     * @param mask The category bits.
+     * @return {@code true} if the condition is in one of the categories.
+     */
+    public boolean hasCondition(int mask)
+    {
+        return (_conditionCategories & mask) != 0;
+    }
+
+    /**
+     * Checks if the trade counts toward the consolidated volume.
+     *
+     * @return {@code true} if the trade updates the volume.
+     */
+    public boolean countsTowardVolume()
+    {
+        return (_conditionCategories & ConditionTable.UPDATES_VOLUME) != 0;
+    }
+
+    /**
+     * Checks if the trade updates the last price.
+     *
+     * @return {@code true} if the trade updates the last price.
+     */
+    public boolean countsTowardLast()
+    {
+        return (_conditionCategories & ConditionTable.UPDATES_LAST) != 0;
+    }
+
+    /**
+     * Checks if the trade updates the high and low prices.
+     *
+     * @return {@code true} if the trade updates the high and low.
+     */
+    public boolean countsTowardHighLow()
+    {
+        return (_conditionCategories & ConditionTable.UPDATES_HIGH_LOW) != 0;
+    }
+
     /**
      *
      * @param seqno
@@ -146,7 +242,7 @@ public class TradeRecord extends TaSRecord
      */
     public void setVWAP(double vwap)
     {
-        _vwap = vwap;
+        _vwap = Price.valueOf(vwap);
     }
 
     /**
@@ -154,6 +250,26 @@ public class TradeRecord extends TaSRecord
      * @return
      */
     public double getVWAP()
+    {
+        return Price.toDouble(_vwap);
+    }
+
+    /**
+     * Sets the fixed point value, see Price.
+     *
+     * @param vwap
+     */
+    public void setVWAPFixed(long vwap)
+    {
+        _vwap = vwap;
+    }
+
+    /**
+     * Returns the fixed point value, see Price.
+     *
+     * @return
+     */
+    public long getVWAPFixed()
     {
         return _vwap;
     }
@@ -172,10 +288,10 @@ public class TradeRecord extends TaSRecord
         sb.append("Time = ").append(_activityDateTime);
         sb.append(", TaS Seq No. = ").append(_tasSeq);
         sb.append(", Trade Seq No. = ").append(_tradeSeq);
-        sb.append(", Trade Mkt = ").append(_participantCode);
-        sb.append(", Trade Price = ").append(_tradePrice);
+        sb.append(", Trade Mkt = ").append(getParticipantCode());
+        sb.append(", Trade Price = ").append(Price.toString(_tradePrice));
         sb.append(", Trade Size = ").append(_tradeSize);
-        sb.append(", VWAP = ").append(_vwap);
+        sb.append(", VWAP = ").append(Price.toString(_vwap));
         sb.append(", Trade Cond 1 = ").append(_tradeCondition1);
 
         sb.append("}");
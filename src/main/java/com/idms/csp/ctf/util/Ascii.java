@@ -0,0 +1,435 @@
+/*
+ * Ascii.java
+ */
+
+package com.idms.csp.ctf.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The Ascii class provides routines to decode CTF values straight from the
+ * ASCII bytes of a payload, without going through an intermediate String.
+ * The decoding routines use absolute indexes and never move the position of
+ * the buffer, so the same buffer can be shared by several readers. The put
+ * routines write at the position of the buffer like ByteBuffer.put().
+ */
+public class Ascii
+{
+    // Powers of ten that are exactly representable as a double.
+    private static final double[] POW10 = new double[23];
+    static
+    {
+        POW10[0] = 1.0;
+        for (int i=1; i<POW10.length; i++)
+        {
+            POW10[i] = POW10[i-1] * 10.0;
+        }
+    }
+
+    // Largest mantissa that converts to a double without rounding (2^53).
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    // A 1 in every byte of a long, to repeat a byte across a word.
+    private static final long REPEAT = 0x0101010101010101L;
+
+    // The low 7 bits of every byte of a long.
+    private static final long LOW7 = 0x7F7F7F7F7F7F7F7FL;
+
+    /**
+     * This class can't be instantiated.
+     */
+    private Ascii()
+    {
+    }
+
+    /**
+     * Parses an optionally signed decimal integer. For e.g. "-5" -> -5
+     *
+     * @param buf The buffer holding the digits.
+     * @param off The index of the first character.
+     * @param len The number of characters.
+     * @return The integer value, or -1 if the characters are not a number.
+     */
+    public static int parseInt(ByteBuffer buf, int off, int len)
+    {
+        long value = parseLong(buf, off, len);
+
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE)
+        {
+            return -1;
+        }
+
+        return (int) value;
+    }
+
+    /**
+     * Parses an optionally signed decimal long. For e.g. "1485654194" -> 1485654194
+     *
+     * @param buf The buffer holding the digits.
+     * @param off The index of the first character.
+     * @param len The number of characters.
+     * @return The long value, or -1 if the characters are not a number.
+     */
+    public static long parseLong(ByteBuffer buf, int off, int len)
+    {
+        int end = off + len;
+        boolean negative = false;
+
+        if (len > 0 && (buf.get(off) == '-' || buf.get(off) == '+'))
+        {
+            negative = (buf.get(off) == '-');
+            off++;
+        }
+
+        // Empty, or more digits than a long can hold.
+        if (off == end || end - off > 18)
+        {
+            return -1L;
+        }
+
+        long value = 0;
+        for (int i=off; i<end; i++)
+        {
+            int digit = buf.get(i) - '0';
+            if (digit < 0 || digit > 9)
+            {
+                return -1L;
+            }
+            value = value * 10 + digit;
+        }
+
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parses a decimal number in the plain "-123.456" form used by CTF. Other
+     * notations are handed over to Double.parseDouble().
+     *
+     * @param buf The buffer holding the digits.
+     * @param off The index of the first character.
+     * @param len The number of characters.
+     * @return The double value, or NaN if the characters are not a number.
+     */
+    public static double parseDouble(ByteBuffer buf, int off, int len)
+    {
+        int end = off + len;
+        int i = off;
+        boolean negative = false;
+
+        if (len > 0 && (buf.get(i) == '-' || buf.get(i) == '+'))
+        {
+            negative = (buf.get(i) == '-');
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int scale = -1;
+
+        for (; i<end; i++)
+        {
+            byte b = buf.get(i);
+            if (b >= '0' && b <= '9')
+            {
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+                if (scale >= 0)
+                {
+                    scale++;
+                }
+            }
+            else if (b == '.' && scale < 0)
+            {
+                scale = 0;
+            }
+            else
+            {
+                break;
+            }
+        }
+
+        if (i == end && digits > 0 && digits <= 18)
+        {
+            if (scale < 0)
+            {
+                scale = 0;
+            }
+
+            // Exact operands give a correctly rounded result.
+            if (mantissa < MAX_EXACT_MANTISSA && scale < POW10.length)
+            {
+                double value = mantissa / POW10[scale];
+                return negative ? -value : value;
+            }
+        }
+
+        // Rare notations. For e.g. "1.5E-4" or "NaN"
+        try
+        {
+            return Double.parseDouble(toString(buf, off, len));
+        }
+        catch (NumberFormatException e)
+        {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * Parses the CTF DateTime value into the UTC time in milliseconds.
+     * For e.g. "1210152744.006" -> 1210152744006
+     *
+     * @param buf The buffer holding the value.
+     * @param off The index of the first character.
+     * @param len The number of characters.
+     * @return The time in milliseconds, or -1 if the value is not a CTF DateTime.
+     */
+    public static long parseCTFDateTime(ByteBuffer buf, int off, int len)
+    {
+        int end = off + len;
+        int dot = off;
+        while (dot < end && buf.get(dot) != '.')
+        {
+            dot++;
+        }
+
+        long seconds = parseLong(buf, off, dot - off);
+        if (seconds < 0)
+        {
+            return -1L;
+        }
+
+        // Up to three digits of milliseconds, further digits are truncated.
+        long millis = 0;
+        for (int i=dot+1, unit=100; i<end && unit>0; i++, unit/=10)
+        {
+            int digit = buf.get(i) - '0';
+            if (digit < 0 || digit > 9)
+            {
+                return -1L;
+            }
+            millis += digit * unit;
+        }
+
+        return seconds * 1000 + millis;
+    }
+
+    /**
+     * Returns the index of the first occurrence of the byte. The bytes are
+     * compared eight at a time, a long word per step.
+     *
+     * @param buf The buffer to search.
+     * @param b The byte to look for.
+     * @param from The index to start from.
+     * @param end The index to stop at.
+     * @return The index of the byte, or end if the byte is not found.
+     */
+    public static int indexOf(ByteBuffer buf, byte b, int from, int end)
+    {
+        long pattern = REPEAT * (b & 0xff);
+        boolean bigEndian = (buf.order() == ByteOrder.BIG_ENDIAN);
+
+        int i = from;
+        for (; i+8<=end; i+=8)
+        {
+            long found = matches(buf.getLong(i) ^ pattern);
+            if (found != 0)
+            {
+                return i + firstByte(found, bigEndian);
+            }
+        }
+
+        for (; i<end; i++)
+        {
+            if (buf.get(i) == b)
+            {
+                return i;
+            }
+        }
+
+        return end;
+    }
+
+    /**
+     * Returns the index of the first occurrence of either byte. The bytes are
+     * compared eight at a time, a long word per step. For e.g. to find the
+     * end of a token number: indexOf(buf, '=', '|', pos, end)
+     *
+     * @param buf The buffer to search.
+     * @param b1 The first byte to look for.
+     * @param b2 The second byte to look for.
+     * @param from The index to start from.
+     * @param end The index to stop at.
+     * @return The index of the first of the two bytes, or end if neither is found.
+     */
+    public static int indexOf(ByteBuffer buf, byte b1, byte b2, int from, int end)
+    {
+        long pattern1 = REPEAT * (b1 & 0xff);
+        long pattern2 = REPEAT * (b2 & 0xff);
+        boolean bigEndian = (buf.order() == ByteOrder.BIG_ENDIAN);
+
+        int i = from;
+        for (; i+8<=end; i+=8)
+        {
+            long word = buf.getLong(i);
+            long found = matches(word ^ pattern1) | matches(word ^ pattern2);
+            if (found != 0)
+            {
+                return i + firstByte(found, bigEndian);
+            }
+        }
+
+        for (; i<end; i++)
+        {
+            byte c = buf.get(i);
+            if (c == b1 || c == b2)
+            {
+                return i;
+            }
+        }
+
+        return end;
+    }
+
+    /**
+     * Sets the high bit of every zero byte of the word and clears all the
+     * other bits. Unlike the shorter (x - 0x01..) & ~x form, there are no
+     * false positives, so the first match can be taken from either end.
+     */
+    private static long matches(long word)
+    {
+        long t = (word & LOW7) + LOW7;
+        return ~(t | word | LOW7);
+    }
+
+    /**
+     * Returns the position in memory of the first byte flagged by matches().
+     */
+    private static int firstByte(long found, boolean bigEndian)
+    {
+        return (bigEndian ? Long.numberOfLeadingZeros(found) : Long.numberOfTrailingZeros(found)) >>> 3;
+    }
+
+    /**
+     * Returns the number of characters needed to write the number in decimal.
+     *
+     * @param value The number.
+     * @return The number of characters, including the sign.
+     */
+    public static int sizeOf(long value)
+    {
+        int size = (value < 0) ? 2 : 1;
+
+        // Count on the negative side, which also holds MIN_VALUE.
+        for (long v=(value < 0) ? value : -value; v <= -10; v /= 10)
+        {
+            size++;
+        }
+
+        return size;
+    }
+
+    /**
+     * Writes the number in decimal at the position of the buffer and moves
+     * the position past it.
+     *
+     * @param buf The buffer to write to.
+     * @param value The number.
+     */
+    public static void putLong(ByteBuffer buf, long value)
+    {
+        int end = buf.position() + sizeOf(value);
+        int i = end;
+
+        // Write the digits backwards, on the negative side like sizeOf().
+        long v = (value < 0) ? value : -value;
+        do
+        {
+            buf.put(--i, (byte) ('0' - v % 10));
+            v /= 10;
+        }
+        while (v != 0);
+
+        if (value < 0)
+        {
+            buf.put(--i, (byte) '-');
+        }
+        buf.position(end);
+    }
+
+    /**
+     * Writes the characters at the position of the buffer, one byte each, and
+     * moves the position past them. Characters outside the ASCII range are
+     * written as "?".
+     *
+     * @param buf The buffer to write to.
+     * @param chars The characters.
+     */
+    public static void put(ByteBuffer buf, CharSequence chars)
+    {
+        for (int i=0; i<chars.length(); i++)
+        {
+            char c = chars.charAt(i);
+            buf.put((c < 0x80) ? (byte) c : (byte) '?');
+        }
+    }
+
+    /**
+     * Appends the characters to a StringBuilder.
+     *
+     * @param buf The buffer holding the characters.
+     * @param off The index of the first character.
+     * @param len The number of characters.
+     * @param sink The StringBuilder to append to.
+     */
+    public static void append(ByteBuffer buf, int off, int len, StringBuilder sink)
+    {
+        for (int i=off; i<off+len; i++)
+        {
+            sink.append((char) (buf.get(i) & 0xff));
+        }
+    }
+
+    /**
+     * Appends the characters to an Appendable, e.g. a Writer or a CharBuffer.
+     *
+     * @param buf The buffer holding the characters.
+     * @param off The index of the first character.
+     * @param len The number of characters.
+     * @param sink The Appendable to append to.
+     * @throws IOException If the Appendable can't be written to.
+     */
+    public static void append(ByteBuffer buf, int off, int len, Appendable sink) throws IOException
+    {
+        for (int i=off; i<off+len; i++)
+        {
+            sink.append((char) (buf.get(i) & 0xff));
+        }
+    }
+
+    /**
+     * Returns the characters as a String.
+     *
+     * @param buf The buffer holding the characters.
+     * @param off The index of the first character.
+     * @param len The number of characters.
+     * @return The String.
+     */
+    public static String toString(ByteBuffer buf, int off, int len)
+    {
+        if (buf.hasArray())
+        {
+            return new String(buf.array(), buf.arrayOffset() + off, len, StandardCharsets.ISO_8859_1);
+        }
+
+        char[] chars = new char[len];
+        for (int i=0; i<len; i++)
+        {
+            chars[i] = (char) (buf.get(off + i) & 0xff);
+        }
+
+        return new String(chars);
+    }
+}
@@ -0,0 +1,476 @@
+/*
+ * CTFDateTime.java
+ */
+
+package com.idms.csp.ctf.util;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.Arrays;
+
+/**
+ * The CTFDateTime class provides routines to parse CTF DateTime values, the
+ * UTC seconds with optional milliseconds, for e.g. "1210152744.006", and to
+ * format them as New York (network) time, for e.g. "05/07/2008 05:32:24.006".
+ * <br><code>long time = CTFDateTime.parse(field.getValue());
+ * <br>int end = CTFDateTime.formatDateTime(time, line, pos);</code>
+ * <p>
+ * Values are parsed straight from the characters and formatted with digit
+ * tables into a buffer given by the caller. The New York offset and date are
+ * cached for the local days, split at daylight saving transitions, in a
+ * table of the last 64 days indexed by day, so the time zone rules are only
+ * consulted the first time a day is seen. Times of different days, for e.g.
+ * of a replay and of the current day, don't evict each other. The routines
+ * hold no mutable shared state besides that table of immutable entries, are
+ * safe to call from any thread, and don't allocate unless a day is new.
+ */
+public class CTFDateTime
+{
+    // Length of a formatted date, MM/dd/yyyy.
+    public static final int DATE_LENGTH = 10;
+
+    // Length of a formatted time, HH:mm:ss.SSS.
+    public static final int TIME_LENGTH = 12;
+
+    // Length of a formatted date and time, MM/dd/yyyy HH:mm:ss.SSS.
+    public static final int DATETIME_LENGTH = DATE_LENGTH + 1 + TIME_LENGTH;
+
+    // The time zone of the network.
+    public static final ZoneId NEW_YORK = ZoneId.of("America/New_York");
+    private static final ZoneRules RULES = NEW_YORK.getRules();
+
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+    // New York is 4 or 5 hours behind UTC, so the local day of a time is
+    // the UTC day of the time less one of them.
+    private static final long MIN_BEHIND = 4L * 60 * 60 * 1000;
+    private static final long MAX_BEHIND = 5L * 60 * 60 * 1000;
+
+    // The two digits of the numbers 0 to 99.
+    private static final byte[] TENS = new byte[100];
+    private static final byte[] ONES = new byte[100];
+    static
+    {
+        for (int i=0; i<100; i++)
+        {
+            TENS[i] = (byte) ('0' + i / 10);
+            ONES[i] = (byte) ('0' + i % 10);
+        }
+    }
+
+    // The local days formatted, indexed by the local day modulo the size.
+    // Entries are immutable, a racy read sees a complete entry or an older
+    // one, which is checked against the time.
+    private static final Day[] DAYS = new Day[64];
+    static
+    {
+        Arrays.fill(DAYS, new Day(0L));
+    }
+
+    /**
+     * This class can't be instantiated.
+     */
+    private CTFDateTime()
+    {
+    }
+
+    /**
+     * Parses the CTF DateTime value into the UTC time in milliseconds.
+     * For e.g. "1210152744.006" -> 1210152744006
+     *
+     * @param chars The CTF DateTime value.
+     * @return The time in milliseconds, or -1 if the value is not a CTF DateTime.
+     */
+    public static long parse(CharSequence chars)
+    {
+        if (chars == null)
+        {
+            return -1L;
+        }
+
+        int end = chars.length();
+        int dot = 0;
+        long seconds = 0;
+        for (; dot<end && chars.charAt(dot) != '.'; dot++)
+        {
+            int digit = chars.charAt(dot) - '0';
+            if (digit < 0 || digit > 9 || dot >= 18)
+            {
+                return -1L;
+            }
+            seconds = seconds * 10 + digit;
+        }
+
+        if (dot == 0)
+        {
+            return -1L;
+        }
+
+        // Up to three digits of milliseconds, further digits are truncated.
+        long millis = 0;
+        for (int i=dot+1, unit=100; i<end && unit>0; i++, unit/=10)
+        {
+            int digit = chars.charAt(i) - '0';
+            if (digit < 0 || digit > 9)
+            {
+                return -1L;
+            }
+            millis += digit * unit;
+        }
+
+        return seconds * 1000 + millis;
+    }
+
+    /**
+     * Parses the CTF DateTime value into the UTC time in milliseconds.
+     *
+     * @param bytes The array holding the value.
+     * @param off The index of the first character.
+     * @param len The number of characters.
+     * @return The time in milliseconds, or -1 if the value is not a CTF DateTime.
+     */
+    public static long parse(byte[] bytes, int off, int len)
+    {
+        int end = off + len;
+        int dot = off;
+        long seconds = 0;
+        for (; dot<end && bytes[dot] != '.'; dot++)
+        {
+            int digit = bytes[dot] - '0';
+            if (digit < 0 || digit > 9 || dot - off >= 18)
+            {
+                return -1L;
+            }
+            seconds = seconds * 10 + digit;
+        }
+
+        if (dot == off)
+        {
+            return -1L;
+        }
+
+        // Up to three digits of milliseconds, further digits are truncated.
+        long millis = 0;
+        for (int i=dot+1, unit=100; i<end && unit>0; i++, unit/=10)
+        {
+            int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9)
+            {
+                return -1L;
+            }
+            millis += digit * unit;
+        }
+
+        return seconds * 1000 + millis;
+    }
+
+    /**
+     * Parses the CTF DateTime value into the UTC time in milliseconds.
+     *
+     * @param buf The buffer holding the value.
+     * @param off The index of the first character.
+     * @param len The number of characters.
+     * @return The time in milliseconds, or -1 if the value is not a CTF DateTime.
+     */
+    public static long parse(ByteBuffer buf, int off, int len)
+    {
+        return Ascii.parseCTFDateTime(buf, off, len);
+    }
+
+    /**
+     * Returns the New York offset from UTC at the given time.
+     *
+     * @param utctime The UTC time in milliseconds.
+     * @return The offset in milliseconds, for e.g. -14400000 in summer.
+     */
+    public static int getOffset(long utctime)
+    {
+        return day(utctime).offset;
+    }
+
+    /**
+     * Writes the New York date in MM/dd/yyyy format.
+     *
+     * @param utctime The UTC time in milliseconds.
+     * @param dst The array to write to, with room for DATE_LENGTH bytes.
+     * @param off The index to write at.
+     * @return The index past the date.
+     */
+    public static int formatDate(long utctime, byte[] dst, int off)
+    {
+        System.arraycopy(day(utctime).date, 0, dst, off, DATE_LENGTH);
+
+        return off + DATE_LENGTH;
+    }
+
+    /**
+     * Writes the New York time in HH:mm:ss.SSS format.
+     *
+     * @param utctime The UTC time in milliseconds.
+     * @param dst The array to write to, with room for TIME_LENGTH bytes.
+     * @param off The index to write at.
+     * @return The index past the time.
+     */
+    public static int formatTime(long utctime, byte[] dst, int off)
+    {
+        Day day = day(utctime);
+
+        return putTime((int) (utctime - day.start + day.startOfDay), dst, off);
+    }
+
+    /**
+     * Writes the New York date and time in MM/dd/yyyy HH:mm:ss.SSS format.
+     *
+     * @param utctime The UTC time in milliseconds.
+     * @param dst The array to write to, with room for DATETIME_LENGTH bytes.
+     * @param off The index to write at.
+     * @return The index past the date and time.
+     */
+    public static int formatDateTime(long utctime, byte[] dst, int off)
+    {
+        Day day = day(utctime);
+
+        System.arraycopy(day.date, 0, dst, off, DATE_LENGTH);
+        dst[off + DATE_LENGTH] = ' ';
+
+        return putTime((int) (utctime - day.start + day.startOfDay), dst, off + DATE_LENGTH + 1);
+    }
+
+    /**
+     * Appends the New York date in MM/dd/yyyy format.
+     *
+     * @param utctime The UTC time in milliseconds.
+     * @param sb The StringBuilder to append to.
+     * @return The StringBuilder.
+     */
+    public static StringBuilder appendDate(long utctime, StringBuilder sb)
+    {
+        byte[] date = day(utctime).date;
+        for (int i=0; i<DATE_LENGTH; i++)
+        {
+            sb.append((char) date[i]);
+        }
+
+        return sb;
+    }
+
+    /**
+     * Appends the New York time in HH:mm:ss.SSS format.
+     *
+     * @param utctime The UTC time in milliseconds.
+     * @param sb The StringBuilder to append to.
+     * @return The StringBuilder.
+     */
+    public static StringBuilder appendTime(long utctime, StringBuilder sb)
+    {
+        Day day = day(utctime);
+        int millis = (int) (utctime - day.start + day.startOfDay);
+
+        append2(millis / 3600000, sb).append(':');
+        append2(millis / 60000 % 60, sb).append(':');
+        append2(millis / 1000 % 60, sb).append('.');
+        int ms = millis % 1000;
+        sb.append((char) ('0' + ms / 100));
+
+        return append2(ms % 100, sb);
+    }
+
+    /**
+     * Appends the New York date and time in MM/dd/yyyy HH:mm:ss.SSS format.
+     *
+     * @param utctime The UTC time in milliseconds.
+     * @param sb The StringBuilder to append to.
+     * @return The StringBuilder.
+     */
+    public static StringBuilder appendDateTime(long utctime, StringBuilder sb)
+    {
+        appendDate(utctime, sb).append(' ');
+
+        return appendTime(utctime, sb);
+    }
+
+    /**
+     * Appends the time in CTF DateTime format, without the milliseconds when
+     * they are zero. For e.g. 1210152744006 -> "1210152744.006"
+     *
+     * @param utctime The UTC time in milliseconds.
+     * @param sb The StringBuilder to append to.
+     * @return The StringBuilder.
+     */
+    public static StringBuilder appendCTF(long utctime, StringBuilder sb)
+    {
+        long seconds = Math.floorDiv(utctime, 1000L);
+        int ms = (int) Math.floorMod(utctime, 1000L);
+
+        sb.append(seconds);
+        if (ms != 0)
+        {
+            sb.append('.').append((char) ('0' + ms / 100));
+            append2(ms % 100, sb);
+        }
+
+        return sb;
+    }
+
+    /**
+     * Returns the New York date in MM/dd/yyyy format.
+     *
+     * @param utctime The UTC time in milliseconds.
+     * @return The date String.
+     */
+    @SuppressWarnings("deprecation")
+    public static String toDateString(long utctime)
+    {
+        return new String(day(utctime).date, 0, 0, DATE_LENGTH);
+    }
+
+    /**
+     * Returns the New York time in HH:mm:ss.SSS format.
+     *
+     * @param utctime The UTC time in milliseconds.
+     * @return The time String.
+     */
+    @SuppressWarnings("deprecation")
+    public static String toTimeString(long utctime)
+    {
+        byte[] time = new byte[TIME_LENGTH];
+        formatTime(utctime, time, 0);
+
+        return new String(time, 0, 0, TIME_LENGTH);
+    }
+
+    /**
+     * Returns the cached local day holding the time, computing it from the
+     * time zone rules the first time the day is seen.
+     */
+    private static Day day(long utctime)
+    {
+        // The local day is one of the two, the same but for an hour a day.
+        Day day = DAYS[slot(Math.floorDiv(utctime - MAX_BEHIND, MILLIS_PER_DAY))];
+        if (utctime >= day.start && utctime < day.end)
+        {
+            return day;
+        }
+
+        day = DAYS[slot(Math.floorDiv(utctime - MIN_BEHIND, MILLIS_PER_DAY))];
+        if (utctime >= day.start && utctime < day.end)
+        {
+            return day;
+        }
+
+        day = new Day(utctime);
+        DAYS[slot(day.localDay)] = day;
+
+        return day;
+    }
+
+    /**
+     * Returns the index of a local day in the table of days.
+     */
+    private static int slot(long localDay)
+    {
+        return (int) localDay & (DAYS.length - 1);
+    }
+
+    /**
+     * Writes HH:mm:ss.SSS from the milliseconds since local midnight.
+     */
+    private static int putTime(int millis, byte[] dst, int off)
+    {
+        int hours = millis / 3600000;
+        int minutes = millis / 60000 % 60;
+        int seconds = millis / 1000 % 60;
+        int ms = millis % 1000;
+
+        dst[off] = TENS[hours];
+        dst[off + 1] = ONES[hours];
+        dst[off + 2] = ':';
+        dst[off + 3] = TENS[minutes];
+        dst[off + 4] = ONES[minutes];
+        dst[off + 5] = ':';
+        dst[off + 6] = TENS[seconds];
+        dst[off + 7] = ONES[seconds];
+        dst[off + 8] = '.';
+        dst[off + 9] = (byte) ('0' + ms / 100);
+        dst[off + 10] = TENS[ms % 100];
+        dst[off + 11] = ONES[ms % 100];
+
+        return off + TIME_LENGTH;
+    }
+
+    /**
+     * Appends a number from 0 to 99 as two digits.
+     */
+    private static StringBuilder append2(int value, StringBuilder sb)
+    {
+        return sb.append((char) TENS[value]).append((char) ONES[value]);
+    }
+
+    /**
+     * A span of a New York day with a single offset from UTC, i.e. the whole
+     * day, or the part before or after a daylight saving transition.
+     */
+    private static final class Day
+    {
+        // UTC times of the span, the end excluded.
+        final long start;
+        final long end;
+
+        // Offset from UTC in milliseconds.
+        final int offset;
+
+        // Local milliseconds since midnight at the start of the span.
+        final long startOfDay;
+
+        // The local day, days since the epoch.
+        final long localDay;
+
+        // The date in MM/dd/yyyy format.
+        final byte[] date = new byte[DATE_LENGTH];
+
+        Day(long utctime)
+        {
+            Instant instant = Instant.ofEpochMilli(utctime);
+            offset = RULES.getOffset(instant).getTotalSeconds() * 1000;
+
+            localDay = Math.floorDiv(utctime + offset, MILLIS_PER_DAY);
+            long dayStart = localDay * MILLIS_PER_DAY - offset;
+            long dayEnd = dayStart + MILLIS_PER_DAY;
+
+            // Split the day at the transitions around the time.
+            ZoneOffsetTransition previous = RULES.previousTransition(instant.plusMillis(1));
+            if (previous != null)
+            {
+                dayStart = Math.max(dayStart, previous.getInstant().toEpochMilli());
+            }
+            ZoneOffsetTransition next = RULES.nextTransition(instant);
+            if (next != null)
+            {
+                dayEnd = Math.min(dayEnd, next.getInstant().toEpochMilli());
+            }
+
+            start = dayStart;
+            end = dayEnd;
+            startOfDay = dayStart + offset - localDay * MILLIS_PER_DAY;
+
+            LocalDate ld = LocalDate.ofEpochDay(localDay);
+            int month = ld.getMonthValue();
+            int dayOfMonth = ld.getDayOfMonth();
+            int year = ld.getYear();
+            date[0] = TENS[month];
+            date[1] = ONES[month];
+            date[2] = '/';
+            date[3] = TENS[dayOfMonth];
+            date[4] = ONES[dayOfMonth];
+            date[5] = '/';
+            date[6] = TENS[year / 100 % 100];
+            date[7] = ONES[year / 100 % 100];
+            date[8] = TENS[year % 100];
+            date[9] = ONES[year % 100];
+        }
+    }
+}
@@ -0,0 +1,331 @@
+/*
+ * OptionSymbol.java
+ */
+
+package com.idms.csp.ctf.util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The OptionSymbol class decodes option ticker symbols into a key packed in
+ * a long. A symbol is the option root followed by the expiration month code
+ * and the strike price code, for e.g. IBMAR is the IBM January call with the
+ * strike code R. Month codes A to L are the calls expiring in January to
+ * December, M to X the puts:
+ * <br><code>long key = OptionSymbol.parse(ticker);
+ * <br>if (OptionSymbol.isCall(key)) ...
+ * <br>int month = OptionSymbol.month(key);</code>
+ * <p>
+ * A symbol is decoded in one pass over its characters, with a table indexed
+ * by the month code character, without allocating. The root, of up to 7
+ * ASCII characters, is held in the upper bits, then the put flag, the month
+ * and the strike code, so keys sort by root, calls before puts, then by month
+ * and strike code. The month codes do not carry the expiration year, see the
+ * EXPIRATION.DATE token.
+ */
+public class OptionSymbol
+{
+    // The key of a symbol that is not an option symbol.
+    public static final long NONE = 0L;
+
+    // Longest root.
+    public static final int MAX_ROOT_LENGTH = 7;
+
+    // Bits of the strike code, the month, the put flag and each root character.
+    private static final int STRIKE_BITS = 7;
+    private static final int MONTH_SHIFT = STRIKE_BITS;
+    private static final int MONTH_BITS = 4;
+    private static final int PUT_SHIFT = MONTH_SHIFT + MONTH_BITS;
+    private static final int ROOT_SHIFT = PUT_SHIFT + 1;
+    private static final int CHAR_BITS = 7;
+    private static final long CHAR_MASK = (1L << CHAR_BITS) - 1;
+
+    // Marks the put month codes in the month table.
+    private static final int PUT = 0x10;
+
+    // Three letter month names.
+    private static final String[] MONTHS =
+    {
+        "JAN", "FEB", "MAR", "APR", "MAY", "JUN", "JUL", "AUG", "SEP", "OCT", "NOV", "DEC"
+    };
+
+    // The month of each month code character, 1 to 12, ORed with PUT for the
+    // puts. 0 if the character is not a month code.
+    private static final byte[] MONTH_CODES = new byte[128];
+    static
+    {
+        for (int i=0; i<MONTHS.length; i++)
+        {
+            MONTH_CODES['A' + i] = (byte) (i + 1);
+            MONTH_CODES['M' + i] = (byte) ((i + 1) | PUT);
+        }
+    }
+
+    /**
+     * This class can't be instantiated.
+     */
+    private OptionSymbol()
+    {
+    }
+
+    /**
+     * Decodes an option symbol.
+     *
+     * @param sym The ticker symbol.
+     * @return The key, or NONE if the symbol is null or not an option symbol.
+     */
+    public static long parse(CharSequence sym)
+    {
+        if (sym == null)
+        {
+            return NONE;
+        }
+
+        int len = sym.length();
+        if (len < 2 || len > MAX_ROOT_LENGTH + 2)
+        {
+            return NONE;
+        }
+
+        long key = 0;
+        for (int i=0; i<len-2; i++)
+        {
+            char c = sym.charAt(i);
+            if (c == 0 || c >= 0x80)
+            {
+                return NONE;
+            }
+            key = (key << CHAR_BITS) | c;
+        }
+
+        return pack(key, len - 2, sym.charAt(len - 2), sym.charAt(len - 1));
+    }
+
+    /**
+     * Decodes an option symbol.
+     *
+     * @param buf The array holding the ASCII symbol.
+     * @param off The index of the first character.
+     * @param len The number of characters.
+     * @return The key, or NONE if the characters are not an option symbol.
+     */
+    public static long parse(byte[] buf, int off, int len)
+    {
+        if (len < 2 || len > MAX_ROOT_LENGTH + 2)
+        {
+            return NONE;
+        }
+
+        long key = 0;
+        int end = off + len - 2;
+        for (int i=off; i<end; i++)
+        {
+            byte b = buf[i];
+            if (b <= 0)
+            {
+                return NONE;
+            }
+            key = (key << CHAR_BITS) | b;
+        }
+
+        return pack(key, len - 2, (char) (buf[end] & 0xff), (char) (buf[end + 1] & 0xff));
+    }
+
+    /**
+     * Decodes an option symbol, for e.g. the value of SYMBOL.TICKER in a
+     * MessageView.
+     *
+     * @param buf The buffer holding the ASCII symbol.
+     * @param off The index of the first character.
+     * @param len The number of characters.
+     * @return The key, or NONE if the characters are not an option symbol.
+     */
+    public static long parse(ByteBuffer buf, int off, int len)
+    {
+        if (len < 2 || len > MAX_ROOT_LENGTH + 2)
+        {
+            return NONE;
+        }
+
+        long key = 0;
+        int end = off + len - 2;
+        for (int i=off; i<end; i++)
+        {
+            byte b = buf.get(i);
+            if (b <= 0)
+            {
+                return NONE;
+            }
+            key = (key << CHAR_BITS) | b;
+        }
+
+        return pack(key, len - 2, (char) (buf.get(end) & 0xff), (char) (buf.get(end + 1) & 0xff));
+    }
+
+    /**
+     * Checks if the key is that of a call.
+     *
+     * @param key The key.
+     * @return true if the symbol is a call option.
+     */
+    public static boolean isCall(long key)
+    {
+        return key != NONE && (key & (1L << PUT_SHIFT)) == 0;
+    }
+
+    /**
+     * Checks if the key is that of a put.
+     *
+     * @param key The key.
+     * @return true if the symbol is a put option.
+     */
+    public static boolean isPut(long key)
+    {
+        return (key & (1L << PUT_SHIFT)) != 0;
+    }
+
+    /**
+     * Returns the expiration month.
+     *
+     * @param key The key.
+     * @return The month, 1 for January to 12 for December, 0 for NONE.
+     */
+    public static int month(long key)
+    {
+        return (int) (key >>> MONTH_SHIFT) & ((1 << MONTH_BITS) - 1);
+    }
+
+    /**
+     * Returns the expiration month code, for e.g. A for a January call.
+     *
+     * @param key The key.
+     * @return The month code, or 0 for NONE.
+     */
+    public static char monthCode(long key)
+    {
+        int month = month(key);
+        if (month == 0)
+        {
+            return 0;
+        }
+
+        return (char) ((isPut(key) ? 'M' : 'A') + month - 1);
+    }
+
+    /**
+     * Returns the strike price code.
+     *
+     * @param key The key.
+     * @return The strike code character, or 0 for NONE.
+     */
+    public static char strikeCode(long key)
+    {
+        return (char) (key & CHAR_MASK);
+    }
+
+    /**
+     * Returns the root of the symbol, for e.g. IBM for IBMAR.
+     *
+     * @param key The key.
+     * @return The root, or null for NONE.
+     */
+    public static String root(long key)
+    {
+        if (key == NONE)
+        {
+            return null;
+        }
+
+        return appendRoot(key, new StringBuilder(MAX_ROOT_LENGTH)).toString();
+    }
+
+    /**
+     * Returns the symbol of a key, for e.g. IBMAR.
+     *
+     * @param key The key.
+     * @return The symbol, or null for NONE.
+     */
+    public static String toString(long key)
+    {
+        if (key == NONE)
+        {
+            return null;
+        }
+
+        return appendRoot(key, new StringBuilder(MAX_ROOT_LENGTH + 2))
+                .append(monthCode(key)).append(strikeCode(key)).toString();
+    }
+
+    /**
+     * Returns the three letter month of an expiration month code. For e.g.
+     * A -> JAN and M -> JAN.
+     *
+     * @param code The month code.
+     * @return The month, or null if the character is not a month code.
+     */
+    public static String decodeMonth(char code)
+    {
+        int month = (code < MONTH_CODES.length) ? MONTH_CODES[code] & ~PUT : 0;
+
+        return (month > 0) ? MONTHS[month - 1] : null;
+    }
+
+    /**
+     * Returns the expiration month code of a three letter month. For e.g.
+     * JAN -> A for a call and M for a put.
+     *
+     * @param month The three letter month.
+     * @param put true for the put month code.
+     * @return The month code, or 0 if the month is not known.
+     */
+    public static char encodeMonth(String month, boolean put)
+    {
+        for (int i=0; i<MONTHS.length; i++)
+        {
+            if (MONTHS[i].equals(month))
+            {
+                return (char) ((put ? 'M' : 'A') + i);
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * Packs the root with the month and strike codes.
+     */
+    private static long pack(long root, int rootLength, char monthCode, char strikeCode)
+    {
+        int month = (monthCode < MONTH_CODES.length) ? MONTH_CODES[monthCode] : 0;
+        if (month == 0 || strikeCode == 0 || strikeCode >= 0x80)
+        {
+            return NONE;
+        }
+
+        // Left align the root, so shorter roots sort first.
+        root <<= CHAR_BITS * (MAX_ROOT_LENGTH - rootLength);
+
+        return (root << ROOT_SHIFT)
+                | ((month & PUT) != 0 ? 1L << PUT_SHIFT : 0)
+                | ((long) (month & ~PUT) << MONTH_SHIFT)
+                | strikeCode;
+    }
+
+    /**
+     * Appends the characters of the root.
+     */
+    private static StringBuilder appendRoot(long key, StringBuilder sb)
+    {
+        for (int i=MAX_ROOT_LENGTH-1; i>=0; i--)
+        {
+            char c = (char) ((key >>> (ROOT_SHIFT + i * CHAR_BITS)) & CHAR_MASK);
+            if (c == 0)
+            {
+                break;
+            }
+            sb.append(c);
+        }
+
+        return sb;
+    }
+}
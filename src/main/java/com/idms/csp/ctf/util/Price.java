@@ -0,0 +1,479 @@
+/*
+ * Price.java
+ */
+
+package com.idms.csp.ctf.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+
+/**
+ * The Price class provides routines to work with fixed point prices packed in
+ * a long. A price is a decimal mantissa with an implied scale, i.e. the number
+ * of digits after the decimal point. For e.g. "101.19" is the mantissa 10119
+ * with a scale of 2. The mantissa is held in the upper 60 bits and the scale
+ * in the lower 4 bits:
+ * <br><code>long price = Price.parse("101.19");
+ * <br>long spread = Price.subtract(ask, bid);
+ * <br>double value = Price.toDouble(price);</code>
+ * <p>
+ * Prices are parsed straight from the ASCII digits and are exact, so the
+ * arithmetic routines never round. A price that can't be parsed or represented,
+ * and the result of an operation that overflows, is the NaN price.
+ */
+public class Price
+{
+    // The price that is not a number. Missing or invalid prices are NaN.
+    public static final long NaN = Long.MIN_VALUE;
+
+    // The price zero.
+    public static final long ZERO = 0L;
+
+    // Largest scale, i.e. digits after the decimal point.
+    public static final int MAX_SCALE = 15;
+
+    // Bits holding the scale.
+    private static final int SCALE_BITS = 4;
+    private static final long SCALE_MASK = (1L << SCALE_BITS) - 1;
+
+    // Largest magnitude of the mantissa. The NaN price lies outside this range.
+    private static final long MAX_MANTISSA = (1L << (63 - SCALE_BITS)) - 1;
+
+    // Largest number of digits in a parsed mantissa.
+    private static final int MAX_DIGITS = 17;
+
+    // Powers of ten for rescaling mantissas.
+    private static final long[] LONG_POW10 = new long[MAX_SCALE + 1];
+
+    // The same powers of ten, exactly representable as a double.
+    private static final double[] DOUBLE_POW10 = new double[MAX_SCALE + 1];
+    static
+    {
+        LONG_POW10[0] = 1L;
+        DOUBLE_POW10[0] = 1.0;
+        for (int i=1; i<=MAX_SCALE; i++)
+        {
+            LONG_POW10[i] = LONG_POW10[i-1] * 10;
+            DOUBLE_POW10[i] = DOUBLE_POW10[i-1] * 10.0;
+        }
+    }
+
+    // Largest mantissa that converts to a double without rounding (2^53).
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    /**
+     * This class can't be instantiated.
+     */
+    private Price()
+    {
+    }
+
+    /**
+     * Returns the price with the given mantissa and scale. For e.g.
+     * valueOf(10119, 2) -> 101.19
+     *
+     * @param mantissa The decimal mantissa.
+     * @param scale The number of digits after the decimal point, 0 to 15.
+     * @return The price, or NaN if the mantissa or the scale is out of range.
+     */
+    public static long valueOf(long mantissa, int scale)
+    {
+        if (scale < 0 || scale > MAX_SCALE || mantissa > MAX_MANTISSA || mantissa < -MAX_MANTISSA)
+        {
+            return NaN;
+        }
+
+        return (mantissa << SCALE_BITS) | scale;
+    }
+
+    /**
+     * Returns the price closest to the double value, using the shortest
+     * decimal representation of the double. For e.g. 101.19 -> 101.19
+     *
+     * @param value The double value.
+     * @return The price, or NaN if the value is NaN, infinite or out of range.
+     */
+    public static long valueOf(double value)
+    {
+        if (Double.isNaN(value) || Double.isInfinite(value))
+        {
+            return NaN;
+        }
+
+        BigDecimal decimal = new BigDecimal(Double.toString(value)).stripTrailingZeros();
+        if (decimal.scale() < 0)
+        {
+            decimal = decimal.setScale(0);
+        }
+        else if (decimal.scale() > MAX_SCALE)
+        {
+            decimal = decimal.setScale(MAX_SCALE, RoundingMode.HALF_EVEN);
+        }
+
+        if (decimal.unscaledValue().bitLength() > 63 - SCALE_BITS)
+        {
+            return NaN;
+        }
+
+        return valueOf(decimal.unscaledValue().longValue(), decimal.scale());
+    }
+
+    /**
+     * Parses a price in the plain "-123.456" form used by CTF.
+     *
+     * @param buf The buffer holding the digits.
+     * @param off The index of the first character.
+     * @param len The number of characters.
+     * @return The price, or NaN if the characters are not a plain decimal number.
+     */
+    public static long parse(ByteBuffer buf, int off, int len)
+    {
+        int end = off + len;
+        int i = off;
+        boolean negative = false;
+
+        if (len > 0 && (buf.get(i) == '-' || buf.get(i) == '+'))
+        {
+            negative = (buf.get(i) == '-');
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int scale = -1;
+
+        for (; i<end; i++)
+        {
+            byte b = buf.get(i);
+            if (b >= '0' && b <= '9')
+            {
+                mantissa = mantissa * 10 + (b - '0');
+                if (++digits > MAX_DIGITS)
+                {
+                    return NaN;
+                }
+                if (scale >= 0)
+                {
+                    scale++;
+                }
+            }
+            else if (b == '.' && scale < 0)
+            {
+                scale = 0;
+            }
+            else
+            {
+                return NaN;
+            }
+        }
+
+        if (digits == 0)
+        {
+            return NaN;
+        }
+
+        return valueOf(negative ? -mantissa : mantissa, (scale < 0) ? 0 : scale);
+    }
+
+    /**
+     * Parses a price in the plain "-123.456" form used by CTF.
+     *
+     * @param chars The characters of the price.
+     * @return The price, or NaN if the characters are null or not a plain decimal number.
+     */
+    public static long parse(CharSequence chars)
+    {
+        if (chars == null)
+        {
+            return NaN;
+        }
+
+        int len = chars.length();
+        int i = 0;
+        boolean negative = false;
+
+        if (len > 0 && (chars.charAt(0) == '-' || chars.charAt(0) == '+'))
+        {
+            negative = (chars.charAt(0) == '-');
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int scale = -1;
+
+        for (; i<len; i++)
+        {
+            char c = chars.charAt(i);
+            if (c >= '0' && c <= '9')
+            {
+                mantissa = mantissa * 10 + (c - '0');
+                if (++digits > MAX_DIGITS)
+                {
+                    return NaN;
+                }
+                if (scale >= 0)
+                {
+                    scale++;
+                }
+            }
+            else if (c == '.' && scale < 0)
+            {
+                scale = 0;
+            }
+            else
+            {
+                return NaN;
+            }
+        }
+
+        if (digits == 0)
+        {
+            return NaN;
+        }
+
+        return valueOf(negative ? -mantissa : mantissa, (scale < 0) ? 0 : scale);
+    }
+
+    /**
+     * Checks if the price is NaN.
+     *
+     * @param price The price.
+     * @return {@code true} if the price is NaN, {@code false} otherwise.
+     */
+    public static boolean isNaN(long price)
+    {
+        return price == NaN;
+    }
+
+    /**
+     * Returns the decimal mantissa of the price.
+     *
+     * @param price The price.
+     * @return The mantissa.
+     */
+    public static long mantissa(long price)
+    {
+        return price >> SCALE_BITS;
+    }
+
+    /**
+     * Returns the scale of the price, i.e. the number of digits after the
+     * decimal point.
+     *
+     * @param price The price.
+     * @return The scale.
+     */
+    public static int scale(long price)
+    {
+        return (int) (price & SCALE_MASK);
+    }
+
+    /**
+     * Returns the price as a double. The result is correctly rounded for
+     * mantissas of up to 15 digits.
+     *
+     * @param price The price.
+     * @return The double value, or Double.NaN if the price is NaN.
+     */
+    public static double toDouble(long price)
+    {
+        if (price == NaN)
+        {
+            return Double.NaN;
+        }
+
+        long mantissa = mantissa(price);
+        int scale = scale(price);
+
+        if (mantissa < MAX_EXACT_MANTISSA && mantissa > -MAX_EXACT_MANTISSA)
+        {
+            return mantissa / DOUBLE_POW10[scale];
+        }
+
+        return BigDecimal.valueOf(mantissa, scale).doubleValue();
+    }
+
+    /**
+     * Returns the same price with the given scale. For e.g. rescale(1.5, 2) -> 1.50
+     *
+     * @param price The price.
+     * @param scale The new scale, not smaller than the scale of the price.
+     * @return The rescaled price, or NaN if it does not fit.
+     */
+    public static long rescale(long price, int scale)
+    {
+        int diff = scale - scale(price);
+        if (price == NaN || diff < 0 || scale > MAX_SCALE)
+        {
+            return NaN;
+        }
+
+        return valueOf(multiplyExact(mantissa(price), LONG_POW10[diff]), scale);
+    }
+
+    /**
+     * Returns the negated price.
+     *
+     * @param price The price.
+     * @return -price, or NaN if the price is NaN.
+     */
+    public static long negate(long price)
+    {
+        if (price == NaN)
+        {
+            return NaN;
+        }
+
+        return valueOf(-mantissa(price), scale(price));
+    }
+
+    /**
+     * Adds two prices exactly. The result has the larger of the two scales.
+     *
+     * @param a The first price.
+     * @param b The second price.
+     * @return a + b, or NaN if either price is NaN or the result overflows.
+     */
+    public static long add(long a, long b)
+    {
+        if (a == NaN || b == NaN)
+        {
+            return NaN;
+        }
+
+        int scale = Math.max(scale(a), scale(b));
+        long ma = mantissa(rescale(a, scale));
+        long mb = mantissa(rescale(b, scale));
+
+        // Both rescaled mantissas are within range, so their sum fits in a long.
+        return valueOf(ma + mb, scale);
+    }
+
+    /**
+     * Subtracts two prices exactly. For e.g. subtract(ask, bid) is the spread.
+     *
+     * @param a The first price.
+     * @param b The second price.
+     * @return a - b, or NaN if either price is NaN or the result overflows.
+     */
+    public static long subtract(long a, long b)
+    {
+        return add(a, negate(b));
+    }
+
+    /**
+     * Multiplies the price by a quantity exactly. For e.g. multiply(price, size)
+     * is the notional value of a trade.
+     *
+     * @param price The price.
+     * @param quantity The quantity.
+     * @return price * quantity, or NaN if the price is NaN or the result overflows.
+     */
+    public static long multiply(long price, long quantity)
+    {
+        if (price == NaN)
+        {
+            return NaN;
+        }
+
+        return valueOf(multiplyExact(mantissa(price), quantity), scale(price));
+    }
+
+    /**
+     * Compares two prices numerically. NaN is larger than any other price,
+     * like Double.compare().
+     *
+     * @param a The first price.
+     * @param b The second price.
+     * @return A negative number, zero or a positive number if a is less than,
+     * equal to or greater than b.
+     */
+    public static int compare(long a, long b)
+    {
+        if (a == NaN || b == NaN)
+        {
+            return (a == b) ? 0 : (a == NaN) ? 1 : -1;
+        }
+
+        int scale = Math.max(scale(a), scale(b));
+        long ra = rescale(a, scale);
+        long rb = rescale(b, scale);
+
+        // Rescaling overflowed, the magnitudes are far apart.
+        if (ra == NaN || rb == NaN)
+        {
+            return Double.compare(toDouble(a), toDouble(b));
+        }
+
+        return Long.compare(mantissa(ra), mantissa(rb));
+    }
+
+    /**
+     * Returns the string representation of the price. For e.g. "101.19"
+     *
+     * @param price The price.
+     * @return The price in plain decimal notation, or "NaN".
+     */
+    public static String toString(long price)
+    {
+        return append(price, new StringBuilder(24)).toString();
+    }
+
+    /**
+     * Appends the price in plain decimal notation to a StringBuilder.
+     *
+     * @param price The price.
+     * @param sb The StringBuilder to append to.
+     * @return The StringBuilder.
+     */
+    public static StringBuilder append(long price, StringBuilder sb)
+    {
+        if (price == NaN)
+        {
+            return sb.append("NaN");
+        }
+
+        long mantissa = mantissa(price);
+        int scale = scale(price);
+
+        if (mantissa < 0)
+        {
+            sb.append('-');
+            mantissa = -mantissa;
+        }
+
+        // Pad with zeros so there is at least one digit before the point.
+        int start = sb.length();
+        sb.append(mantissa);
+        while (sb.length() - start <= scale)
+        {
+            sb.insert(start, '0');
+        }
+        if (scale > 0)
+        {
+            sb.insert(sb.length() - scale, '.');
+        }
+
+        return sb;
+    }
+
+    /**
+     * Multiplies two longs, returning a value outside the mantissa range if
+     * the product overflows.
+     */
+    private static long multiplyExact(long a, long b)
+    {
+        long product = a * b;
+        long ax = Math.abs(a);
+        long bx = Math.abs(b);
+
+        if (((ax | bx) >>> 31) != 0 && ((b != 0 && product / b != a) || (a == Long.MIN_VALUE && b == -1)))
+        {
+            return Long.MAX_VALUE;
+        }
+
+        return product;
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * TimestampFormatter.java
+ */
+
+package com.idms.csp.ctf.util;
+
+/**
+ * This class formats UTC times as New York date and time in
+ * MM/dd/yyyy HH:mm:ss.SSS format, for logs and XML/CSV output where every
+ * tick is written in human readable time. The "MM/dd/yyyy HH:mm:ss." prefix
+ * of the last second formatted is kept, so consecutive times within the same
+ * second only render the milliseconds. For e.g.
+ * <br><code>TimestampFormatter.local().append(trade.getActivityDateTime(), line);</code>
+ * <p>
+ * The prefix is rendered with CTFDateTime, which caches the date and the
+ * offset of the day. A formatter is not thread safe, use the one of the
+ * calling thread returned by <code>local()</code>, or one per writer.
+ */
+public class TimestampFormatter
+{
+    // Length of the cached prefix, "MM/dd/yyyy HH:mm:ss."
+    private static final int PREFIX_LENGTH = CTFDateTime.DATETIME_LENGTH - 3;
+
+    // One formatter per thread.
+    private static final ThreadLocal<TimestampFormatter> _localFormatter = new ThreadLocal<TimestampFormatter>()
+    {
+        @Override
+        protected TimestampFormatter initialValue()
+        {
+            return new TimestampFormatter();
+        }
+    };
+
+    // The UTC second of the cached prefix.
+    private long _second = Long.MIN_VALUE;
+
+    // The rendered "MM/dd/yyyy HH:mm:ss." prefix.
+    private final byte[] _prefix = new byte[CTFDateTime.DATETIME_LENGTH];
+
+    // The UTC second of the prefix copied into chars.
+    private long _charSecond = Long.MIN_VALUE;
+
+    // The date and time as characters, for appending to a StringBuilder.
+    private final char[] _chars = new char[CTFDateTime.DATETIME_LENGTH];
+
+    /**
+     * Creates a formatter.
+     */
+    public TimestampFormatter()
+    {
+    }
+
+    /**
+     * Returns the formatter of the calling thread.
+     *
+     * @return The TimestampFormatter object.
+     */
+    public static TimestampFormatter local()
+    {
+        return _localFormatter.get();
+    }
+
+    /**
+     * Writes the time in MM/dd/yyyy HH:mm:ss.SSS format.
+     *
+     * @param utctime The UTC time in milliseconds.
+     * @param dst The array to write to, with room for
+     * CTFDateTime.DATETIME_LENGTH bytes.
+     * @param off The index to write at.
+     * @return The index past the date and time.
+     */
+    public int format(long utctime, byte[] dst, int off)
+    {
+        int ms = prefix(utctime);
+        System.arraycopy(_prefix, 0, dst, off, PREFIX_LENGTH);
+
+        int i = off + PREFIX_LENGTH;
+        dst[i] = (byte) ('0' + ms / 100);
+        dst[i + 1] = (byte) ('0' + ms / 10 % 10);
+        dst[i + 2] = (byte) ('0' + ms % 10);
+
+        return i + 3;
+    }
+
+    /**
+     * Appends the time in MM/dd/yyyy HH:mm:ss.SSS format.
+     *
+     * @param utctime The UTC time in milliseconds.
+     * @param sb The StringBuilder to append to.
+     * @return The StringBuilder.
+     */
+    public StringBuilder append(long utctime, StringBuilder sb)
+    {
+        return sb.append(chars(utctime));
+    }
+
+    /**
+     * Returns the time in MM/dd/yyyy HH:mm:ss.SSS format.
+     *
+     * @param utctime The UTC time in milliseconds.
+     * @return The date and time String.
+     */
+    public String format(long utctime)
+    {
+        return new String(chars(utctime));
+    }
+
+    /**
+     * Renders the prefix when the second changes, and returns the
+     * milliseconds within the second.
+     */
+    private int prefix(long utctime)
+    {
+        long second = Math.floorDiv(utctime, 1000L);
+        if (second != _second)
+        {
+            CTFDateTime.formatDateTime(utctime, _prefix, 0);
+            _second = second;
+        }
+
+        return (int) (utctime - second * 1000);
+    }
+
+    /**
+     * Renders the time into the chars, copying the prefix when it changes.
+     */
+    private char[] chars(long utctime)
+    {
+        int ms = prefix(utctime);
+        if (_charSecond != _second)
+        {
+            for (int i=0; i<PREFIX_LENGTH; i++)
+            {
+                _chars[i] = (char) _prefix[i];
+            }
+            _charSecond = _second;
+        }
+
+        _chars[PREFIX_LENGTH] = (char) ('0' + ms / 100);
+        _chars[PREFIX_LENGTH + 1] = (char) ('0' + ms / 10 % 10);
+        _chars[PREFIX_LENGTH + 2] = (char) ('0' + ms % 10);
+
+        return _chars;
+    }
+}
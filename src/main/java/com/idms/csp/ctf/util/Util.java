@@ -6,13 +6,12 @@ package com.idms.csp.ctf.util;
 
 import com.idms.csp.ctf.data.Field;
 import com.idms.csp.ctf.data.Message;
+import com.idms.csp.ctf.data.MessageKind;
+import com.idms.csp.ctf.data.TokenHandle;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.util.Map;
-import java.util.Set;
 import java.util.TimeZone;
-import java.util.TreeMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -23,63 +22,17 @@ import java.util.logging.Logger;
  */
 public class Util 
 {
-    // Date Formatters set to New York Time Zone to be used in CTF DateTime formatting.
-    static Date _utcTime = new Date();
+    // Date Parsers set to New York Time Zone, used by getCTFDateTime(String)
+    // only. Formatting goes through CTFDateTime. Guarded by Util.class.
     static SimpleDateFormat _dateFormatter = new SimpleDateFormat("MM/dd/yyyy");
     static SimpleDateFormat _timeFormatter = new SimpleDateFormat("HH:mm:ss.SSS");
     static SimpleDateFormat _dateTimeFormatter = new SimpleDateFormat("MM/dd/yyyy HH:mm:ss.SSS");
 
-    static SimpleDateFormat _utcDateFormatter = new SimpleDateFormat("MM/dd/yyyy");
-    static SimpleDateFormat _utcTimeFormatter = new SimpleDateFormat("HH:mm:ss.SSS");
-    static SimpleDateFormat _utcDateTimeFormatter = new SimpleDateFormat("MM/dd/yyyy HH:mm:ss.SSS");
-
     static
     {
         _dateFormatter.setTimeZone(TimeZone.getTimeZone("America/New_York"));
         _timeFormatter.setTimeZone(TimeZone.getTimeZone("America/New_York"));
         _dateTimeFormatter.setTimeZone(TimeZone.getTimeZone("America/New_York"));
-
-        _utcDateFormatter.setTimeZone(TimeZone.getTimeZone("UTC"));
-        _utcTimeFormatter.setTimeZone(TimeZone.getTimeZone("UTC"));
-        _utcDateTimeFormatter.setTimeZone(TimeZone.getTimeZone("UTC"));
-    }
-
-    // Call Options Expiration Month Codes
-    static final TreeMap<String, String> _callExpirationMonthCodeMap 
-            = new TreeMap<String, String>();
-    static
-    {
-        _callExpirationMonthCodeMap.put("A", "JAN");
-        _callExpirationMonthCodeMap.put("B", "FEB");
-        _callExpirationMonthCodeMap.put("C", "MAR");
-        _callExpirationMonthCodeMap.put("D", "APR");
-        _callExpirationMonthCodeMap.put("E", "MAY");
-        _callExpirationMonthCodeMap.put("F", "JUN");
-        _callExpirationMonthCodeMap.put("G", "JUL");
-        _callExpirationMonthCodeMap.put("H", "AUG");
-        _callExpirationMonthCodeMap.put("I", "SEP");
-        _callExpirationMonthCodeMap.put("J", "OCT");
-        _callExpirationMonthCodeMap.put("K", "NOV");
-        _callExpirationMonthCodeMap.put("L", "DEC");
-    }
-    
-    // Put Options Expiration Month Code
-    static final TreeMap<String, String> _putExpirationMonthCodeMap 
-            = new TreeMap<String, String>();
-    static
-    {
-        _putExpirationMonthCodeMap.put("M", "JAN");
-        _putExpirationMonthCodeMap.put("N", "FEB");
-        _putExpirationMonthCodeMap.put("O", "MAR");
-        _putExpirationMonthCodeMap.put("P", "APR");
-        _putExpirationMonthCodeMap.put("Q", "MAY");
-        _putExpirationMonthCodeMap.put("R", "JUN");
-        _putExpirationMonthCodeMap.put("S", "JUL");
-        _putExpirationMonthCodeMap.put("T", "AUG");
-        _putExpirationMonthCodeMap.put("U", "SEP");
-        _putExpirationMonthCodeMap.put("V", "OCT");
-        _putExpirationMonthCodeMap.put("W", "NOV");
-        _putExpirationMonthCodeMap.put("X", "DEC");
     }
 
     /**
@@ -140,16 +93,7 @@ public class Util
      */
     public static long parseCTFDateTime(String ctfdate)
     {
-        try
-        {
-            double datetime = Double.parseDouble(ctfdate) * 1000; 
-            return (long) datetime; 
-        }
-        catch (NumberFormatException e)
-        {
-            e.printStackTrace();
-            return -1L;
-        }
+        return CTFDateTime.parse(ctfdate);
     }
 
     /**
@@ -178,8 +122,7 @@ public class Util
      */
     public static String getNetworkDate(long utctime)
     {
-        _utcTime.setTime(utctime);
-        return _dateFormatter.format(_utcTime);
+        return CTFDateTime.toDateString(utctime);
     }
  
     /**
@@ -210,8 +153,7 @@ public class Util
      */
     public static String getNetworkTime(long utctime)
     {
-        _utcTime.setTime(utctime);
-        return _timeFormatter.format(_utcTime);
+        return CTFDateTime.toTimeString(utctime);
     }
 
     /**
@@ -219,7 +161,7 @@ public class Util
      * @param dateTime
      * @return
      */
-    public static String getCTFDateTime(String dateTime)
+    public static synchronized String getCTFDateTime(String dateTime)
     {
         try 
         {
@@ -282,18 +224,8 @@ public class Util
      */
     public static String getCTFDateTime(long dateTime)
     {
-        _utcTime.setTime(dateTime);
-
-        if (dateTime % 1000 == 0)
-        {
-            // Return a string without the milliseconds.
-            return String.format("%ts", _utcTime);
-        }
-        else
-        {
-            // Retrun a string with milliseconds.
-            return String.format("%ts.%tL", _utcTime, _utcTime);
-        }
+        // Without the milliseconds when they are zero.
+        return CTFDateTime.appendCTF(dateTime, new StringBuilder(14)).toString();
     }
 
     /**
@@ -314,13 +246,7 @@ public class Util
      */
     public static boolean isRefresh(Message msg)
     {
-        Field refresh = msg.get("REFRESH");
-        if (refresh != null)
-        {
-            return true;
-        }
-        
-        return false;
+        return msg.isRefresh();
     }
     
     /**
@@ -330,15 +256,7 @@ public class Util
      */
     public static boolean isBuyOrder(Message msg)
     {
-        Field bidPrice = msg.get("BID.PART.PRICE");
-        Field bidSize = msg.get("BID.PART.SIZE");
-        
-        if (bidPrice != null || bidSize != null)
-        {
-            return true;
-        }
-        
-        return false;
+        return (msg.getKind() & MessageKind.BUY_ORDER) != 0;
     }
 
     /**
@@ -348,15 +266,7 @@ public class Util
      */
     public static boolean isSellOrder(Message msg)
     {
-        Field askPrice = msg.get("ASK.PART.PRICE");
-        Field askSize = msg.get("ASK.PART.SIZE");
-        
-        if (askPrice != null || askSize != null)
-        {
-            return true;
-        }
-        
-        return false;
+        return (msg.getKind() & MessageKind.SELL_ORDER) != 0;
     }
 
     /**
@@ -366,19 +276,7 @@ public class Util
      */
     public static boolean isDeleteOrder(Message msg) 
     {
-        Field askSize = msg.get("ASK.PART.SIZE");
-        if (askSize != null && askSize.getIntValue() == 0)
-        {
-            return true;
-        }
-
-        Field bidSize = msg.get("BID.PART.SIZE");
-        if (bidSize != null && bidSize.getIntValue() == 0)
-        {
-            return true;
-        }
-        
-        return false;
+        return (msg.getKind() & MessageKind.DELETE_ORDER) != 0;
     }
 
     /**
@@ -387,15 +285,7 @@ public class Util
      */
     public static boolean isTrade(Message msg)
     {
-        Field tradePrice = msg.get("TRADE.PRICE");
-        Field tradeSize = msg.get("TRADE.SIZE");
-        
-        if (tradePrice != null || tradeSize != null)
-        {
-            return true;
-        }
-
-        return false;
+        return msg.isTrade();
     }
     
     /**
@@ -404,17 +294,7 @@ public class Util
      */
     public static boolean isQuote(Message msg)
     {
-        Field bidPrice = msg.get("BID.PRICE");
-        Field bidSize = msg.get("BID.SIZE");
-        Field askPrice = msg.get("ASK.PRICE");
-        Field askSize = msg.get("ASK.SIZE");
-        
-        if (bidPrice != null || bidSize != null || askPrice != null || askSize != null)
-        {
-            return true;
-        }
-
-        return false;
+        return msg.isQuote();
     }
     
     /**
@@ -423,12 +303,7 @@ public class Util
      */
     public static boolean isLevel1(Message msg)
     {
-        if (Util.isTrade(msg) || Util.isQuote(msg))
-        {
-            return true;
-        }
-        
-        return false;
+        return msg.isLevel1();
     }
     
     /**
@@ -437,12 +312,7 @@ public class Util
      */
     public static boolean isLevel2(Message msg)
     {
-        if (Util.isBuyOrder(msg) || Util.isSellOrder(msg))
-        {
-            return true;
-        }
-
-        return false; 
+        return msg.isLevel2();
     }
 
     /**
@@ -452,13 +322,35 @@ public class Util
      */
     public static boolean isStatus(Message msg)
     {
-        Field field = msg.get(5001);
-        if (field != null)
+        return msg.isStatus();
+    }
+
+    /**
+     * 
+     * @param msg
+     * @param token
+     * @return
+     */
+    public static String formatCSV(Message msg, String[] token)
+    {
+        StringBuffer sb = new StringBuffer();
+        
+        for (int i=0; i<token.length; i++)
         {
-            return true;
-        }
+            Field field = msg.get(token[i]);
+            if (field != null)
+            {
+                sb.append(field.getValue());
+            }
 
-        return false;
+            // Skip comma for the last field.
+            if (i != token.length-1)
+            {
+                sb.append(",");
+            }
+        }
+        
+        return sb.toString();
     }
 
     /**
@@ -467,7 +359,7 @@ public class Util
      * @param token
      * @return
      */
-    public static String formatCSV(Message msg, String[] token)
+    public static String formatCSV(Message msg, TokenHandle[] token)
     {
         StringBuffer sb = new StringBuffer();
         
@@ -528,6 +420,28 @@ public class Util
         return sb.toString();
     }
 
+    /**
+     * 
+     * @param msg
+     * @param token
+     * @return
+     */
+    public static String formatXML(Message msg, TokenHandle[] token)
+    {
+        StringBuffer sb = new StringBuffer();
+        
+        for (int i=0; i<token.length; i++)
+        {
+            Field field = msg.get(token[i]);
+            if (field != null)
+            {
+                sb.append(formatXML(field));
+            }
+        }
+        
+        return sb.toString();
+    }
+
     /**
      * 
      * @param field
@@ -549,12 +463,12 @@ public class Util
      */
     public static String decodeExpirationMonth(String code)
     {
-        if (_callExpirationMonthCodeMap.containsKey(code))
+        if (code == null || code.length() != 1)
         {
-            return _callExpirationMonthCodeMap.get(code);
+            return null;
         }
-        
-        return _putExpirationMonthCodeMap.get(code);
+
+        return OptionSymbol.decodeMonth(code.charAt(0));
     }
 
     /**
@@ -565,16 +479,9 @@ public class Util
      */
     public static String encodeCallExpirationMonth(String month)
     {
-        Set<Map.Entry<String, String>> set = _callExpirationMonthCodeMap.entrySet();
-        for (Map.Entry<String, String> item : set)
-        {
-            if (item.getValue().equals(month))
-            {
-                return item.getKey();
-            }
-        }
-        
-        return null;
+        char code = OptionSymbol.encodeMonth(month, false);
+
+        return (code != 0) ? String.valueOf(code) : null;
     }
 
     /**
@@ -585,16 +492,9 @@ public class Util
      */
     public static String encodePutExpirationMonth(String month)
     {
-        Set<Map.Entry<String, String>> set = _putExpirationMonthCodeMap.entrySet();
-        for (Map.Entry<String, String> item : set)
-        {
-            if (item.getValue().equals(month))
-            {
-                return item.getKey();
-            }
-        }
-        
-        return null;
+        char code = OptionSymbol.encodeMonth(month, true);
+
+        return (code != 0) ? String.valueOf(code) : null;
     }
     
     /**
@@ -605,29 +505,11 @@ public class Util
      * 
      * @param sym
      * @return
+     * @see OptionSymbol
      */
     public static boolean isCall(String sym)
     {
-       // Obtain the last but one character which is a call/put indicator 
-       // that identifies the expiration month. For e.g. IBMAR -> IBM Jan 2006 90 call.
-       if (sym != null)
-       {
-           try
-           {
-               String code = sym.substring(sym.length()-2, sym.length()-1);
-               if (_callExpirationMonthCodeMap.containsKey(code))
-               {
-                   return true;
-               }
-
-           }
-           catch (IndexOutOfBoundsException e)
-           {
-               
-           }
-       }
-       
-       return false;
+        return OptionSymbol.isCall(OptionSymbol.parse(sym));
     }
 
     /**
@@ -638,29 +520,11 @@ public class Util
      * 
      * @param sym
      * @return
+     * @see OptionSymbol
      */
     public static boolean isPut(String sym)
     {
-       // Obtain the last but one character which is a call/put indicator 
-       // that identifies the expiration month. For e.g. IBMMR -> IBM Jan 2006 90 put.
-       if (sym != null)
-       {
-           try
-           {
-               String code = sym.substring(sym.length()-2, sym.length()-1);
-               if (_putExpirationMonthCodeMap.containsKey(code))
-               {
-                   return true;
-               }
-
-           }
-           catch (IndexOutOfBoundsException e)
-           {
-               
-           }
-       }
-       
-       return false;
+        return OptionSymbol.isPut(OptionSymbol.parse(sym));
     }
 
     /**
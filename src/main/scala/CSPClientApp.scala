@@ -1,10 +1,12 @@
 import java.io.{File, FileOutputStream}
 import java.net.InetSocketAddress
+import java.nio.ByteOrder
+import java.nio.charset.StandardCharsets
 
 import akka.actor.{Actor, ActorSystem, Props}
 import akka.io.Tcp.Connected
 import akka.util.ByteString
-import com.idms.csp.Utils
+import com.idms.csp.ctf.data.{DataDict, DictSnapshot, Message}
 
 /**
   * Created by padusumilli on 4/1/2016.
@@ -36,6 +38,9 @@ case class Command(command: String, connection: Connection)
 
 object CSPConnection {
 
+  // Query tag of the ListAvailableTokens request, tells its response apart.
+  val ListTokensTag = 2
+
   def props(conn: Connection, fileWriter: FileOutputStream): Props = {
     Props(classOf[CSPConnection], conn, fileWriter)
   }
@@ -45,6 +50,12 @@ object CSPConnection {
 
 class CSPConnection(connection: Connection, fileWriter: FileOutputStream) extends Actor {
 
+  val parser = context.actorOf(ResponseParser.props(), "parser")
+
+  // Collects the definitions of a ListAvailableTokens response while it
+  // arrives. The parser keeps decoding with the current dictionary until the
+  // response is complete and the new one is swapped in.
+  var dictBuilder: DictSnapshot.Builder = null
 
   override def receive: Receive = {
 
@@ -55,10 +66,22 @@ class CSPConnection(connection: Connection, fileWriter: FileOutputStream) extend
 
     case data: ByteString => {
       fileWriter.write(data.toArray)
-      val response = data.utf8String
-      println(">> " + response)
+      parser ! data
     }
 
+    case msg: Message =>
+      val tag = msg.get(5026)
+      if (dictBuilder != null && tag != null && tag.getIntValue == CSPConnection.ListTokensTag) {
+        if (!dictBuilder.add(msg) && msg.getStatus != null) {
+          // The status ends the response.
+          DataDict.setSnapshot(dictBuilder.build())
+          dictBuilder = null
+          println("Data dictionary refreshed: " + DataDict.getSnapshot)
+        }
+      }
+      println(">> " + msg)
+      msg.release()
+
     case Command("close", connection) => {
       //close
     }
@@ -68,11 +91,11 @@ class CSPConnection(connection: Connection, fileWriter: FileOutputStream) extend
 
     case c: Connected => {
       val login = "5022=LoginUser|5026=1|5079=1|5028=" + connection.username + "|5029=" + connection.password
-      val status: String = "5022=ListAvailableTokens|5026=1"
+      val status: String = "5022=ListAvailableTokens|5026=" + CSPConnection.ListTokensTag
 
       println("connected to..." + c.remoteAddress)
-      sender() ! serialize(login)
-      sender() ! serialize(status)
+      dictBuilder = DataDict.getSnapshot.toBuilder
+      sender() ! serialize(login, status)
     }
 
     case _ =>
@@ -81,16 +104,22 @@ class CSPConnection(connection: Connection, fileWriter: FileOutputStream) extend
 
   }
 
-  val EOT = Array(0x04.toByte)
-  val ETX = Array(0x03.toByte)
-  val SPC = Array(0x20.toByte)
-  val header = Array.concat(EOT, SPC)
-  val CTF_FRAME_OVERHEAD_SIZE = 7
-
-  def serialize(msg: String): ByteString = {
-    val payloadLength = Utils.htonl(msg.length)
-    val messageToCSP = Array.concat(header, payloadLength, msg.getBytes, ETX)
-    ByteString.fromArray(messageToCSP)
+  implicit val byteOrder: ByteOrder = ByteOrder.BIG_ENDIAN
+
+  /**
+    * Frames the CTF commands back to back in one ByteString, so a whole batch
+    * (e.g. the subscriptions sent at login) goes out in a single write.
+    */
+  def serialize(msgs: String*): ByteString = {
+    val builder = ByteString.newBuilder
+    msgs foreach { msg =>
+      val payload = msg.getBytes(StandardCharsets.US_ASCII)
+      builder.putByte(Message.CTF_FRAME_START).putByte(Message.CTF_PROTOCOL_SIGNATURE)
+      builder.putInt(payload.length)
+      builder.putBytes(payload)
+      builder.putByte(Message.CTF_FRAME_END)
+    }
+    builder.result()
   }
 
   def serializeASCII(msg: String): ByteString = {
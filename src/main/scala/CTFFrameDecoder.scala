@@ -0,0 +1,112 @@
+import akka.util.ByteString
+import com.idms.csp.ctf.data.Message
+
+import scala.annotation.tailrec
+import scala.collection.immutable.VectorBuilder
+
+object CTFFrameDecoder {
+
+  // Frame start, protocol signature and the 4 byte payload length.
+  val HeaderSize = 6
+
+  // Anything larger is treated as a corrupt header rather than a real frame.
+  val DefaultMaxPayloadSize = 16 * 1024 * 1024
+
+}
+
+/**
+  * Reassembles CTF frames out of the chunks delivered by the TCP layer.
+  *
+  * A frame is laid out as CTF_FRAME_START, CTF_PROTOCOL_SIGNATURE, the payload
+  * length (4 bytes, network order), the payload and CTF_FRAME_END. TCP may split
+  * a frame across several Received events or deliver several frames in one, so
+  * the undecoded tail is kept until the rest of the frame arrives.
+  *
+  * The payloads handed out are slices over the received chunks, nothing is
+  * converted to a String or copied here. A payload straddling two chunks comes
+  * back as a rope over both of them.
+  *
+  * Not thread safe, use one decoder per connection.
+  */
+class CTFFrameDecoder(maxPayloadSize: Int = CTFFrameDecoder.DefaultMaxPayloadSize) {
+
+  import CTFFrameDecoder._
+
+  private var buffer = ByteString.empty
+
+  /**
+    * Appends a chunk received from the socket and returns the payloads of all
+    * the frames completed by it, in arrival order.
+    */
+  def decode(chunk: ByteString): Vector[ByteString] = {
+    buffer = if (buffer.isEmpty) chunk else buffer ++ chunk
+
+    val frames = new VectorBuilder[ByteString]
+    extract(frames)
+    frames.result()
+  }
+
+  /**
+    * Number of bytes held back waiting for the rest of a frame.
+    */
+  def pending: Int = buffer.length
+
+  /**
+    * Drops any partially received frame, e.g. after a reconnect.
+    */
+  def reset(): Unit = {
+    buffer = ByteString.empty
+  }
+
+  @tailrec
+  private def extract(frames: VectorBuilder[ByteString]): Unit = {
+    val start = frameStart(buffer)
+
+    if (start < 0) {
+      // No frame in sight. Keep a trailing frame start, its signature may be in the next chunk.
+      buffer =
+        if (buffer.nonEmpty && buffer(buffer.length - 1) == Message.CTF_FRAME_START) buffer.drop(buffer.length - 1)
+        else ByteString.empty
+    }
+    else {
+      if (start > 0) buffer = buffer.drop(start)
+
+      if (buffer.length >= HeaderSize) {
+        val length = payloadLength(buffer)
+
+        if (length < 0 || length > maxPayloadSize) {
+          // Not a real header, resynchronise past this frame start.
+          buffer = buffer.drop(1)
+          extract(frames)
+        }
+        else if (buffer.length > HeaderSize + length) {
+          if (buffer(HeaderSize + length) == Message.CTF_FRAME_END) {
+            frames += buffer.slice(HeaderSize, HeaderSize + length)
+            buffer = buffer.drop(HeaderSize + length + 1)
+          }
+          else {
+            // Length and trailer disagree, resynchronise past this frame start.
+            buffer = buffer.drop(1)
+          }
+          extract(frames)
+        }
+      }
+    }
+  }
+
+  private def frameStart(data: ByteString): Int = {
+    val last = data.length - 1
+    var i = 0
+    while (i < last) {
+      if (data(i) == Message.CTF_FRAME_START && data(i + 1) == Message.CTF_PROTOCOL_SIGNATURE) {
+        return i
+      }
+      i += 1
+    }
+    -1
+  }
+
+  private def payloadLength(data: ByteString): Int = {
+    ((data(2) & 0xff) << 24) | ((data(3) & 0xff) << 16) | ((data(4) & 0xff) << 8) | (data(5) & 0xff)
+  }
+}
@@ -1,7 +1,7 @@
 import akka.actor.Actor.Receive
 import akka.actor.{Actor, ActorLogging, Props}
 import akka.util.ByteString
-import com.idms.csp.ctf.data.Message
+import com.idms.csp.ctf.data.{MessagePool, MessageView}
 
 /**
   * Created by padusumilli on 4/3/2016.
@@ -19,13 +19,27 @@ object ResponseParser {
   * constructs the Response Message object, which would be transformed
   * by other actors like JSON converts.
   *
+  * The server data arrives as raw TCP chunks, which are reassembled into
+  * complete CTF frames before parsing. Each frame is indexed in place by a
+  * reused MessageView, and only materialized into a Message for the parent.
+  * Messages are frozen before they leave this actor, so the consumers can
+  * read them without locking. They come from a pool, consumers call release()
+  * on them once processed.
   *
   * Test that this object construction is complete on receiving the message.
   */
 class ResponseParser extends Actor with ActorLogging{
+
+  val decoder = new CTFFrameDecoder()
+  val view = new MessageView()
+  val pool = new MessagePool()
+
   override def receive: Receive = {
-    case msg: ByteString => {
-      val msgObj = new Message(msg.toString())
+    case chunk: ByteString => {
+      decoder.decode(chunk) foreach { payload =>
+        val msgObj = view.wrap(payload.asByteBuffer).toMessage(pool.acquire()).freeze()
+        context.parent ! msgObj
+      }
     }
 
   }
@@ -0,0 +1,65 @@
+/*
+ * DataDictBenchmark.java
+ */
+
+package com.idms.csp.ctf.data;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Looks up the tokens of a Level 1 message from 8 threads, as decoders do,
+ * in DataDict and in the synchronized TreeMap it used before.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Threads(8)
+public class DataDictBenchmark
+{
+    private static final int[] TOKNUMS = { 5026, 4, 5, 16, 8, 9, 12, 13, 10, 11, 14, 7, 3, 3 };
+
+    private Map<Integer, Token> _synchronized;
+
+    @Setup
+    public void setup()
+    {
+        DataDict.init("ctf.data");
+
+        _synchronized = Collections.synchronizedSortedMap(new TreeMap<Integer, Token>());
+        for (Token token : DataDict.getTokens())
+        {
+            _synchronized.put(Integer.valueOf(token.num), token);
+        }
+    }
+
+    @Benchmark
+    public void dataDict(Blackhole bh)
+    {
+        for (int toknum : TOKNUMS)
+        {
+            bh.consume(DataDict.getToken(toknum));
+        }
+    }
+
+    @Benchmark
+    public void synchronizedTreeMap(Blackhole bh)
+    {
+        for (int toknum : TOKNUMS)
+        {
+            bh.consume(_synchronized.get(Integer.valueOf(toknum)));
+        }
+    }
+}
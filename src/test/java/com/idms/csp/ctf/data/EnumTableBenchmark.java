@@ -0,0 +1,76 @@
+/*
+ * EnumTableBenchmark.java
+ */
+
+package com.idms.csp.ctf.data;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Decodes the enumerated fields of a fundamentals message, in place through
+ * the EnumTables and as normalizers did, with a HashMap of value strings per
+ * token.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class EnumTableBenchmark
+{
+    private static final int[] TOKNUMS = { 201, 3027, 3211, 3132, 3035, 3202, 3669 };
+
+    private static final String PAYLOAD
+            = "5026=1|201=13|3027=12|3211=112|3132=257|3035=3176102|3202=2|3669=1|5=IBM";
+
+    private MessageView _view = new MessageView();
+    private Map<Integer, Map<String, String>> _maps;
+
+    @Setup
+    public void setup()
+    {
+        DataDict.init("ctf.data");
+
+        byte[] bytes = PAYLOAD.getBytes(StandardCharsets.US_ASCII);
+        _view.wrap(bytes, 0, bytes.length);
+
+        _maps = new HashMap<Integer, Map<String, String>>();
+        for (EnumTable table : DataDict.getSnapshot().getEnumTables())
+        {
+            Map<String, String> map = new HashMap<String, String>();
+            for (Enum enm : table.getEnums())
+            {
+                map.put(String.valueOf(enm.getValue()), enm.getDescription());
+            }
+            _maps.put(Integer.valueOf(table.getTokenNum()), map);
+        }
+    }
+
+    @Benchmark
+    public void enumTable(Blackhole bh)
+    {
+        for (int toknum : TOKNUMS)
+        {
+            bh.consume(_view.getEnum(toknum));
+        }
+    }
+
+    @Benchmark
+    public void stringHashMap(Blackhole bh)
+    {
+        for (int toknum : TOKNUMS)
+        {
+            bh.consume(_maps.get(Integer.valueOf(toknum)).get(_view.getString(toknum)));
+        }
+    }
+}
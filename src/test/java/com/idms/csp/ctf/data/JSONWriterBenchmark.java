@@ -0,0 +1,55 @@
+/*
+ * JSONWriterBenchmark.java
+ */
+
+package com.idms.csp.ctf.data;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Writes small (8 field) and full (40 field) Level 1 messages as JSON lines
+ * into a reused buffer, in messages per second.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class JSONWriterBenchmark
+{
+    private Message _small;
+    private Message _full;
+    private JSONWriter _json;
+
+    @Setup
+    public void setup()
+    {
+        DataDict.init("ctf.data");
+        _small = new Message(SampleMessages.level1(8), Message.Mode.SINGLE_WRITER).freeze();
+        _full = new Message(SampleMessages.level1(40), Message.Mode.SINGLE_WRITER).freeze();
+        _json = new JSONWriter();
+    }
+
+    @Benchmark
+    public int small() throws IOException
+    {
+        _json.reset();
+        _json.write(_small);
+        return _json.size();
+    }
+
+    @Benchmark
+    public int full() throws IOException
+    {
+        _json.reset();
+        _json.write(_full);
+        return _json.size();
+    }
+}
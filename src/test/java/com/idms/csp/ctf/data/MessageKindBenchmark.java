@@ -0,0 +1,74 @@
+/*
+ * MessageKindBenchmark.java
+ */
+
+package com.idms.csp.ctf.data;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Routes a Level 1 message the way the routers do, asking isLevel1(),
+ * isLevel2() and isStatus(), with the kind computed when the fields are added
+ * and with the per call token lookups Util did before.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MessageKindBenchmark
+{
+    private static final TokenHandle TRADE_PRICE = TokenHandle.of("TRADE.PRICE");
+    private static final TokenHandle TRADE_SIZE = TokenHandle.of("TRADE.SIZE");
+    private static final TokenHandle BID_PRICE = TokenHandle.of("BID.PRICE");
+    private static final TokenHandle BID_SIZE = TokenHandle.of("BID.SIZE");
+    private static final TokenHandle ASK_PRICE = TokenHandle.of("ASK.PRICE");
+    private static final TokenHandle ASK_SIZE = TokenHandle.of("ASK.SIZE");
+    private static final TokenHandle BID_PART_PRICE = TokenHandle.of("BID.PART.PRICE");
+    private static final TokenHandle BID_PART_SIZE = TokenHandle.of("BID.PART.SIZE");
+    private static final TokenHandle ASK_PART_PRICE = TokenHandle.of("ASK.PART.PRICE");
+    private static final TokenHandle ASK_PART_SIZE = TokenHandle.of("ASK.PART.SIZE");
+
+    private Message _msg;
+
+    @Setup
+    public void setup()
+    {
+        DataDict.init("ctf.data");
+        _msg = new Message(SampleMessages.level1(40), Message.Mode.SINGLE_WRITER).freeze();
+    }
+
+    @Benchmark
+    public int kind()
+    {
+        int route = 0;
+        route += _msg.isLevel1() ? 1 : 0;
+        route += _msg.isLevel2() ? 2 : 0;
+        route += _msg.isStatus() ? 4 : 0;
+
+        return route;
+    }
+
+    @Benchmark
+    public int lookups()
+    {
+        Message m = _msg;
+        int route = 0;
+        boolean trade = m.get(TRADE_PRICE) != null || m.get(TRADE_SIZE) != null;
+        boolean quote = m.get(BID_PRICE) != null || m.get(BID_SIZE) != null
+                || m.get(ASK_PRICE) != null || m.get(ASK_SIZE) != null;
+        route += (trade || quote) ? 1 : 0;
+        boolean buy = m.get(BID_PART_PRICE) != null || m.get(BID_PART_SIZE) != null;
+        boolean sell = m.get(ASK_PART_PRICE) != null || m.get(ASK_PART_SIZE) != null;
+        route += (buy || sell) ? 2 : 0;
+        route += (m.get(5001) != null) ? 4 : 0;
+
+        return route;
+    }
+}
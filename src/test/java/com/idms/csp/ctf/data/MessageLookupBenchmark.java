@@ -0,0 +1,141 @@
+/*
+ * MessageLookupBenchmark.java
+ */
+
+package com.idms.csp.ctf.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares token lookups through the Message index with the linear scan over
+ * a synchronized list that Message used before. Each operation asks for the
+ * four quote tokens (as Util.isQuote does) and for all the PERMISSION fields.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MessageLookupBenchmark
+{
+    // BID.PRICE, BID.SIZE, ASK.PRICE, ASK.SIZE
+    private static final int[] QUOTE_TOKENS = { 12, 13, 10, 11 };
+
+    // PERMISSION
+    private static final int PERMISSION = 3;
+
+    @Param({"10", "20", "40"})
+    public int fields;
+
+    private Message _indexed;
+
+    private LinearMessage _linear;
+
+    @Setup
+    public void setup()
+    {
+        DataDict.init("ctf.data");
+
+        _indexed = new Message(SampleMessages.level1(fields));
+        _linear = new LinearMessage(_indexed.getAll());
+    }
+
+    @Benchmark
+    public void indexedGet(Blackhole bh)
+    {
+        for (int toknum : QUOTE_TOKENS)
+        {
+            bh.consume(_indexed.get(toknum));
+        }
+    }
+
+    @Benchmark
+    public void linearGet(Blackhole bh)
+    {
+        for (int toknum : QUOTE_TOKENS)
+        {
+            bh.consume(_linear.get(toknum));
+        }
+    }
+
+    @Benchmark
+    public Field[] indexedGetAll()
+    {
+        return _indexed.getAll(PERMISSION);
+    }
+
+    @Benchmark
+    public Field[] linearGetAll()
+    {
+        return _linear.getAll(PERMISSION);
+    }
+
+    /**
+     * The lookups of the previous Message implementation.
+     */
+    static class LinearMessage
+    {
+        private List<Field> _fields
+                = Collections.synchronizedList(new ArrayList<Field>());
+
+        LinearMessage(Field[] fields)
+        {
+            Collections.addAll(_fields, fields);
+        }
+
+        Field get(int toknum)
+        {
+            Token token = DataDict.getToken(toknum);
+
+            if (token != null)
+            {
+                synchronized(_fields)
+                {
+                    for (Field field : _fields)
+                    {
+                        if (field != null && field.getToken().num == token.num)
+                        {
+                            return field;
+                        }
+                    }
+                }
+            }
+
+            return null;
+        }
+
+        Field[] getAll(int toknum)
+        {
+            List<Field> flist = new ArrayList<Field>();
+
+            Token token = DataDict.getToken(toknum);
+
+            if (token != null)
+            {
+                synchronized(_fields)
+                {
+                    for (Field field : _fields)
+                    {
+                        if (field.getToken().num == token.num)
+                        {
+                            flist.add(field);
+                        }
+                    }
+                }
+            }
+
+            return flist.toArray(new Field[flist.size()]);
+        }
+    }
+}
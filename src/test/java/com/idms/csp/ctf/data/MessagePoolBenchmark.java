@@ -0,0 +1,61 @@
+/*
+ * MessagePoolBenchmark.java
+ */
+
+package com.idms.csp.ctf.data;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Decodes a Level 1 payload into a new Message, and into a Message recycled
+ * through a MessagePool. Run with the GC profiler to get the allocation rate
+ * per message (gc.alloc.rate.norm):
+ * <br><code>jmh:run -prof gc MessagePoolBenchmark</code>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MessagePoolBenchmark
+{
+    @Param({"10", "40"})
+    public int fields;
+
+    private byte[] _payload;
+
+    private MessageView _view = new MessageView();
+
+    private MessagePool _pool = new MessagePool();
+
+    @Setup
+    public void setup()
+    {
+        DataDict.init("ctf.data");
+
+        _payload = SampleMessages.level1(fields).getBytes();
+    }
+
+    @Benchmark
+    public void unpooled(Blackhole bh)
+    {
+        Message msg = _view.wrap(_payload, 0, _payload.length).toMessage();
+        bh.consume(msg.get(8));
+    }
+
+    @Benchmark
+    public void pooled(Blackhole bh)
+    {
+        Message msg = _view.wrap(_payload, 0, _payload.length).toMessage(_pool.acquire());
+        bh.consume(msg.get(8));
+        msg.release();
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * MessageScanBenchmark.java
+ */
+
+package com.idms.csp.ctf.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Tokenizes a capture of CTF frames with the existing Message(String)
+ * constructor, and with MessageView which scans the payload bytes a word at a
+ * time. The "bytes" counter gives the throughput in payload bytes per second.
+ * <p>
+ * The frames are read from the file named by the ctf.frames system property,
+ * response.dat by default, holding the raw bytes received from the server.
+ * Synthetic Level 1 payloads are used when there is no capture:
+ * <br><code>jmh:run -jvmArgs -Dctf.frames=/path/to/response.dat MessageScanBenchmark</code>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class MessageScanBenchmark
+{
+    private String[] _strings;
+
+    private ByteBuffer[] _heap;
+
+    private ByteBuffer[] _direct;
+
+    private int _size;
+
+    private MessageView _view = new MessageView();
+
+    /**
+     * Counts the payload bytes tokenized.
+     */
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Bytes
+    {
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset()
+        {
+            bytes = 0;
+        }
+    }
+
+    @Setup
+    public void setup() throws IOException
+    {
+        DataDict.init("ctf.data");
+
+        List<byte[]> payloads = load(new File(System.getProperty("ctf.frames", "response.dat")));
+
+        _strings = new String[payloads.size()];
+        _heap = new ByteBuffer[payloads.size()];
+        _direct = new ByteBuffer[payloads.size()];
+
+        for (int i=0; i<payloads.size(); i++)
+        {
+            byte[] payload = payloads.get(i);
+            _strings[i] = new String(payload, StandardCharsets.ISO_8859_1);
+            _heap[i] = ByteBuffer.wrap(payload);
+            _direct[i] = ByteBuffer.allocateDirect(payload.length);
+            _direct[i].put(payload).flip();
+            _size += payload.length;
+        }
+    }
+
+    @Benchmark
+    public void messageString(Bytes counter, Blackhole bh)
+    {
+        for (String payload : _strings)
+        {
+            bh.consume(new Message(payload));
+        }
+        counter.bytes += _size;
+    }
+
+    @Benchmark
+    public void viewHeap(Bytes counter, Blackhole bh)
+    {
+        for (ByteBuffer payload : _heap)
+        {
+            bh.consume(_view.wrap(payload).size());
+        }
+        counter.bytes += _size;
+    }
+
+    @Benchmark
+    public void viewDirect(Bytes counter, Blackhole bh)
+    {
+        for (ByteBuffer payload : _direct)
+        {
+            bh.consume(_view.wrap(payload).size());
+        }
+        counter.bytes += _size;
+    }
+
+    /**
+     * Returns the payloads of the frames in the capture, or synthetic ones.
+     */
+    private static List<byte[]> load(File capture) throws IOException
+    {
+        List<byte[]> payloads = new ArrayList<byte[]>();
+
+        if (capture.isFile())
+        {
+            ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(capture.toPath()));
+            while (data.remaining() > 6)
+            {
+                if (data.get() != Message.CTF_FRAME_START || data.get(data.position()) != Message.CTF_PROTOCOL_SIGNATURE)
+                {
+                    continue;
+                }
+                data.get();
+
+                int length = data.getInt();
+                if (length < 0 || length >= data.remaining())
+                {
+                    break;
+                }
+
+                byte[] payload = new byte[length];
+                data.get(payload);
+                if (data.get() == Message.CTF_FRAME_END)
+                {
+                    payloads.add(payload);
+                }
+            }
+        }
+
+        if (payloads.isEmpty())
+        {
+            for (int i=1; i<=40; i++)
+            {
+                payloads.add(SampleMessages.level1(i).getBytes(StandardCharsets.US_ASCII));
+            }
+        }
+
+        return payloads;
+    }
+}
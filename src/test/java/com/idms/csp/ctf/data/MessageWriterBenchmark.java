@@ -0,0 +1,94 @@
+/*
+ * MessageWriterBenchmark.java
+ */
+
+package com.idms.csp.ctf.data;
+
+import com.idms.csp.ctf.util.Util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Writes a 40 field Level 1 message to a stream as XML and as CSV columns,
+ * with the writers and by building the Strings of toXML() and
+ * Util.formatCSV() as extracts did before.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MessageWriterBenchmark
+{
+    private static final TokenHandle[] COLUMNS = TokenHandle.ofAll(
+            "SYMBOL.TICKER", "TRADE.PRICE", "TRADE.SIZE", "BID.PRICE", "ASK.PRICE", "TRADE.DATETIME");
+
+    // Counts the bytes, so the output costs the same for all the ways.
+    private static class NullStream extends OutputStream
+    {
+        long count;
+
+        @Override
+        public void write(int b)
+        {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len)
+        {
+            count += len;
+        }
+    }
+
+    private NullStream _out = new NullStream();
+    private Message _msg;
+    private XMLWriter _xml;
+    private CSVWriter _csv;
+
+    @Setup
+    public void setup()
+    {
+        DataDict.init("ctf.data");
+        _msg = new Message(SampleMessages.level1(40), Message.Mode.SINGLE_WRITER).freeze();
+        _xml = new XMLWriter(_out);
+        _csv = new CSVWriter(_out, COLUMNS);
+    }
+
+    @Benchmark
+    public long xmlWriter() throws IOException
+    {
+        _xml.write(_msg);
+        return _out.count;
+    }
+
+    @Benchmark
+    public long toXML() throws IOException
+    {
+        _out.write(_msg.toXML().getBytes(StandardCharsets.US_ASCII));
+        return _out.count;
+    }
+
+    @Benchmark
+    public long csvWriter() throws IOException
+    {
+        _csv.write(_msg);
+        return _out.count;
+    }
+
+    @Benchmark
+    public long formatCSV() throws IOException
+    {
+        _out.write(Util.formatCSV(_msg, COLUMNS).getBytes(StandardCharsets.US_ASCII));
+        return _out.count;
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * OptionChainBenchmark.java
+ */
+
+package com.idms.csp.ctf.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Builds the chain of an index with 4368 series (7 roots, 24 month codes,
+ * 26 strike codes), classifying the tickers with OptionSymbol and as
+ * Message.isCall()/isPut() did before, with a substring probed in TreeMaps.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class OptionChainBenchmark
+{
+    private static final String[] ROOTS = { "SPX", "SPQ", "SXB", "SXY", "SZP", "SPB", "SXZ" };
+
+    private static final TokenHandle SYMBOL_TICKER = TokenHandle.of("SYMBOL.TICKER");
+
+    private static final TreeMap<String, String> CALLS = new TreeMap<String, String>();
+    private static final TreeMap<String, String> PUTS = new TreeMap<String, String>();
+    static
+    {
+        String[] months = { "JAN", "FEB", "MAR", "APR", "MAY", "JUN", "JUL", "AUG", "SEP", "OCT", "NOV", "DEC" };
+        for (int i=0; i<months.length; i++)
+        {
+            CALLS.put(String.valueOf((char) ('A' + i)), months[i]);
+            PUTS.put(String.valueOf((char) ('M' + i)), months[i]);
+        }
+    }
+
+    private Message[] _series;
+
+    @Setup
+    public void setup()
+    {
+        DataDict.init("ctf.data");
+
+        List<Message> series = new ArrayList<Message>();
+        for (String root : ROOTS)
+        {
+            for (char month='A'; month<='X'; month++)
+            {
+                for (char strike='A'; strike<='Z'; strike++)
+                {
+                    series.add(new Message("5=" + root + month + strike + "|4=558|8=12.50|9=10",
+                            Message.Mode.SINGLE_WRITER).freeze());
+                }
+            }
+        }
+        _series = series.toArray(new Message[series.size()]);
+    }
+
+    @Benchmark
+    public OptionChain optionSymbol()
+    {
+        return new OptionChain(_series);
+    }
+
+    @Benchmark
+    public int treeMap()
+    {
+        List<Message> calls = new ArrayList<Message>();
+        List<Message> puts = new ArrayList<Message>();
+        for (Message item : _series)
+        {
+            if (isLegacy(item, CALLS))
+            {
+                calls.add(item);
+            }
+            else if (isLegacy(item, PUTS))
+            {
+                puts.add(item);
+            }
+        }
+
+        return calls.size() + puts.size();
+    }
+
+    private static boolean isLegacy(Message msg, TreeMap<String, String> codes)
+    {
+        Field sym = msg.get(SYMBOL_TICKER);
+        if (sym == null)
+        {
+            return false;
+        }
+
+        String ticker = sym.getValue();
+        try
+        {
+            return codes.containsKey(ticker.substring(ticker.length()-2, ticker.length()-1));
+        }
+        catch (IndexOutOfBoundsException e)
+        {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * SampleMessages.java
+ */
+
+package com.idms.csp.ctf.data;
+
+/**
+ * Realistic CTF payloads shared by the benchmarks.
+ */
+public class SampleMessages
+{
+    // Fields of a Level 1 update, most frequently requested tokens first.
+    private static final String[] LEVEL1_FIELDS =
+    {
+        "5026=1", "4=558", "5=IBM", "16=1243344646.352", "8=101.19", "9=100",
+        "12=101.14", "13=1", "10=101.19", "11=1", "14=101.19", "7=d",
+        "18=1243344646.352", "20=1243344645.817", "22=1830", "23=3458700", "28=17",
+        "3=2", "3=7", "3=1011", "33=101.88", "34=100.21", "35=100.50", "36=100.98",
+        "37=1238900", "38=100.98", "39=101.19", "45=101.20", "49=101.3891",
+        "54=101.19", "62=1", "63=2", "47=0", "48=1", "50=0", "51=0", "52=0",
+        "43=0", "44=0", "46=0"
+    };
+
+    /**
+     * Returns a Level 1 payload with the given number of fields (up to 40).
+     *
+     * @param count The number of fields.
+     * @return The CTF payload.
+     */
+    public static String level1(int count)
+    {
+        StringBuilder sb = new StringBuilder();
+        for (int i=0; i<count; i++)
+        {
+            if (i > 0)
+            {
+                sb.append("|");
+            }
+            sb.append(LEVEL1_FIELDS[i]);
+        }
+
+        return sb.toString();
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * TokenHandleBenchmark.java
+ */
+
+package com.idms.csp.ctf.data;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Asks a Level 1 message for the four quote tokens (as Util.isQuote does) by
+ * handle, by name, and by name through the synchronized TreeMap DataDict used
+ * before.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TokenHandleBenchmark
+{
+    private static final String[] QUOTE_TOKENS = { "BID.PRICE", "BID.SIZE", "ASK.PRICE", "ASK.SIZE" };
+
+    private static final TokenHandle[] QUOTE_HANDLES = TokenHandle.ofAll(QUOTE_TOKENS);
+
+    private Message _msg;
+
+    private Map<String, Token> _treeMap;
+
+    @Setup
+    public void setup()
+    {
+        DataDict.init("ctf.data");
+
+        _msg = new Message(SampleMessages.level1(20));
+
+        _treeMap = Collections.synchronizedSortedMap(new TreeMap<String, Token>());
+        for (Token token : DataDict.getTokens())
+        {
+            _treeMap.put(token.name, token);
+        }
+    }
+
+    @Benchmark
+    public void handle(Blackhole bh)
+    {
+        for (TokenHandle handle : QUOTE_HANDLES)
+        {
+            bh.consume(_msg.get(handle));
+        }
+    }
+
+    @Benchmark
+    public void name(Blackhole bh)
+    {
+        for (String name : QUOTE_TOKENS)
+        {
+            bh.consume(_msg.get(name));
+        }
+    }
+
+    @Benchmark
+    public void treeMapName(Blackhole bh)
+    {
+        for (String name : QUOTE_TOKENS)
+        {
+            bh.consume(_msg.get(_treeMap.get(name).num));
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * ConditionBenchmark.java
+ */
+
+package com.idms.csp.ctf.tas;
+
+import com.idms.csp.ctf.data.DataDict;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Computes the consolidated volume and high of 1024 trades with a mix of
+ * conditions, with the condition categories of the records and with the
+ * description lookups in the condition map that consumers used before.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ConditionBenchmark
+{
+    // Conditions excluded from volume, and those that don't set the high/low.
+    private static final Set<String> NO_VOLUME = new HashSet<String>(Arrays.asList(
+            "Market Center Official Close", "Market Center Official Open"));
+    private static final Set<String> NO_HIGH_LOW = new HashSet<String>(Arrays.asList(
+            "Market Center Official Close", "Market Center Official Open", "Cash Trade (Same Day Clearing)",
+            "Price Variation Trade/Intraday trade detail", "Next Day Trade (Next Day Clearing)", "Seller",
+            "Average Price Trade", "Form T (Extended Trading Hours)",
+            "Pre and Post Market Trade: Sold out of sequence"));
+
+    private TradeRecord[] _trades;
+    private Map<String, String> _conditionMap;
+
+    @Setup
+    public void setup()
+    {
+        DataDict.init("ctf.data");
+        _conditionMap = DataDict.getConditionMap(2500);
+
+        // Mostly regular sales, as in the feed.
+        int[] conditions = { 0, 0, 0, 0, 0, 0, 6, 6, 3, 13, 20, 26, 12, 54 };
+        Random random = new Random(42);
+        _trades = new TradeRecord[1024];
+        for (int i=0; i<_trades.length; i++)
+        {
+            _trades[i] = new TradeRecord();
+            _trades[i].setTradeCondition1(conditions[random.nextInt(conditions.length)]);
+            _trades[i].setTradeSize(100 + random.nextInt(900));
+            _trades[i].setTradePrice(100 + random.nextInt(100) / 100.0);
+        }
+    }
+
+    @Benchmark
+    public long categories()
+    {
+        long volume = 0;
+        long high = Long.MIN_VALUE;
+        for (TradeRecord trade : _trades)
+        {
+            if (trade.countsTowardVolume())
+            {
+                volume += trade.getTradeSize();
+            }
+            if (trade.countsTowardHighLow())
+            {
+                high = Math.max(high, trade.getTradePriceFixed());
+            }
+        }
+
+        return volume + high;
+    }
+
+    @Benchmark
+    public long conditionMap()
+    {
+        long volume = 0;
+        long high = Long.MIN_VALUE;
+        for (TradeRecord trade : _trades)
+        {
+            String desc = _conditionMap.get(String.valueOf(trade.getTradeCondition1()));
+            if (!NO_VOLUME.contains(desc))
+            {
+                volume += trade.getTradeSize();
+            }
+            if (!NO_HIGH_LOW.contains(desc))
+            {
+                high = Math.max(high, trade.getTradePriceFixed());
+            }
+        }
+
+        return volume + high;
+    }
+}
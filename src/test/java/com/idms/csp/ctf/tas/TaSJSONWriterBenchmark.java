@@ -0,0 +1,78 @@
+/*
+ * TaSJSONWriterBenchmark.java
+ */
+
+package com.idms.csp.ctf.tas;
+
+import com.idms.csp.ctf.data.DataDict;
+import com.idms.csp.ctf.util.Price;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Writes trade and NBBO records as JSON lines into a reused buffer, in
+ * records per second.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TaSJSONWriterBenchmark
+{
+    private TradeRecord _trade;
+    private NBBORecord _nbbo;
+    private TaSJSONWriter _json;
+
+    @Setup
+    public void setup()
+    {
+        DataDict.init("ctf.data");
+
+        _trade = new TradeRecord();
+        _trade.setType("T");
+        _trade.setParticipantCode("N");
+        _trade.setActivityDateTime(1243344646352L);
+        _trade.setTaSSeq(1830);
+        _trade.setTradePriceFixed(Price.valueOf(10119, 2));
+        _trade.setTradeSize(100);
+        _trade.setTradeSeq(17);
+        _trade.setVWAPFixed(Price.valueOf(1013891, 4));
+
+        _nbbo = new NBBORecord();
+        _nbbo.setType("B");
+        _nbbo.setActivityDateTime(1243344646352L);
+        _nbbo.setTaSSeq(1831);
+        _nbbo.setBidPriceFixed(Price.valueOf(10114, 2));
+        _nbbo.setBidSize(1);
+        _nbbo.setAskPriceFixed(Price.valueOf(10119, 2));
+        _nbbo.setAskSize(1);
+        _nbbo.setBidParticipantCode("Q");
+        _nbbo.setAskParticipantCode("N");
+
+        _json = new TaSJSONWriter();
+    }
+
+    @Benchmark
+    public int trade() throws IOException
+    {
+        _json.reset();
+        _json.write(_trade);
+        return _json.size();
+    }
+
+    @Benchmark
+    public int nbbo() throws IOException
+    {
+        _json.reset();
+        _json.write(_nbbo);
+        return _json.size();
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * TimeAndSalesBenchmark.java
+ */
+
+package com.idms.csp.ctf.tas;
+
+import com.idms.csp.ctf.data.DataDict;
+import com.idms.csp.ctf.util.Price;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Scans a day of 1M records, 60% NBBO, 30% quotes and 10% trades, for the
+ * traded volume and the sum of the NBBO spreads, over the records of a
+ * TimeAndSales and with the cursor of a ColumnarTimeAndSales, through the
+ * records it loads and straight from the columns. Also gets the latest NBBO
+ * as a refresh cycle does, from the typed view and by rebuilding the list of
+ * NBBO records, as callers had to when the list went stale.
+ * <p>
+ * Prices are generated as the feed sends them, without trailing zeros, so
+ * their scale varies. The heap taken per record by each store is measured
+ * by main(), outside of JMH:
+ * <br><code>java -cp ... com.idms.csp.ctf.tas.TimeAndSalesBenchmark</code>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TimeAndSalesBenchmark
+{
+    private static final int RECORDS = 1000000;
+
+    private TimeAndSales _records;
+    private ColumnarTimeAndSales _columns;
+
+    @Setup
+    public void setup()
+    {
+        DataDict.init("ctf.data");
+        _records = new TimeAndSales(558, "IBM", null, null);
+        _columns = new ColumnarTimeAndSales(558, "IBM", null, null);
+        fill(RECORDS, _records, _columns);
+        _columns.trim();
+    }
+
+    /**
+     * Adds the same generated records to the stores.
+     */
+    private static void fill(int count, TimeAndSales... stores)
+    {
+        String parts = "NQPZTKDBIX";
+        Random random = new Random(42);
+        long time = 1243344600000L;
+        int seq = 1485600000;
+        for (int i=0; i<count; i++)
+        {
+            time += random.nextInt(20);
+            seq += 1 + random.nextInt(40);
+
+            TaSRecord record;
+            int kind = random.nextInt(10);
+            if (kind == 0)
+            {
+                TradeRecord trade = new TradeRecord();
+                trade.setTradePriceFixed(price(10100 + random.nextInt(400) - 200, 2));
+                trade.setTradeSize(100 * (1 + random.nextInt(10)));
+                trade.setTradeSeq(i / 10);
+                trade.setVWAPFixed(price(1013891 + random.nextInt(100), 4));
+                record = trade;
+            }
+            else
+            {
+                QuoteRecord quote = (kind < 4) ? new QuoteRecord() : new NBBORecord();
+                int bid = 10100 + random.nextInt(400) - 200;
+                quote.setBidPriceFixed(price(bid, 2));
+                quote.setAskPriceFixed(price(bid + 1 + random.nextInt(5), 2));
+                quote.setBidSize(1 + random.nextInt(50));
+                quote.setAskSize(1 + random.nextInt(50));
+                if (quote instanceof NBBORecord)
+                {
+                    ((NBBORecord) quote).setBidParticipant((byte) parts.charAt(random.nextInt(10)));
+                    ((NBBORecord) quote).setAskParticipant((byte) parts.charAt(random.nextInt(10)));
+                }
+                record = quote;
+            }
+            record.setParticipant((byte) parts.charAt(random.nextInt(10)));
+            record.setActivityDateTime(time);
+            record.setTaSSeq(seq);
+
+            for (TimeAndSales store : stores)
+            {
+                store.add(record);
+            }
+        }
+    }
+
+    /**
+     * Returns a price without its trailing zeros, as Price.parse() returns it
+     * for the text of the feed, for e.g. 101.2 rather than 101.20.
+     */
+    private static long price(long mantissa, int scale)
+    {
+        while (scale > 0 && mantissa % 10 == 0)
+        {
+            mantissa /= 10;
+            scale--;
+        }
+
+        return Price.valueOf(mantissa, scale);
+    }
+
+    /**
+     * Prints the heap taken per record by a TimeAndSales and by a
+     * ColumnarTimeAndSales holding the same 2M records.
+     *
+     * @param args Not used.
+     */
+    public static void main(String[] args)
+    {
+        int count = 2 * RECORDS;
+        DataDict.init("ctf.data");
+
+        long base = usedHeap();
+        TimeAndSales records = new TimeAndSales(558, "IBM", null, null);
+        fill(count, records);
+        long recordBytes = usedHeap() - base;
+
+        base = usedHeap();
+        ColumnarTimeAndSales columns = new ColumnarTimeAndSales(558, "IBM", null, null);
+        fill(count, columns);
+        columns.trim();
+        long columnBytes = usedHeap() - base;
+
+        System.out.println("TimeAndSales:         " + recordBytes / count + " bytes per record");
+        System.out.println("ColumnarTimeAndSales: " + columnBytes / count + " bytes per record");
+        System.out.println("Ratio:                " + (double) recordBytes / columnBytes);
+
+        // Keep both stores reachable until measured.
+        System.out.println(records.getAllRecords().size() + columns.size() > 0 ? "" : "empty");
+    }
+
+    private static long usedHeap()
+    {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i=0; i<4; i++)
+        {
+            System.gc();
+        }
+
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    @Benchmark
+    public long records()
+    {
+        long volume = 0;
+        long spreads = 0;
+        for (TaSRecord record : _records.getAllRecords())
+        {
+            if (record instanceof NBBORecord)
+            {
+                spreads += Price.mantissa(((NBBORecord) record).getBidAskSpreadFixed());
+            }
+            else if (record instanceof TradeRecord)
+            {
+                volume += ((TradeRecord) record).getTradeSize();
+            }
+        }
+
+        return volume + spreads;
+    }
+
+    @Benchmark
+    public long cursor()
+    {
+        long volume = 0;
+        long spreads = 0;
+        ColumnarTimeAndSales.Cursor cursor = _columns.cursor();
+        while (cursor.next())
+        {
+            if (cursor.isNBBO())
+            {
+                spreads += Price.mantissa(((NBBORecord) cursor.getRecord()).getBidAskSpreadFixed());
+            }
+            else if (cursor.isTrade())
+            {
+                volume += ((TradeRecord) cursor.getRecord()).getTradeSize();
+            }
+        }
+
+        return volume + spreads;
+    }
+
+    @Benchmark
+    public long cursorColumns()
+    {
+        long volume = 0;
+        long spreads = 0;
+        ColumnarTimeAndSales.Cursor cursor = _columns.cursor();
+        while (cursor.next())
+        {
+            if (cursor.isNBBO())
+            {
+                spreads += Price.mantissa(Price.subtract(cursor.getAskPriceFixed(), cursor.getBidPriceFixed()));
+            }
+            else if (cursor.isTrade())
+            {
+                volume += cursor.getTradeSize();
+            }
+        }
+
+        return volume + spreads;
+    }
+
+    @Benchmark
+    public long nbboView()
+    {
+        List<NBBORecord> nbbo = _records.getNBBORecrods();
+
+        return nbbo.get(nbbo.size() - 1).getBidAskSpreadFixed();
+    }
+
+    @Benchmark
+    public long nbboRescan()
+    {
+        List<NBBORecord> nbbo = new ArrayList<NBBORecord>();
+        for (TaSRecord record : _records.getAllRecords())
+        {
+            if (record.getType().equals("B"))
+            {
+                nbbo.add((NBBORecord) record);
+            }
+        }
+
+        return nbbo.get(nbbo.size() - 1).getBidAskSpreadFixed();
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * CTFDateTimeBenchmark.java
+ */
+
+package com.idms.csp.ctf.util;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Parses and formats the trade times of a trading session, with CTFDateTime
+ * into a reused buffer and as Util did before, through Double.parseDouble()
+ * and a SimpleDateFormat.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CTFDateTimeBenchmark
+{
+    private static final String[] TIMES =
+    {
+        "1210152744.006", "1210152744.561", "1210152745", "1210152745.12",
+        "1210166400.000", "1210174322.998", "1210175999.5", "1210176000.001"
+    };
+
+    private byte[] _line = new byte[CTFDateTime.DATETIME_LENGTH];
+    private SimpleDateFormat _format;
+    private Date _date = new Date();
+
+    @Setup
+    public void setup()
+    {
+        _format = new SimpleDateFormat("MM/dd/yyyy HH:mm:ss.SSS");
+        _format.setTimeZone(TimeZone.getTimeZone("America/New_York"));
+    }
+
+    @Benchmark
+    public void codec(Blackhole bh)
+    {
+        for (String time : TIMES)
+        {
+            bh.consume(CTFDateTime.formatDateTime(CTFDateTime.parse(time), _line, 0));
+        }
+        bh.consume(_line);
+    }
+
+    @Benchmark
+    public void simpleDateFormat(Blackhole bh)
+    {
+        for (String time : TIMES)
+        {
+            _date.setTime((long) (Double.parseDouble(time) * 1000));
+            bh.consume(_format.format(_date));
+        }
+    }
+}
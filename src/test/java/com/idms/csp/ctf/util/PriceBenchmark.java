@@ -0,0 +1,78 @@
+/*
+ * PriceBenchmark.java
+ */
+
+package com.idms.csp.ctf.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Parses the prices of a batch of quotes as fixed point prices straight from
+ * the payload bytes, and as doubles through a String like Field does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PriceBenchmark
+{
+    // Typical equity and option prices.
+    private static final String[] PRICES =
+    {
+        "101.19", "101.14", "0.05", "12.5", "1523.2575", "7", "33.01", "0.0001"
+    };
+
+    private ByteBuffer _buffer;
+
+    private int[] _offsets = new int[PRICES.length];
+
+    private int[] _lengths = new int[PRICES.length];
+
+    @Setup
+    public void setup()
+    {
+        StringBuilder sb = new StringBuilder();
+        for (int i=0; i<PRICES.length; i++)
+        {
+            _offsets[i] = sb.length();
+            _lengths[i] = PRICES[i].length();
+            sb.append(PRICES[i]).append('|');
+        }
+
+        _buffer = ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.US_ASCII));
+    }
+
+    @Benchmark
+    public void fixedPoint(Blackhole bh)
+    {
+        for (int i=0; i<_offsets.length; i++)
+        {
+            bh.consume(Price.parse(_buffer, _offsets[i], _lengths[i]));
+        }
+    }
+
+    @Benchmark
+    public void parseDouble(Blackhole bh)
+    {
+        for (int i=0; i<_offsets.length; i++)
+        {
+            bh.consume(Double.parseDouble(Ascii.toString(_buffer, _offsets[i], _lengths[i])));
+        }
+    }
+
+    @Benchmark
+    public void fixedPointSpread(Blackhole bh)
+    {
+        bh.consume(Price.subtract(Price.parse(_buffer, _offsets[0], _lengths[0]), Price.parse(_buffer, _offsets[1], _lengths[1])));
+    }
+}
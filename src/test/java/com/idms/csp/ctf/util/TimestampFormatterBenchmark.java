@@ -0,0 +1,80 @@
+/*
+ * TimestampFormatterBenchmark.java
+ */
+
+package com.idms.csp.ctf.util;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Formats the times of 1024 ticks, about 20 per second as in an audit log,
+ * with the per second cache of TimestampFormatter, with CTFDateTime alone
+ * and with a SimpleDateFormat.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TimestampFormatterBenchmark
+{
+    private long[] _times = new long[1024];
+    private byte[] _line = new byte[CTFDateTime.DATETIME_LENGTH];
+    private TimestampFormatter _formatter = new TimestampFormatter();
+    private SimpleDateFormat _format;
+    private Date _date = new Date();
+
+    @Setup
+    public void setup()
+    {
+        Random random = new Random(42);
+        long time = 1210152744006L;
+        for (int i=0; i<_times.length; i++)
+        {
+            time += random.nextInt(100);
+            _times[i] = time;
+        }
+
+        _format = new SimpleDateFormat("MM/dd/yyyy HH:mm:ss.SSS");
+        _format.setTimeZone(TimeZone.getTimeZone("America/New_York"));
+    }
+
+    @Benchmark
+    public void cachedSecond(Blackhole bh)
+    {
+        for (long time : _times)
+        {
+            bh.consume(_formatter.format(time, _line, 0));
+        }
+    }
+
+    @Benchmark
+    public void codec(Blackhole bh)
+    {
+        for (long time : _times)
+        {
+            bh.consume(CTFDateTime.formatDateTime(time, _line, 0));
+        }
+    }
+
+    @Benchmark
+    public void simpleDateFormat(Blackhole bh)
+    {
+        for (long time : _times)
+        {
+            _date.setTime(time);
+            bh.consume(_format.format(_date));
+        }
+    }
+}